@@ -0,0 +1,131 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates realistic OpenWeatherMap response payloads for benchmarks.
+ */
+public class BenchmarkPayloads {
+    public static final int FIRST_CITY_ID = 5400000;
+
+    /**
+     * The observation time of the first payload variant. Every time in a payload has the same number of digits so
+     * it can be rewritten in place by setTimes().
+     */
+    public static final long FIRST_TIME = 1485789600;
+
+    private static final byte[] TIME_FIELD = "\"dt\":".getBytes(StandardCharsets.UTF_8);
+    private static final int TIME_DIGITS = 10;
+
+    /**
+     * Creates a current weather payload for a station.
+     *
+     * @param cityId the city ID
+     * @param variant a value mixed into the readings and timestamp so successive variants are not deduplicated
+     *
+     * @return the JSON payload
+     */
+    public static String createStation(int cityId, int variant) {
+        return "{\"coord\":{\"lon\":-104.98,\"lat\":39.74},\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\",\"icon\":\"01d\"}]," +
+            "\"base\":\"stations\",\"main\":{\"temp\":" + (280.15 + variant + (cityId % 10) / 10.0) + ",\"pressure\":1012,\"humidity\":" + (40 + variant) +
+            ",\"temp_min\":279.15,\"temp_max\":281.15},\"visibility\":10000,\"wind\":{\"speed\":" + (4.1 + variant) + ",\"deg\":" + (80 + variant * 10) +
+            "},\"clouds\":{\"all\":0},\"dt\":" + (FIRST_TIME + variant * 600) + ",\"sys\":{\"type\":1,\"id\":5091,\"message\":0.0103,\"country\":\"US\"," +
+            "\"sunrise\":1485762037,\"sunset\":1485794875},\"id\":" + cityId + ",\"name\":\"Station " + cityId + "\",\"cod\":200}";
+    }
+
+    /**
+     * Finds the observation times in a payload.
+     *
+     * @param payload the UTF-8 encoded payload
+     *
+     * @return the offset of the first digit of each time
+     */
+    public static int[] findTimes(byte[] payload) {
+        List<Integer> offsets = new ArrayList<>();
+        for (int i = 0; i <= payload.length - TIME_FIELD.length; i++) {
+            int j = 0;
+            while (j < TIME_FIELD.length && payload[i + j] == TIME_FIELD[j]) {
+                j++;
+            }
+            if (j == TIME_FIELD.length) {
+                offsets.add(i + j);
+            }
+        }
+        int[] results = new int[offsets.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = offsets.get(i);
+        }
+        return results;
+    }
+
+    /**
+     * Rewrites the observation times in a payload in place so it can be replayed as newer data. The plugin
+     * discards observations older than the latest one it has seen for a station, so a replayed payload must carry
+     * a later time than the last one processed.
+     *
+     * @param payload the UTF-8 encoded payload
+     * @param offsets the offsets returned by findTimes()
+     * @param time the new time in seconds since the epoch (must have the same number of digits as FIRST_TIME)
+     */
+    public static void setTimes(byte[] payload, int[] offsets, long time) {
+        for (int offset : offsets) {
+            long t = time;
+            for (int i = TIME_DIGITS - 1; i >= 0; i--) {
+                payload[offset + i] = (byte)('0' + t % 10);
+                t /= 10;
+            }
+        }
+    }
+
+    /**
+     * Creates single-station payloads for a range of city IDs.
+     *
+     * @param count the number of stations
+     * @param variant the payload variant
+     *
+     * @return an array of UTF-8 encoded payloads
+     */
+    public static byte[][] createStations(int count, int variant) {
+        byte[][] results = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            results[i] = createStation(FIRST_CITY_ID + i, variant).getBytes(StandardCharsets.UTF_8);
+        }
+        return results;
+    }
+
+    /**
+     * Creates group payloads of up to OpenWeatherMapPlugin.MAX_GROUP_SIZE stations covering a range of city IDs.
+     *
+     * @param count the number of stations
+     * @param variant the payload variant
+     *
+     * @return an array of UTF-8 encoded payloads
+     */
+    public static byte[][] createGroups(int count, int variant) {
+        int groups = (count + OpenWeatherMapPlugin.MAX_GROUP_SIZE - 1) / OpenWeatherMapPlugin.MAX_GROUP_SIZE;
+        byte[][] results = new byte[groups][];
+        for (int g = 0; g < groups; g++) {
+            int size = Math.min(OpenWeatherMapPlugin.MAX_GROUP_SIZE, count - g * OpenWeatherMapPlugin.MAX_GROUP_SIZE);
+            StringBuilder sb = new StringBuilder("{\"cnt\":").append(size).append(",\"list\":[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(createStation(FIRST_CITY_ID + g * OpenWeatherMapPlugin.MAX_GROUP_SIZE + i, variant));
+            }
+            results[g] = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.device.MockDeviceManager;
+import com.whizzosoftware.hobson.api.event.MockEventManager;
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import com.whizzosoftware.hobson.api.property.PropertyContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the plugin event loop is unavailable while a burst of 1,000 single-station responses is
+ * processed, with and without asynchronous processing.
+ *
+ * Each invocation queues the burst on a single-threaded executor standing in for the event loop, followed by a
+ * probe task; the score is the time until the probe runs. In sync mode the probe waits for every response to be
+ * parsed and published, while in async mode it only waits for the responses to be handed to the workers. The
+ * backlog of parsed responses is drained between invocations.
+ *
+ * Bursts alternate between two payload variants with different readings and are stamped (before timing starts)
+ * with a time one second later than the previous burst's, so every response is published rather than discarded as
+ * out of date.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventLoopLatencyBenchmark {
+    private static final int BURST_SIZE = 1000;
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param({"2", "4"})
+    public int workerThreads;
+
+    private ExecutorService loop;
+    private MockEventManager eventManager;
+    private OpenWeatherMapPlugin plugin;
+    private byte[][][] variants;
+    private int[][][] times;
+    private RequestContext[] contexts;
+    private int variant;
+    private long time = BenchmarkPayloads.FIRST_TIME;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        loop = Executors.newSingleThreadExecutor();
+        final EventLoopExecutor eventLoop = new EventLoopExecutor() {
+            @Override
+            public void executeInEventLoop(Runnable r) {
+                loop.execute(r);
+            }
+        };
+        eventManager = new MockEventManager();
+        plugin = new OpenWeatherMapPlugin("id", "version", "description") {
+            @Override
+            EventLoopExecutor getResponseEventLoop() {
+                return eventLoop;
+            }
+        };
+        plugin.setDeviceManager(new MockDeviceManager());
+        plugin.setEventManager(eventManager);
+        final PropertyContainer config = new PropertyContainer();
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_API_KEY, "abcd");
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_ASYNC_PROCESSING, "async".equals(mode));
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_WORKER_THREADS, workerThreads);
+        loop.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                plugin.onStartup(config);
+                return null;
+            }
+        }).get();
+
+        variants = new byte[2][][];
+        times = new int[2][][];
+        for (int v = 0; v < 2; v++) {
+            variants[v] = BenchmarkPayloads.createStations(BURST_SIZE, v);
+            times[v] = new int[BURST_SIZE][];
+            for (int i = 0; i < BURST_SIZE; i++) {
+                times[v][i] = BenchmarkPayloads.findTimes(variants[v][i]);
+            }
+        }
+        contexts = new RequestContext[BURST_SIZE];
+        for (int i = 0; i < BURST_SIZE; i++) {
+            contexts[i] = RequestContext.current(Integer.toString(BenchmarkPayloads.FIRST_CITY_ID + i));
+        }
+
+        // the first pass publishes the devices
+        burst().get();
+        drain();
+    }
+
+    @TearDown(Level.Invocation)
+    public void drain() throws Exception {
+        AsyncResponseProcessor p = plugin.getAsyncProcessor();
+        do {
+            loop.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } while (p != null && p.getPendingCount() > 0);
+        eventManager.clearEvents();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plugin.onShutdown();
+        loop.shutdown();
+    }
+
+    @Benchmark
+    public long burstLatency() throws Exception {
+        return burst().get();
+    }
+
+    private Future<Long> burst() {
+        final byte[][] payloads = variants[variant];
+        time++;
+        for (int i = 0; i < payloads.length; i++) {
+            BenchmarkPayloads.setTimes(payloads[i], times[variant][i], time);
+        }
+        variant ^= 1;
+        final long start = System.nanoTime();
+        for (int i = 0; i < payloads.length; i++) {
+            final int n = i;
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        plugin.processResponse(200, null, new ByteArrayInputStream(payloads[n]), contexts[n]);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        return loop.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return System.nanoTime() - start;
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming ObservationParser against the JSONObject path for single and group payloads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservationParserBenchmark {
+    private final ObservationParser parser = new ObservationParser();
+    private final Observation obs = new Observation();
+    private byte[] single;
+    private byte[] group;
+
+    @Setup
+    public void setUp() {
+        single = BenchmarkPayloads.createStations(1, 0)[0];
+        group = BenchmarkPayloads.createGroups(OpenWeatherMapPlugin.MAX_GROUP_SIZE, 0)[0];
+    }
+
+    @Benchmark
+    public Observation streamingSingle() throws IOException {
+        parser.parse(new ByteArrayInputStream(single), obs);
+        return obs;
+    }
+
+    @Benchmark
+    public Observation jsonObjectSingle() {
+        return Observation.fromJson(new JSONObject(new JSONTokener(new ByteArrayInputStream(single))));
+    }
+
+    @Benchmark
+    public int streamingGroup(final Blackhole bh) throws IOException {
+        return parser.parseGroup(new ByteArrayInputStream(group), new ObservationParser.Listener() {
+            @Override
+            public void onObservation(Observation obs) {
+                bh.consume(obs.getTemperature());
+            }
+        });
+    }
+
+    @Benchmark
+    public void jsonObjectGroup(Blackhole bh) {
+        JSONArray list = new JSONObject(new JSONTokener(new ByteArrayInputStream(group))).getJSONArray("list");
+        for (int i = 0; i < list.length(); i++) {
+            bh.consume(Observation.fromJson(list.getJSONObject(i)));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.device.MockDeviceManager;
+import com.whizzosoftware.hobson.api.event.MockEventManager;
+import com.whizzosoftware.hobson.api.property.PropertyContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full response path (processResponse through OpenWeatherMapDevice.onUpdate and setVariableValues)
+ * for one refresh cycle's worth of responses using the Hobson mock managers.
+ *
+ * Each invocation alternates between two payload variants with different readings, and stamps the payloads with
+ * a time one second later than the previous invocation's, so every response is treated as new data and published
+ * rather than discarded as out of date. Run with "-prof gc" to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseProcessingBenchmark {
+    @Param({"1", "100", "10000"})
+    public int deviceCount;
+
+    @Param({"single", "group"})
+    public String payload;
+
+    private MockEventManager eventManager;
+    private OpenWeatherMapPlugin plugin;
+    private byte[][][] variants;
+    private int[][][] times;
+    private RequestContext[] contexts;
+    private int variant;
+    private long time = BenchmarkPayloads.FIRST_TIME;
+
+    @Setup
+    public void setUp() throws IOException {
+        eventManager = new MockEventManager();
+        plugin = new OpenWeatherMapPlugin("id", "version", "description");
+        plugin.setDeviceManager(new MockDeviceManager());
+        plugin.setEventManager(eventManager);
+        PropertyContainer config = new PropertyContainer();
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_API_KEY, "abcd");
+        plugin.onStartup(config);
+
+        boolean group = "group".equals(payload);
+        variants = new byte[2][][];
+        times = new int[2][][];
+        for (int v = 0; v < 2; v++) {
+            variants[v] = group ? BenchmarkPayloads.createGroups(deviceCount, v) : BenchmarkPayloads.createStations(deviceCount, v);
+            times[v] = new int[variants[v].length][];
+            for (int i = 0; i < variants[v].length; i++) {
+                times[v][i] = BenchmarkPayloads.findTimes(variants[v][i]);
+            }
+        }
+
+        // build the request contexts the responses will be routed with
+        contexts = new RequestContext[variants[0].length];
+        for (int i = 0; i < contexts.length; i++) {
+            if (group) {
+                List<String> ids = new ArrayList<>();
+                for (int j = i * OpenWeatherMapPlugin.MAX_GROUP_SIZE; j < Math.min(deviceCount, (i + 1) * OpenWeatherMapPlugin.MAX_GROUP_SIZE); j++) {
+                    ids.add(Integer.toString(BenchmarkPayloads.FIRST_CITY_ID + j));
+                }
+                contexts[i] = RequestContext.group(ids);
+            } else {
+                contexts[i] = RequestContext.current(Integer.toString(BenchmarkPayloads.FIRST_CITY_ID + i));
+            }
+        }
+
+        // the first pass publishes the devices
+        processCycle();
+        processCycle();
+    }
+
+    @Benchmark
+    public void processCycle() throws IOException {
+        // the mock event manager retains every event so it is cleared to keep the heap steady
+        eventManager.clearEvents();
+        byte[][] payloads = variants[variant];
+        time++;
+        for (int i = 0; i < payloads.length; i++) {
+            BenchmarkPayloads.setTimes(payloads[i], times[variant][i], time);
+            plugin.processResponse(200, null, new ByteArrayInputStream(payloads[i]), contexts[i]);
+        }
+        variant ^= 1;
+    }
+}
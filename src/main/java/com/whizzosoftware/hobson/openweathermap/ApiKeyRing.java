@@ -0,0 +1,365 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spreads stations across one or more OpenWeatherMap API keys, each with its own RequestGovernor (and therefore
+ * its own calls-per-minute budget and backoff).
+ *
+ * Stations are assigned to keys with a consistent hash ring so adding or removing a key only moves the stations
+ * that hashed to it. A key that is backing off after a 429/5xx, or that has been rejected with a 401, is skipped:
+ * its stations are routed to the next key on the ring until it recovers, and anything already queued on it is
+ * moved over at the next drain.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class ApiKeyRing {
+    /**
+     * How long (in milliseconds) a key that was rejected as unauthorized is taken out of rotation before it is
+     * tried again.
+     */
+    static final long UNAUTHORIZED_RETRY = 3600000;
+
+    /**
+     * The number of points each key occupies on the ring; more points give a more even distribution.
+     */
+    static final int VIRTUAL_NODES = 64;
+
+    /**
+     * Receives the stations to request (and the key to request them with) each time a key's governor releases a
+     * request.
+     */
+    interface Sender {
+        void send(String apiKey, List<String> cityIds);
+    }
+
+    private final Map<String,Shard> shards = new LinkedHashMap<>();
+    private final TreeMap<Integer,Shard> ring = new TreeMap<>();
+    private final Map<String,Shard> queuedOn = new HashMap<>();
+    private int nextAny;
+
+    /**
+     * Parses a configuration value containing one or more API keys separated by commas and/or whitespace.
+     *
+     * @param value the configuration value (may be null)
+     *
+     * @return the distinct keys in the order given
+     */
+    static List<String> parseKeys(String value) {
+        List<String> keys = new ArrayList<>();
+        if (value != null) {
+            for (String key : value.split("[,\\s]+")) {
+                if (key.length() > 0 && !keys.contains(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a form of an API key that is safe to log.
+     *
+     * @param key the API key
+     *
+     * @return the last 4 characters of the key prefixed with an ellipsis
+     */
+    static String mask(String key) {
+        return key != null && key.length() > 4 ? "..." + key.substring(key.length() - 4) : "...";
+    }
+
+    /**
+     * Sets the keys in use. Keys that were already in use keep their governor state; stations queued on a key
+     * that is no longer in use are queued on the key that now owns them.
+     *
+     * @param keys the API keys
+     * @param callsPerMinute the quota of each key
+     * @param burstMillis the number of milliseconds' worth of quota that can be sent at once
+     */
+    void setKeys(List<String> keys, int callsPerMinute, long burstMillis) {
+        Map<String,Shard> old = new LinkedHashMap<>(shards);
+        shards.clear();
+        for (String key : keys) {
+            Shard shard = old.remove(key);
+            if (shard == null) {
+                shard = new Shard(key, new RequestGovernor(callsPerMinute, burstMillis));
+            } else {
+                shard.governor.setQuota(callsPerMinute, burstMillis);
+            }
+            shards.put(key, shard);
+        }
+
+        ring.clear();
+        for (Shard shard : shards.values()) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(shard.key + '#' + i), shard);
+            }
+        }
+
+        for (Shard shard : old.values()) {
+            for (String cityId : shard.governor.takeQueued()) {
+                queuedOn.remove(cityId);
+                if (!ring.isEmpty()) {
+                    // no key is available at the earliest possible time, so this queues the station on its owner
+                    submit(cityId, Long.MIN_VALUE);
+                }
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return shards.isEmpty();
+    }
+
+    int size() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the number of keys that are not currently backing off.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return the number of available keys
+     */
+    int getAvailableCount(long now) {
+        int count = 0;
+        for (Shard shard : shards.values()) {
+            if (shard.isAvailable(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the key a station's requests are currently sent with.
+     *
+     * @param cityId the city ID
+     * @param now the current time in milliseconds
+     *
+     * @return the key (or null if there are no keys)
+     */
+    String getKey(String cityId, long now) {
+        Shard shard = getShard(cityId, now);
+        return shard != null ? shard.key : null;
+    }
+
+    /**
+     * Queues a station for a request on its key. A station that is already queued is not queued again.
+     *
+     * @param cityId the city ID
+     * @param now the current time in milliseconds
+     */
+    void submit(String cityId, long now) {
+        if (!queuedOn.containsKey(cityId)) {
+            Shard shard = getShard(cityId, now);
+            if (shard != null) {
+                shard.governor.submit(cityId);
+                queuedOn.put(cityId, shard);
+            }
+        }
+    }
+
+    /**
+     * Puts stations whose request could not be completed back at the front of the queue of the key that now
+     * owns them (which, if their request failed because of its key, will be a different key).
+     *
+     * @param cityIds the city IDs
+     * @param now the current time in milliseconds
+     */
+    void requeue(List<String> cityIds, long now) {
+        for (int i = cityIds.size() - 1; i >= 0; i--) {
+            String cityId = cityIds.get(i);
+            if (!queuedOn.containsKey(cityId)) {
+                Shard shard = getShard(cityId, now);
+                if (shard != null) {
+                    shard.governor.requeue(Collections.singletonList(cityId));
+                    queuedOn.put(cityId, shard);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves stations queued on unavailable keys to available ones and then sends as many queued stations as each
+     * key's governor allows.
+     *
+     * @param now the current time in milliseconds
+     * @param maxPerRequest the maximum number of stations to include in each request
+     * @param sender the sender to use
+     *
+     * @return the number of requests sent
+     */
+    int drain(long now, int maxPerRequest, final Sender sender) {
+        if (getAvailableCount(now) > 0) {
+            for (Shard shard : shards.values()) {
+                if (!shard.isAvailable(now) && shard.governor.getQueueSize() > 0) {
+                    List<String> cityIds = shard.governor.takeQueued();
+                    for (String cityId : cityIds) {
+                        queuedOn.remove(cityId);
+                    }
+                    requeue(cityIds, now);
+                }
+            }
+        }
+
+        int count = 0;
+        for (final Shard shard : shards.values()) {
+            count += shard.governor.drain(now, maxPerRequest, new RequestGovernor.Sender() {
+                @Override
+                public void send(List<String> cityIds) {
+                    for (String cityId : cityIds) {
+                        queuedOn.remove(cityId);
+                    }
+                    sender.send(shard.key, cityIds);
+                }
+            });
+        }
+        return count;
+    }
+
+    /**
+     * Takes a token for a request made outside of the queue.
+     *
+     * @param cityId the city ID the request is for (or null to use any key with a token available)
+     * @param now the current time in milliseconds
+     *
+     * @return the key to send the request with (or null if no token was available)
+     */
+    String tryAcquire(String cityId, long now) {
+        if (cityId != null) {
+            Shard shard = getShard(cityId, now);
+            return shard != null && shard.governor.tryAcquire(now) ? shard.key : null;
+        }
+        // rotate the starting key so requests that aren't tied to a station share the load
+        List<Shard> list = new ArrayList<>(shards.values());
+        for (int i = 0; i < list.size(); i++) {
+            Shard shard = list.get((nextAny + i) % list.size());
+            if (shard.isAvailable(now) && shard.governor.tryAcquire(now)) {
+                nextAny = (nextAny + i + 1) % list.size();
+                return shard.key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records a successful response for a key, clearing any backoff.
+     *
+     * @param key the API key
+     */
+    void onSuccess(String key) {
+        Shard shard = key != null ? shards.get(key) : null;
+        if (shard != null) {
+            shard.governor.onSuccess();
+        }
+    }
+
+    /**
+     * Records a throttled (429) or failed (5xx or network error) request for a key.
+     *
+     * @param key the API key
+     * @param retryAfter the server's Retry-After delay in milliseconds (or -1 if not provided)
+     * @param now the current time in milliseconds
+     */
+    void onThrottled(String key, long retryAfter, long now) {
+        Shard shard = key != null ? shards.get(key) : null;
+        if (shard != null) {
+            shard.governor.onThrottled(retryAfter, now);
+        }
+    }
+
+    /**
+     * Records that a key was rejected (401), taking it out of rotation for UNAUTHORIZED_RETRY milliseconds. This
+     * is treated as a long backoff so the key's governor stops sending immediately.
+     *
+     * @param key the API key
+     * @param now the current time in milliseconds
+     */
+    void onUnauthorized(String key, long now) {
+        onThrottled(key, UNAUTHORIZED_RETRY, now);
+    }
+
+    /**
+     * Returns when a key will next be used.
+     *
+     * @param key the API key
+     *
+     * @return a time in milliseconds (or 0 if the key is unknown)
+     */
+    long getBackoffUntil(String key) {
+        Shard shard = key != null ? shards.get(key) : null;
+        return shard != null ? shard.governor.getBackoffUntil() : 0;
+    }
+
+    int getQueueSize() {
+        return queuedOn.size();
+    }
+
+    /**
+     * Returns the shard a station should be requested with: the first key clockwise from the station's position
+     * on the ring that is available or, if none is, the key that owns the station.
+     */
+    private Shard getShard(String cityId, long now) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        int h = hash(cityId);
+        Shard owner = null;
+        for (int pass = 0; pass < 2; pass++) {
+            for (Shard shard : (pass == 0 ? ring.tailMap(h, true) : ring.headMap(h, false)).values()) {
+                if (owner == null) {
+                    owner = shard;
+                }
+                if (shard.isAvailable(now)) {
+                    return shard;
+                }
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * A 32-bit finalizer (from MurmurHash3) applied to String.hashCode() so that similar strings such as sequential
+     * city IDs land far apart on the ring.
+     */
+    static int hash(String s) {
+        int h = s.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static class Shard {
+        final String key;
+        final RequestGovernor governor;
+
+        Shard(String key, RequestGovernor governor) {
+            this.key = key;
+            this.governor = governor;
+        }
+
+        boolean isAvailable(long now) {
+            return !governor.isBackingOff(now);
+        }
+    }
+}
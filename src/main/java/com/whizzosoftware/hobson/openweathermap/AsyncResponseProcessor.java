@@ -0,0 +1,202 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves response parsing off the plugin event loop.
+ *
+ * Work runs on a fixed set of single-threaded stripes. Each response is parsed on the stripe its request's cache
+ * key hashes to, so responses to the same request are handed back to the event loop in the order they arrived.
+ * Only the parsed observations are marshalled back; they are applied to devices on the event loop like those
+ * from every other source, so device state is never touched from a worker.
+ */
+class AsyncResponseProcessor {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncResponseProcessor.class);
+
+    /**
+     * Receives parse results on the event loop.
+     */
+    interface Handler {
+        /**
+         * Called when a response has been parsed.
+         *
+         * @param ctx the request context
+         * @param observations the observations
+         * @param bytes the size of the response body in bytes
+         * @param parseNanos the time spent parsing in nanoseconds
+         */
+        void onParsed(RequestContext ctx, List<Observation> observations, long bytes, long parseNanos);
+        void onParseFailure(RequestContext ctx, Exception e);
+    }
+
+    private final Handler handler;
+    private final EventLoopExecutor eventLoop;
+    private final ExecutorService[] stripes;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ThreadLocal<ObservationParser> parsers = new ThreadLocal<ObservationParser>() {
+        @Override
+        protected ObservationParser initialValue() {
+            return new ObservationParser();
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param handler the handler to deliver parse results to
+     * @param eventLoop the plugin event loop
+     * @param threads the number of worker threads
+     */
+    AsyncResponseProcessor(Handler handler, EventLoopExecutor eventLoop, int threads) {
+        this.handler = handler;
+        this.eventLoop = eventLoop;
+        this.stripes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < stripes.length; i++) {
+            final int stripe = i;
+            stripes[i] = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "OpenWeatherMap worker " + (stripe + 1));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+
+    int getThreadCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns the number of responses that have been submitted but not yet delivered back to the event loop.
+     *
+     * @return an int
+     */
+    int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Parses a current conditions or group response on a worker thread. Unless the body is already in memory, it
+     * is copied before this method returns since the HTTP client may release it once its callback has returned.
+     *
+     * @param is the response body
+     * @param ctx the request context
+     *
+     * @throws IOException if the body can't be read
+     */
+    void parse(InputStream is, final RequestContext ctx) throws IOException {
+        final InputStream body = is instanceof ByteArrayInputStream ? is : new ByteArrayInputStream(readFully(is));
+        submit(getStripe(ctx.getCacheKey()), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final long bytes = body.available();
+                    long start = System.nanoTime();
+                    final List<Observation> observations = parseObservations(body, ctx);
+                    final long parseNanos = System.nanoTime() - start;
+                    deliver(new Runnable() {
+                        @Override
+                        public void run() {
+                            handler.onParsed(ctx, observations, bytes, parseNanos);
+                        }
+                    });
+                } catch (final Exception e) {
+                    deliver(new Runnable() {
+                        @Override
+                        public void run() {
+                            handler.onParseFailure(ctx, e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the worker threads. Work already queued is still completed.
+     */
+    void close() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    private ExecutorService getStripe(String key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % stripes.length];
+    }
+
+    private void submit(ExecutorService stripe, Runnable r) {
+        pending.incrementAndGet();
+        try {
+            stripe.execute(r);
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            logger.warn("Response processor has been closed; discarding work");
+        }
+    }
+
+    private void deliver(final Runnable r) {
+        eventLoop.executeInEventLoop(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    r.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            baos.write(buf, 0, n);
+        }
+        return baos.toByteArray();
+    }
+
+    private List<Observation> parseObservations(InputStream body, RequestContext ctx) throws IOException {
+        final List<Observation> results = new ArrayList<>();
+        if (ctx.getType() == RequestContext.Type.GROUP) {
+            parsers.get().parseGroupWithFallback(body, new ObservationParser.Listener() {
+                @Override
+                public void onObservation(Observation obs) {
+                    results.add(obs.copy());
+                }
+            });
+        } else {
+            Observation obs = new Observation();
+            parsers.get().parseWithFallback(body, obs);
+            results.add(obs);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the progress of importing a set of OpenWeatherMap stations, either by city ID or by geographic search.
+ *
+ * City IDs are resolved in group requests of up to OpenWeatherMapPlugin.MAX_GROUP_SIZE with at most
+ * MAX_CONCURRENT_REQUESTS outstanding at once. The outcome for each city ID is recorded as either a resolved
+ * observation or a failure reason.
+ *
+ * Instances are not thread-safe and are expected to be used from the plugin event loop.
+ */
+public class BulkImport {
+    static final int MAX_CONCURRENT_REQUESTS = 4;
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Receives progress notifications for an import.
+     */
+    public interface Listener {
+        void onProgress(BulkImport bulkImport);
+        void onComplete(BulkImport bulkImport);
+    }
+
+    /**
+     * A geographic station search: either the stations nearest a point or the stations within a bounding box.
+     */
+    public static class Search {
+        private final Double latitude;
+        private final Double longitude;
+        private final int count;
+        private final String boundingBox;
+        private int attempts;
+
+        /**
+         * Creates a search for the stations nearest a point.
+         *
+         * @param latitude the latitude
+         * @param longitude the longitude
+         * @param count the maximum number of stations to return
+         *
+         * @return a Search instance
+         */
+        public static Search near(double latitude, double longitude, int count) {
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Invalid coordinates: " + latitude + "," + longitude);
+            }
+            return new Search(latitude, longitude, Math.max(1, Math.min(count, 50)), null);
+        }
+
+        /**
+         * Creates a search for the stations within a bounding box.
+         *
+         * @param boundingBox the bounding box in the form "lonLeft,latBottom,lonRight,latTop[,zoom]"
+         *
+         * @return a Search instance
+         */
+        public static Search within(String boundingBox) {
+            String[] parts = boundingBox.split(",");
+            if (parts.length < 4 || parts.length > 5) {
+                throw new IllegalArgumentException("Invalid bounding box: " + boundingBox);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                double d;
+                try {
+                    d = Double.parseDouble(parts[i].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid bounding box: " + boundingBox);
+                }
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(i < 4 ? Double.toString(d) : Integer.toString((int)d));
+            }
+            if (parts.length == 4) {
+                sb.append(",10");
+            }
+            return new Search(null, null, 0, sb.toString());
+        }
+
+        private Search(Double latitude, Double longitude, int count, String boundingBox) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+            this.boundingBox = boundingBox;
+        }
+
+        boolean isBoundingBox() {
+            return boundingBox != null;
+        }
+
+        Double getLatitude() {
+            return latitude;
+        }
+
+        Double getLongitude() {
+            return longitude;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        String getBoundingBox() {
+            return boundingBox;
+        }
+
+        @Override
+        public String toString() {
+            return isBoundingBox() ? "bbox=" + boundingBox : "lat=" + latitude + ",lon=" + longitude + ",cnt=" + count;
+        }
+    }
+
+    private final Listener listener;
+    private final Set<String> cityIds = new LinkedHashSet<>();
+    private final Deque<Batch> pendingBatches = new ArrayDeque<>();
+    private final Deque<Search> pendingSearches = new ArrayDeque<>();
+    private final Map<String,Observation> resolved = new LinkedHashMap<>();
+    private final Map<String,String> failures = new LinkedHashMap<>();
+    private int inFlight;
+    private int searchCount;
+    private boolean completed;
+
+    /**
+     * Constructor.
+     *
+     * @param cityIds the city IDs to import (invalid IDs are recorded as failures)
+     * @param searches the geographic searches to perform
+     * @param listener the listener to notify of progress
+     */
+    public BulkImport(Collection<String> cityIds, Collection<Search> searches, Listener listener) {
+        this.listener = listener;
+
+        List<String> batch = new ArrayList<>();
+        for (String s : cityIds) {
+            String cityId = normalizeCityId(s);
+            if (cityId == null) {
+                failures.put(s, "Invalid city ID");
+            } else if (this.cityIds.add(cityId)) {
+                batch.add(cityId);
+                if (batch.size() == OpenWeatherMapPlugin.MAX_GROUP_SIZE) {
+                    pendingBatches.add(new Batch(batch));
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            pendingBatches.add(new Batch(batch));
+        }
+
+        pendingSearches.addAll(searches);
+        searchCount = searches.size();
+    }
+
+    /**
+     * Returns the number of city IDs requested (not including those found by searches).
+     *
+     * @return an int
+     */
+    public int getRequestedCount() {
+        return cityIds.size();
+    }
+
+    public int getResolvedCount() {
+        return resolved.size();
+    }
+
+    public int getSearchCount() {
+        return searchCount;
+    }
+
+    public Map<String,String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isComplete() {
+        return completed;
+    }
+
+    Collection<Observation> getResolved() {
+        return resolved.values();
+    }
+
+    /**
+     * Indicates whether another request may be sent for this import.
+     *
+     * @return a boolean
+     */
+    boolean hasNextRequest() {
+        return !completed && inFlight < MAX_CONCURRENT_REQUESTS && (!pendingBatches.isEmpty() || !pendingSearches.isEmpty());
+    }
+
+    /**
+     * Returns the context for the next request to send and marks it as in flight.
+     *
+     * @return a RequestContext
+     */
+    RequestContext nextRequest() {
+        inFlight++;
+        if (!pendingSearches.isEmpty()) {
+            return RequestContext.search(pendingSearches.removeFirst(), this);
+        } else {
+            return RequestContext.bulk(pendingBatches.removeFirst(), this);
+        }
+    }
+
+    /**
+     * Records the observations returned for a request.
+     *
+     * @param ctx the request context
+     * @param observations the observations returned
+     */
+    void onResponse(RequestContext ctx, List<Observation> observations) {
+        inFlight--;
+        for (Observation obs : observations) {
+            if (obs.getCityId() > -1) {
+                String cityId = Long.toString(obs.getCityId());
+                resolved.put(cityId, obs);
+                failures.remove(cityId);
+            }
+        }
+        if (ctx.getBatch() != null) {
+            for (String cityId : ctx.getBatch().cityIds) {
+                if (!resolved.containsKey(cityId)) {
+                    failures.put(cityId, "Not found");
+                }
+            }
+        }
+        listener.onProgress(this);
+    }
+
+    /**
+     * Records a failed request. The request is retried up to MAX_ATTEMPTS times if it is retryable.
+     *
+     * @param ctx the request context
+     * @param reason the reason for the failure
+     * @param retryable whether the request should be retried
+     */
+    void onFailure(RequestContext ctx, String reason, boolean retryable) {
+        inFlight--;
+        Batch batch = ctx.getBatch();
+        if (batch != null) {
+            if (retryable && ++batch.attempts < MAX_ATTEMPTS) {
+                pendingBatches.addFirst(batch);
+            } else {
+                for (String cityId : batch.cityIds) {
+                    failures.put(cityId, reason);
+                }
+            }
+        } else if (ctx.getSearch() != null) {
+            Search search = ctx.getSearch();
+            if (retryable && ++search.attempts < MAX_ATTEMPTS) {
+                pendingSearches.addFirst(search);
+            } else {
+                failures.put(search.toString(), reason);
+            }
+        }
+        listener.onProgress(this);
+    }
+
+    /**
+     * Indicates whether all requests for this import have finished.
+     *
+     * @return a boolean
+     */
+    boolean isFinished() {
+        return inFlight == 0 && pendingBatches.isEmpty() && pendingSearches.isEmpty();
+    }
+
+    void complete() {
+        if (!completed) {
+            completed = true;
+            listener.onComplete(this);
+        }
+    }
+
+    static String normalizeCityId(String s) {
+        if (s != null) {
+            try {
+                long l = Long.parseLong(s.trim());
+                if (l >= 0) {
+                    return Long.toString(l);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImport{requested=" + cityIds.size() + ", searches=" + searchCount + ", resolved=" + resolved.size() + ", failed=" + failures.size() + "}";
+    }
+
+    /**
+     * A group of city IDs requested together.
+     */
+    static class Batch {
+        final List<String> cityIds;
+        int attempts;
+
+        Batch(List<String> cityIds) {
+            this.cityIds = cityIds;
+        }
+    }
+}
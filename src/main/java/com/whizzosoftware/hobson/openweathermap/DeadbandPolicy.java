@@ -0,0 +1,64 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+/**
+ * Determines whether a new reading differs enough from the last published value to be worth publishing.
+ *
+ * A deadband of 0 publishes any change; a reading identical to the last published value is never republished.
+ */
+class DeadbandPolicy {
+    private volatile double temperature;
+    private volatile double humidity;
+    private volatile double windSpeed;
+    private volatile double windDirection;
+
+    /**
+     * Sets the deadbands.
+     *
+     * @param temperature the temperature deadband in degrees Celsius
+     * @param humidity the relative humidity deadband in percent
+     * @param windSpeed the wind speed deadband
+     * @param windDirection the wind direction deadband in degrees
+     */
+    void setDeadbands(double temperature, double humidity, double windSpeed, double windDirection) {
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+    }
+
+    boolean isTemperatureChange(double lastTempC, double tempC) {
+        return exceeds(lastTempC, tempC, temperature);
+    }
+
+    boolean isHumidityChange(double last, double value) {
+        return exceeds(last, value, humidity);
+    }
+
+    boolean isWindSpeedChange(double last, double value) {
+        return exceeds(last, value, windSpeed);
+    }
+
+    boolean isWindDirectionChange(double last, double value) {
+        if (Double.isNaN(last)) {
+            return !Double.isNaN(value);
+        }
+        double d = Math.abs(value - last) % 360;
+        return Math.min(d, 360 - d) > windDirection;
+    }
+
+    private static boolean exceeds(double last, double value, double deadband) {
+        if (Double.isNaN(last)) {
+            return !Double.isNaN(value);
+        }
+        return Math.abs(value - last) > deadband;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks demand for stations that are refreshed on demand rather than on a schedule.
+ *
+ * Demand arrives in two forms: a one-off read of a device's variables, which is held until the next tick, and a
+ * subscription, which keeps the device's station on the regular schedule for as long as it lasts. Reads only
+ * result in a request when the station's data is older than the TTL, so a burst of reads costs one request.
+ *
+ * Demand may be signalled from any thread; everything else is expected to be called from the plugin event loop.
+ */
+class DemandTracker {
+    private final Set<String> demanded = new HashSet<>();
+    private final Map<String,Integer> subscriptions = new HashMap<>();
+    private final Map<String,Long> lastRefresh = new HashMap<>();
+    private long ttl;
+
+    /**
+     * Constructor.
+     *
+     * @param ttl how long (in milliseconds) a station's data satisfies a read
+     */
+    DemandTracker(long ttl) {
+        this.ttl = ttl;
+    }
+
+    synchronized void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Records that a device's variables have been read.
+     *
+     * @param deviceId the device ID
+     */
+    synchronized void onDemand(String deviceId) {
+        demanded.add(deviceId);
+    }
+
+    /**
+     * Returns and clears the devices read since the last call.
+     *
+     * @return a list of device IDs
+     */
+    synchronized List<String> pollDemanded() {
+        List<String> results = new ArrayList<>(demanded);
+        demanded.clear();
+        return results;
+    }
+
+    synchronized void subscribe(String deviceId) {
+        Integer count = subscriptions.get(deviceId);
+        subscriptions.put(deviceId, count != null ? count + 1 : 1);
+    }
+
+    synchronized void unsubscribe(String deviceId) {
+        Integer count = subscriptions.get(deviceId);
+        if (count != null && count > 1) {
+            subscriptions.put(deviceId, count - 1);
+        } else {
+            subscriptions.remove(deviceId);
+        }
+    }
+
+    synchronized boolean isSubscribed(String deviceId) {
+        return subscriptions.containsKey(deviceId);
+    }
+
+    /**
+     * Records that fresh data (or confirmation that the data is unchanged) was received for a station.
+     *
+     * @param key the station key
+     * @param now the current time in milliseconds
+     */
+    synchronized void onRefreshed(String key, long now) {
+        lastRefresh.put(key, now);
+    }
+
+    /**
+     * Indicates whether a read of a station should trigger a request.
+     *
+     * @param key the station key
+     * @param now the current time in milliseconds
+     *
+     * @return true if the station has never been refreshed or was last refreshed at least the TTL ago
+     */
+    synchronized boolean isStale(String key, long now) {
+        Long last = lastRefresh.get(key);
+        return last == null || now - last >= ttl;
+    }
+
+    /**
+     * Forgets the refresh times of stations that are no longer in use.
+     *
+     * @param keys the station keys in use
+     */
+    synchronized void retain(Collection<String> keys) {
+        lastRefresh.keySet().retainAll(keys instanceof Set ? keys : new HashSet<>(keys));
+    }
+}
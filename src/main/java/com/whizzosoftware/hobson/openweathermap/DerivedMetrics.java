@@ -0,0 +1,135 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+/**
+ * Values derived from a station's observation stream: dew point, feels-like temperature, rolling 1 hour and 24
+ * hour temperature statistics and the pressure tendency. Each observation updates everything in O(1) without
+ * allocation.
+ *
+ * Wind speeds are in meters per second (the OpenWeatherMap default units) and pressure is in hPa.
+ */
+class DerivedMetrics {
+    static final long HOUR = 3600;
+    static final long DAY = 24 * HOUR;
+    static final long PRESSURE_TREND_PERIOD = 3 * HOUR;
+
+    /**
+     * The window capacities assume observations no more often than every 5 minutes (the default minimum refresh
+     * interval); with more frequent observations the 24 hour window covers proportionally less time.
+     */
+    private static final int HOUR_CAPACITY = 32;
+    private static final int DAY_CAPACITY = 288;
+
+    private final RollingWindow hourTemps = new RollingWindow(HOUR, HOUR_CAPACITY);
+    private final RollingWindow dayTemps = new RollingWindow(DAY, DAY_CAPACITY);
+    private final RollingWindow pressures = new RollingWindow(PRESSURE_TREND_PERIOD, HOUR_CAPACITY * 3);
+    private double dewPoint = Double.NaN;
+    private double feelsLike = Double.NaN;
+    private double pressure = Double.NaN;
+
+    /**
+     * Updates the derived values from an observation.
+     *
+     * @param obs the observation
+     */
+    void onObservation(Observation obs) {
+        double tempC = obs.getTemperature() - 273.15;
+        dewPoint = calculateDewPoint(tempC, obs.getHumidity());
+        feelsLike = calculateFeelsLike(tempC, obs.getHumidity(), obs.getWindSpeed());
+        pressure = obs.getPressure();
+        if (obs.getTime() > -1) {
+            hourTemps.add(obs.getTime(), tempC);
+            dayTemps.add(obs.getTime(), tempC);
+            pressures.add(obs.getTime(), pressure);
+        }
+    }
+
+    double getDewPoint() {
+        return dewPoint;
+    }
+
+    double getFeelsLike() {
+        return feelsLike;
+    }
+
+    RollingWindow getHourTemperatures() {
+        return hourTemps;
+    }
+
+    RollingWindow getDayTemperatures() {
+        return dayTemps;
+    }
+
+    double getPressure() {
+        return pressure;
+    }
+
+    /**
+     * Returns the pressure change over the last 3 hours. Once at least an hour of readings is available, the
+     * change across the readings held is scaled to 3 hours.
+     *
+     * @return the change in hPa per 3 hours (or NaN if there is less than an hour of readings)
+     */
+    double getPressureTrend() {
+        long span = pressures.getNewestTime() - pressures.getOldestTime();
+        if (pressures.size() < 2 || span < HOUR) {
+            return Double.NaN;
+        }
+        return (pressures.getNewestValue() - pressures.getOldestValue()) * PRESSURE_TREND_PERIOD / span;
+    }
+
+    /**
+     * Calculates the dew point using the Magnus formula.
+     *
+     * @param tempC the temperature in Celsius
+     * @param humidity the relative humidity in percent
+     *
+     * @return the dew point in Celsius (or NaN if either input is missing)
+     */
+    static double calculateDewPoint(double tempC, double humidity) {
+        if (Double.isNaN(tempC) || Double.isNaN(humidity) || humidity <= 0) {
+            return Double.NaN;
+        }
+        double gamma = Math.log(Math.min(humidity, 100) / 100) + 17.62 * tempC / (243.12 + tempC);
+        return 243.12 * gamma / (17.62 - gamma);
+    }
+
+    /**
+     * Calculates the feels-like temperature: the wind chill when it is cold and windy, the heat index when it is
+     * hot and humid and the air temperature otherwise.
+     *
+     * @param tempC the temperature in Celsius
+     * @param humidity the relative humidity in percent (or NaN)
+     * @param windSpeed the wind speed in meters per second (or NaN)
+     *
+     * @return the feels-like temperature in Celsius (or NaN if the temperature is missing)
+     */
+    static double calculateFeelsLike(double tempC, double humidity, double windSpeed) {
+        if (Double.isNaN(tempC)) {
+            return Double.NaN;
+        }
+        double windKmh = windSpeed * 3.6;
+        if (tempC <= 10 && windKmh > 4.8) {
+            // Environment Canada / NWS wind chill index
+            double v = Math.pow(windKmh, 0.16);
+            return 13.12 + 0.6215 * tempC - 11.37 * v + 0.3965 * tempC * v;
+        } else if (tempC >= 26.7 && humidity >= 40) {
+            // NWS (Rothfusz) heat index regression
+            double t = tempC * 1.8 + 32;
+            double r = humidity;
+            double hi = -42.379 + 2.04901523 * t + 10.14333127 * r - 0.22475541 * t * r - 0.00683783 * t * t -
+                0.05481717 * r * r + 0.00122874 * t * t * r + 0.00085282 * t * r * r - 0.00000199 * t * t * r * r;
+            return (hi - 32) / 1.8;
+        } else {
+            return tempC;
+        }
+    }
+}
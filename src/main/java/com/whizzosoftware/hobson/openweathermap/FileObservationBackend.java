@@ -0,0 +1,182 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * An ObservationBackend kept in a directory that several processes (e.g. hubs on the same machine or sharing a
+ * network mount) can access.
+ *
+ * Each station has its own small file holding its lease and latest observation. Every operation reads and
+ * rewrites the file while holding an exclusive lock on it. File locks are held on behalf of the whole JVM (and
+ * overlapping locks from the same JVM fail), so operations are also serialized within the process.
+ */
+class FileObservationBackend implements ObservationBackend {
+    private static final int MAGIC = 0x4F574D53; // "OWMS"
+    private static final Object LOCK = new Object();
+
+    private final File dir;
+
+    FileObservationBackend(File dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public boolean acquireLease(String cityId, String owner, long now, long duration) throws IOException {
+        synchronized (LOCK) {
+            try (RandomAccessFile raf = open(cityId); FileLock ignored = raf.getChannel().lock()) {
+                Record r = read(raf);
+                if (r.owner == null || r.owner.equals(owner) || now >= r.expiration) {
+                    r.owner = owner;
+                    r.expiration = now + duration;
+                    write(raf, r);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void releaseLease(String cityId, String owner) throws IOException {
+        synchronized (LOCK) {
+            try (RandomAccessFile raf = open(cityId); FileLock ignored = raf.getChannel().lock()) {
+                Record r = read(raf);
+                if (owner.equals(r.owner)) {
+                    r.owner = null;
+                    r.expiration = 0;
+                    write(raf, r);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void publish(String cityId, Observation obs) throws IOException {
+        synchronized (LOCK) {
+            try (RandomAccessFile raf = open(cityId); FileLock ignored = raf.getChannel().lock()) {
+                Record r = read(raf);
+                r.obs = obs;
+                write(raf, r);
+            }
+        }
+    }
+
+    @Override
+    public Observation get(String cityId) throws IOException {
+        synchronized (LOCK) {
+            File file = getFile(cityId);
+            if (!file.exists()) {
+                return null;
+            }
+            try (RandomAccessFile raf = open(cityId); FileLock ignored = raf.getChannel().lock()) {
+                return read(raf).obs;
+            }
+        }
+    }
+
+    File getFile(String cityId) {
+        // station keys are city IDs, but don't let anything else escape the directory
+        return new File(dir, cityId.replaceAll("[^A-Za-z0-9_-]", "_") + ".obs");
+    }
+
+    private RandomAccessFile open(String cityId) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create shared observation directory: " + dir);
+        }
+        return new RandomAccessFile(getFile(cityId), "rw");
+    }
+
+    private Record read(RandomAccessFile raf) throws IOException {
+        Record r = new Record();
+        if (raf.length() > 0) {
+            byte[] b = new byte[(int)raf.length()];
+            raf.seek(0);
+            raf.readFully(b);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Unrecognized shared observation format");
+            }
+            if (in.readBoolean()) {
+                r.owner = in.readUTF();
+            }
+            r.expiration = in.readLong();
+            if (in.readBoolean()) {
+                Observation obs = new Observation();
+                obs.cityId = in.readLong();
+                obs.time = in.readLong();
+                obs.hasMain = in.readBoolean();
+                obs.temperature = in.readDouble();
+                obs.humidity = in.readDouble();
+                obs.pressure = in.readDouble();
+                obs.windSpeed = in.readDouble();
+                obs.windDirection = in.readDouble();
+                obs.latitude = in.readDouble();
+                obs.longitude = in.readDouble();
+                if (in.readBoolean()) {
+                    obs.name = in.readUTF();
+                }
+                r.obs = obs;
+            }
+        }
+        return r;
+    }
+
+    private void write(RandomAccessFile raf, Record r) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(baos);
+        out.writeInt(MAGIC);
+        out.writeBoolean(r.owner != null);
+        if (r.owner != null) {
+            out.writeUTF(r.owner);
+        }
+        out.writeLong(r.expiration);
+        Observation obs = r.obs;
+        out.writeBoolean(obs != null);
+        if (obs != null) {
+            out.writeLong(obs.cityId);
+            out.writeLong(obs.time);
+            out.writeBoolean(obs.hasMain);
+            out.writeDouble(obs.temperature);
+            out.writeDouble(obs.humidity);
+            out.writeDouble(obs.pressure);
+            out.writeDouble(obs.windSpeed);
+            out.writeDouble(obs.windDirection);
+            out.writeDouble(obs.latitude);
+            out.writeDouble(obs.longitude);
+            out.writeBoolean(obs.name != null);
+            if (obs.name != null) {
+                out.writeUTF(obs.name);
+            }
+        }
+        out.flush();
+
+        // the record may be shorter than the one it replaces
+        FileChannel ch = raf.getChannel();
+        ch.write(ByteBuffer.wrap(baos.toByteArray()), 0);
+        ch.truncate(baos.size());
+    }
+
+    private static class Record {
+        String owner;
+        long expiration;
+        Observation obs;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+/**
+ * A forecast time series for a station stored as parallel primitive arrays (one slot per forecast period) so
+ * that a full forecast can be ingested and compared without per-entry allocation.
+ *
+ * The series is populated by ObservationParser.parseForecast(), which passes each list entry to
+ * onObservation(). Entries beyond the capacity are ignored.
+ */
+class Forecast implements ObservationParser.Listener {
+    /**
+     * The number of slots in a 5 day / 3 hour forecast.
+     */
+    static final int DEFAULT_CAPACITY = 40;
+
+    private final long[] time;
+    private final double[] temperature;
+    private final double[] humidity;
+    private final double[] windSpeed;
+    private final double[] windDirection;
+    private int size;
+
+    Forecast() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    Forecast(int capacity) {
+        time = new long[capacity];
+        temperature = new double[capacity];
+        humidity = new double[capacity];
+        windSpeed = new double[capacity];
+        windDirection = new double[capacity];
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    @Override
+    public void onObservation(Observation obs) {
+        if (size < time.length) {
+            time[size] = obs.getTime();
+            temperature[size] = obs.getTemperature();
+            humidity[size] = obs.getHumidity();
+            windSpeed[size] = obs.getWindSpeed();
+            windDirection[size] = obs.getWindDirection();
+            size++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return time.length;
+    }
+
+    /**
+     * Returns the time of a slot.
+     *
+     * @param slot the slot index
+     *
+     * @return the forecast time in seconds since the epoch (or -1 if not present)
+     */
+    long getTime(int slot) {
+        return time[slot];
+    }
+
+    /**
+     * Returns the temperature of a slot.
+     *
+     * @param slot the slot index
+     *
+     * @return the temperature in Kelvin (or NaN if not present)
+     */
+    double getTemperature(int slot) {
+        return temperature[slot];
+    }
+
+    double getHumidity(int slot) {
+        return humidity[slot];
+    }
+
+    double getWindSpeed(int slot) {
+        return windSpeed[slot];
+    }
+
+    double getWindDirection(int slot) {
+        return windDirection[slot];
+    }
+
+    /**
+     * Indicates whether a slot holds the same period and values in both forecasts.
+     *
+     * @param slot the slot index
+     * @param other the forecast to compare with
+     *
+     * @return false if the slot differs or is missing from either forecast
+     */
+    boolean isSlotEqual(int slot, Forecast other) {
+        return slot < size && slot < other.size &&
+            time[slot] == other.time[slot] &&
+            same(temperature[slot], other.temperature[slot]) &&
+            same(humidity[slot], other.humidity[slot]) &&
+            same(windSpeed[slot], other.windSpeed[slot]) &&
+            same(windDirection[slot], other.windDirection[slot]);
+    }
+
+    /**
+     * Copies another forecast's slots (up to this forecast's capacity).
+     *
+     * @param other the forecast to copy
+     */
+    void copyFrom(Forecast other) {
+        size = Math.min(other.size, time.length);
+        System.arraycopy(other.time, 0, time, 0, size);
+        System.arraycopy(other.temperature, 0, temperature, 0, size);
+        System.arraycopy(other.humidity, 0, humidity, 0, size);
+        System.arraycopy(other.windSpeed, 0, windSpeed, 0, size);
+        System.arraycopy(other.windDirection, 0, windDirection, 0, size);
+    }
+
+    private static boolean same(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    @Override
+    public String toString() {
+        return "Forecast{size=" + size + (size > 0 ? ", from=" + time[0] + ", to=" + time[size - 1] : "") + "}";
+    }
+}
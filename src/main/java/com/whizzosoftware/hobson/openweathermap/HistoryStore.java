@@ -0,0 +1,605 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An embedded time-series store holding the observation history of each station.
+ *
+ * Each station has a directory of segments, each covering SEGMENT_SPAN seconds. Observations for the current
+ * segment are appended to a row-oriented log; once an observation arrives for a later segment, the log is
+ * rewritten as a sealed columnar segment that is read through a memory mapping. Both formats store every field
+ * the same way:
+ *
+ * <ul>
+ *   <li>timestamps as the varint-encoded difference from the previous timestamp (or the segment start)</li>
+ *   <li>values quantized to a fixed precision per column (see SCALES) and stored as the zigzag varint-encoded
+ *   difference from the column's previous value, shifted left with the low bit marking the value as present;
+ *   a missing value is a single zero byte</li>
+ * </ul>
+ *
+ * so a typical 5 minute observation costs about 7 bytes and a sealed segment is just the log's fields regrouped
+ * by column. Retention deletes whole segments. Only a few bytes of encoder state are kept in memory per station.
+ *
+ * All methods are synchronized so queries may be made from any thread.
+ */
+public class HistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryStore.class);
+
+    public static final int TEMPERATURE = 0;
+    public static final int HUMIDITY = 1;
+    public static final int PRESSURE = 2;
+    public static final int WIND_SPEED = 3;
+    public static final int WIND_DIRECTION = 4;
+    public static final int COLUMN_COUNT = 5;
+
+    /**
+     * The number of quantization steps per unit of each column: temperature in 0.01 Celsius, humidity in whole
+     * percent, pressure in 0.1 hPa, wind speed in 0.01 m/s and wind direction in whole degrees.
+     */
+    static final double[] SCALES = {100, 1, 10, 100, 1};
+
+    /**
+     * The length of time (in seconds) covered by a segment.
+     */
+    static final long SEGMENT_SPAN = 30 * 86400;
+
+    private static final int LOG_MAGIC = 0x4F574C31; // "OWL1"
+    private static final int SEGMENT_MAGIC = 0x4F574331; // "OWC1"
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4 * (COLUMN_COUNT + 1);
+
+    /**
+     * Receives the rows returned by a query.
+     */
+    public interface Visitor {
+        /**
+         * Called for each row in time order.
+         *
+         * @param time the observation time in seconds
+         * @param values the values indexed by column (NaN if missing); the array is reused between calls
+         */
+        void onRow(long time, double[] values);
+    }
+
+    /**
+     * The aggregate of a column's values over one downsampling interval.
+     */
+    public static class Bucket {
+        private final long start;
+        private int count;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private double sum;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(double value) {
+            min = count == 0 ? value : Math.min(min, value);
+            max = count == 0 ? value : Math.max(max, value);
+            sum += value;
+            count++;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? sum / count : Double.NaN;
+        }
+
+        @Override
+        public String toString() {
+            return start + "[n=" + count + " min=" + min + " max=" + max + " mean=" + getMean() + "]";
+        }
+    }
+
+    private final File dir;
+    private final Map<String,Station> stations = new HashMap<>();
+    private long retention;
+
+    /**
+     * Constructor.
+     *
+     * @param dir the directory to store history in
+     * @param retention how long (in seconds) history is kept
+     */
+    HistoryStore(File dir, long retention) {
+        this.dir = dir;
+        this.retention = retention;
+    }
+
+    synchronized void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /**
+     * Appends an observation to a station's history. Observations without a time, or not newer than the last one
+     * appended, are ignored. The encoded row is held in memory until flush() is called.
+     *
+     * @param key the station key
+     * @param obs the observation
+     *
+     * @return true if the observation was appended
+     *
+     * @throws IOException on failure
+     */
+    synchronized boolean append(String key, Observation obs) throws IOException {
+        long time = obs.getTime();
+        Station s = getStation(key);
+        if (time < 0 || time <= s.lastTime) {
+            return false;
+        }
+        long segmentStart = time - time % SEGMENT_SPAN;
+        if (segmentStart != s.segmentStart) {
+            s.flush();
+            File log = s.getFile(s.segmentStart, LOG_SUFFIX);
+            if (s.segmentStart > -1 && log.exists()) {
+                seal(log, s.segmentStart);
+            }
+            s.startSegment(segmentStart);
+        }
+        s.encodeRow(time, new double[] {
+            obs.getTemperature() - 273.15,
+            obs.getHumidity(),
+            obs.getPressure(),
+            obs.getWindSpeed(),
+            obs.getWindDirection()
+        });
+        return true;
+    }
+
+    /**
+     * Writes the rows appended since the last flush to each station's log.
+     *
+     * @throws IOException on failure
+     */
+    synchronized void flush() throws IOException {
+        for (Station s : stations.values()) {
+            s.flush();
+        }
+    }
+
+    /**
+     * Returns the rows of a station's history within a time range.
+     *
+     * @param key the station key
+     * @param from the start of the range in seconds (inclusive)
+     * @param to the end of the range in seconds (exclusive)
+     * @param visitor the visitor to call for each row
+     *
+     * @throws IOException on failure
+     */
+    public synchronized void query(String key, long from, long to, Visitor visitor) throws IOException {
+        Station s = stations.get(key);
+        if (s != null) {
+            s.flush();
+        }
+        double[] values = new double[COLUMN_COUNT];
+        for (long start : listSegments(getStationDir(key))) {
+            if (start + SEGMENT_SPAN > from && start < to) {
+                File seg = new File(getStationDir(key), start + SEGMENT_SUFFIX);
+                if (seg.exists()) {
+                    querySegment(seg, from, to, values, visitor);
+                } else {
+                    ByteBuffer buf = ByteBuffer.wrap(readFully(new File(getStationDir(key), start + LOG_SUFFIX)));
+                    buf.position(4);
+                    queryLog(buf, start, from, to, values, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregates a column of a station's history into fixed-length intervals.
+     *
+     * @param key the station key
+     * @param column the column (e.g. TEMPERATURE)
+     * @param from the start of the range in seconds (inclusive)
+     * @param to the end of the range in seconds (exclusive)
+     * @param interval the length of each interval in seconds
+     *
+     * @return the intervals that contain at least one value, in time order
+     *
+     * @throws IOException on failure
+     */
+    public synchronized List<Bucket> downsample(String key, final int column, final long from, long to, final long interval) throws IOException {
+        final List<Bucket> buckets = new ArrayList<>();
+        query(key, from, to, new Visitor() {
+            @Override
+            public void onRow(long time, double[] values) {
+                if (!Double.isNaN(values[column])) {
+                    long start = from + (time - from) / interval * interval;
+                    Bucket b = buckets.isEmpty() ? null : buckets.get(buckets.size() - 1);
+                    if (b == null || b.start != start) {
+                        b = new Bucket(start);
+                        buckets.add(b);
+                    }
+                    b.add(values[column]);
+                }
+            }
+        });
+        return buckets;
+    }
+
+    /**
+     * Deletes every segment that ended before the retention period.
+     *
+     * @param now the current time in seconds
+     *
+     * @return the number of segments deleted
+     */
+    synchronized int applyRetention(long now) {
+        int count = 0;
+        File[] dirs = dir.listFiles();
+        if (dirs != null) {
+            long cutoff = now - retention;
+            for (File d : dirs) {
+                if (d.isDirectory()) {
+                    for (long start : listSegments(d)) {
+                        if (start + SEGMENT_SPAN <= cutoff) {
+                            new File(d, start + SEGMENT_SUFFIX).delete();
+                            new File(d, start + LOG_SUFFIX).delete();
+                            count++;
+                        }
+                    }
+                    String[] remaining = d.list();
+                    if (remaining != null && remaining.length == 0 && d.delete()) {
+                        stations.remove(d.getName());
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the on-disk size of a station's history.
+     *
+     * @param key the station key
+     *
+     * @return the size in bytes
+     */
+    synchronized long getSize(String key) {
+        long size = 0;
+        File[] files = getStationDir(key).listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.length();
+            }
+        }
+        return size;
+    }
+
+    File getStationDir(String key) {
+        // station keys are city IDs, but don't let anything else escape the directory
+        return new File(dir, key.replaceAll("[^A-Za-z0-9_-]", "_"));
+    }
+
+    private Station getStation(String key) throws IOException {
+        Station s = stations.get(key);
+        if (s == null) {
+            s = new Station(getStationDir(key));
+            s.recover();
+            stations.put(key, s);
+        }
+        return s;
+    }
+
+    /**
+     * Rewrites a log as a columnar segment and deletes the log.
+     */
+    private void seal(File log, long segmentStart) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(readFully(log));
+        buf.position(4);
+        ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMN_COUNT + 1];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ByteArrayOutputStream();
+        }
+        int rows = 0;
+        long firstTime = -1;
+        long time = segmentStart;
+        // the fields of each row are copied byte-for-byte into their column
+        while (buf.hasRemaining()) {
+            int start = buf.position();
+            time += readVarLong(buf);
+            columns[0].write(buf.array(), start, buf.position() - start);
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                start = buf.position();
+                readVarLong(buf);
+                columns[c + 1].write(buf.array(), start, buf.position() - start);
+            }
+            if (rows++ == 0) {
+                firstTime = time;
+            }
+        }
+
+        File seg = new File(log.getParentFile(), segmentStart + SEGMENT_SUFFIX);
+        File tmp = new File(log.getParentFile(), segmentStart + SEGMENT_SUFFIX + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC);
+            header.putInt(rows);
+            header.putLong(segmentStart);
+            header.putLong(firstTime);
+            header.putLong(time);
+            for (ByteArrayOutputStream column : columns) {
+                header.putInt(column.size());
+            }
+            out.write(header.array());
+            for (ByteArrayOutputStream column : columns) {
+                column.writeTo(out);
+            }
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(seg)) {
+            throw new IOException("Unable to create history segment " + seg);
+        }
+        if (!log.delete()) {
+            logger.warn("Unable to delete sealed history log {}", log);
+        }
+        logger.debug("Sealed {} history row(s) into {} ({} bytes)", rows, seg, seg.length());
+    }
+
+    private void querySegment(File file, long from, long to, double[] values, Visitor visitor) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != SEGMENT_MAGIC) {
+                throw new IOException("Unrecognized history segment format: " + file);
+            }
+            int rows = buf.getInt();
+            long segmentStart = buf.getLong();
+            long firstTime = buf.getLong();
+            long lastTime = buf.getLong();
+            if (rows == 0 || lastTime < from || firstTime >= to) {
+                return;
+            }
+            ByteBuffer[] columns = new ByteBuffer[COLUMN_COUNT + 1];
+            int offset = SEGMENT_HEADER_SIZE;
+            for (int i = 0; i < columns.length; i++) {
+                int length = buf.getInt();
+                ByteBuffer b = buf.duplicate();
+                b.position(offset);
+                b.limit(offset + length);
+                columns[i] = b;
+                offset += length;
+            }
+            long time = segmentStart;
+            long[] last = new long[COLUMN_COUNT];
+            for (int r = 0; r < rows; r++) {
+                time += readVarLong(columns[0]);
+                for (int c = 0; c < COLUMN_COUNT; c++) {
+                    values[c] = decodeValue(readVarLong(columns[c + 1]), last, c);
+                }
+                if (time >= to) {
+                    break;
+                } else if (time >= from) {
+                    visitor.onRow(time, values);
+                }
+            }
+        }
+    }
+
+    private void queryLog(ByteBuffer buf, long segmentStart, long from, long to, double[] values, Visitor visitor) {
+        long time = segmentStart;
+        long[] last = new long[COLUMN_COUNT];
+        while (buf.hasRemaining()) {
+            time += readVarLong(buf);
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                values[c] = decodeValue(readVarLong(buf), last, c);
+            }
+            if (time >= to) {
+                break;
+            } else if (time >= from) {
+                visitor.onRow(time, values);
+            }
+        }
+    }
+
+    private static List<Long> listSegments(File stationDir) {
+        List<Long> starts = new ArrayList<>();
+        String[] names = stationDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(LOG_SUFFIX)) {
+                    try {
+                        Long start = Long.parseLong(name.substring(0, name.length() - 4));
+                        if (!starts.contains(start)) {
+                            starts.add(start);
+                        }
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] b = new byte[(int)raf.length()];
+            raf.readFully(b);
+            return b;
+        }
+    }
+
+    /**
+     * Encodes a value as the difference from the column's previous value.
+     */
+    static long encodeValue(double value, long[] last, int column) {
+        if (Double.isNaN(value)) {
+            return 0;
+        }
+        long q = Math.round(value * SCALES[column]);
+        long delta = q - last[column];
+        last[column] = q;
+        return (((delta << 1) ^ (delta >> 63)) << 1) | 1;
+    }
+
+    static double decodeValue(long v, long[] last, int column) {
+        if ((v & 1) == 0) {
+            return Double.NaN;
+        }
+        long zigzag = v >>> 1;
+        long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+        last[column] += delta;
+        return last[column] / SCALES[column];
+    }
+
+    static void writeVarLong(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int)v);
+    }
+
+    static long readVarLong(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            v |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    /**
+     * A station's encoder state and the rows not yet written to its log.
+     */
+    private static class Station {
+        final File dir;
+        final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        final long[] last = new long[COLUMN_COUNT];
+        long segmentStart = -1;
+        long lastTime = -1;
+
+        Station(File dir) {
+            this.dir = dir;
+        }
+
+        File getFile(long start, String suffix) {
+            return new File(dir, start + suffix);
+        }
+
+        void startSegment(long start) {
+            segmentStart = start;
+            Arrays.fill(last, 0);
+            pending.reset();
+        }
+
+        void encodeRow(long time, double[] values) throws IOException {
+            writeVarLong(pending, time - (lastTime >= segmentStart ? lastTime : segmentStart));
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                writeVarLong(pending, encodeValue(values[c], last, c));
+            }
+            lastTime = time;
+        }
+
+        void flush() throws IOException {
+            if (pending.size() > 0) {
+                File log = getFile(segmentStart, LOG_SUFFIX);
+                boolean exists = log.exists();
+                if (!exists && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Unable to create history directory: " + dir);
+                }
+                try (FileOutputStream out = new FileOutputStream(log, true)) {
+                    if (!exists) {
+                        ByteBuffer header = ByteBuffer.allocate(4).putInt(LOG_MAGIC);
+                        out.write(header.array());
+                    }
+                    pending.writeTo(out);
+                }
+                pending.reset();
+            }
+        }
+
+        /**
+         * Restores the encoder state from the station's newest log (or segment), truncating a log whose final row
+         * was only partially written.
+         */
+        void recover() throws IOException {
+            List<Long> starts = listSegments(dir);
+            if (starts.isEmpty()) {
+                return;
+            }
+            long start = starts.get(starts.size() - 1);
+            File log = getFile(start, LOG_SUFFIX);
+            if (log.exists()) {
+                byte[] b = readFully(log);
+                ByteBuffer buf = ByteBuffer.wrap(b);
+                if (b.length < 4 || buf.getInt() != LOG_MAGIC) {
+                    throw new IOException("Unrecognized history log format: " + log);
+                }
+                segmentStart = start;
+                long time = start;
+                long[] state = new long[COLUMN_COUNT];
+                int good = buf.position();
+                try {
+                    while (buf.hasRemaining()) {
+                        time += readVarLong(buf);
+                        for (int c = 0; c < COLUMN_COUNT; c++) {
+                            decodeValue(readVarLong(buf), state, c);
+                        }
+                        good = buf.position();
+                        lastTime = time;
+                        System.arraycopy(state, 0, last, 0, COLUMN_COUNT);
+                    }
+                } catch (BufferUnderflowException e) {
+                    logger.warn("Truncating partially written history row in {}", log);
+                    try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+                        raf.setLength(good);
+                    }
+                }
+            } else {
+                // the newest segment is sealed; appends for it are no longer accepted
+                lastTime = start + SEGMENT_SPAN - 1;
+                segmentStart = start;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * The mechanism used to send OpenWeatherMap HTTP requests. Responses and failures are delivered to a Callback on
+ * the plugin event loop.
+ */
+interface HttpTransport {
+    /**
+     * Receives the outcome of a request.
+     */
+    interface Callback {
+        void onResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx);
+        void onFailure(Throwable cause, RequestContext ctx);
+    }
+
+    /**
+     * Sends a GET request.
+     *
+     * @param uri the URI to request
+     * @param headers the request headers (or null for none)
+     * @param ctx the request context
+     */
+    void send(URI uri, Map<String,String> headers, RequestContext ctx);
+
+    /**
+     * Releases the transport's resources. Requests already sent may still complete.
+     */
+    void close();
+}
@@ -0,0 +1,99 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the ETag and Last-Modified validators returned for each request so subsequent requests can be made
+ * conditional. The cache is bounded and evicts the least recently used entries.
+ */
+class HttpValidatorCache {
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private final Map<String,Validators> cache;
+
+    HttpValidatorCache(final int maxEntries) {
+        cache = new LinkedHashMap<String,Validators>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Validators> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Records the validators present in a set of response headers.
+     *
+     * @param key the request key
+     * @param headers the response headers (may be null)
+     */
+    void update(String key, Map<String,String> headers) {
+        String etag = getHeader(headers, HEADER_ETAG);
+        String lastModified = getHeader(headers, HEADER_LAST_MODIFIED);
+        if (etag != null || lastModified != null) {
+            cache.put(key, new Validators(etag, lastModified));
+        } else {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Returns the conditional request headers for a request.
+     *
+     * @param key the request key
+     *
+     * @return a Map of headers or null if there are no validators for the request
+     */
+    Map<String,String> createRequestHeaders(String key) {
+        Validators v = cache.get(key);
+        if (v != null) {
+            Map<String,String> headers = new HashMap<>();
+            if (v.etag != null) {
+                headers.put(HEADER_IF_NONE_MATCH, v.etag);
+            }
+            if (v.lastModified != null) {
+                headers.put(HEADER_IF_MODIFIED_SINCE, v.lastModified);
+            }
+            return headers;
+        }
+        return null;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    static String getHeader(Map<String,String> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String,String> e : headers.entrySet()) {
+                if (name.equalsIgnoreCase(e.getKey())) {
+                    return e.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class Validators {
+        final String etag;
+        final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which stations currently have a request outstanding so that concurrent requests for the same station
+ * can be coalesced into the one already in flight. A request that is still outstanding after its deadline is
+ * superseded: it no longer blocks new requests for its stations and is cancelled so a transport that has not sent
+ * it yet can drop it.
+ */
+class InFlightRequests {
+    private final Map<String,Entry> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a request for a station has been sent.
+     *
+     * @param cityId the city ID
+     * @param ctx the request context
+     * @param now the current time in milliseconds
+     */
+    void begin(String cityId, RequestContext ctx, long now) {
+        requests.put(cityId, new Entry(ctx, now));
+    }
+
+    /**
+     * Indicates whether a station has a request outstanding.
+     *
+     * @param cityId the city ID
+     *
+     * @return a boolean
+     */
+    boolean contains(String cityId) {
+        return requests.containsKey(cityId);
+    }
+
+    /**
+     * Records that a request has completed (successfully or not).
+     *
+     * @param ctx the request context
+     */
+    void complete(RequestContext ctx) {
+        for (String cityId : ctx.getCityIds()) {
+            Entry e = requests.get(cityId);
+            if (e != null && e.ctx == ctx) {
+                requests.remove(cityId);
+            }
+        }
+    }
+
+    /**
+     * Forgets requests that have been outstanding for longer than a deadline and cancels those that no longer
+     * cover any station.
+     *
+     * @param now the current time in milliseconds
+     * @param deadline the deadline in milliseconds
+     *
+     * @return the cancelled requests
+     */
+    List<RequestContext> supersede(long now, long deadline) {
+        Set<RequestContext> expired = new LinkedHashSet<>();
+        for (Iterator<Entry> it = requests.values().iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (now - e.sent > deadline) {
+                it.remove();
+                expired.add(e.ctx);
+            }
+        }
+        List<RequestContext> results = new ArrayList<>(expired.size());
+        for (RequestContext ctx : expired) {
+            if (!isTracking(ctx)) {
+                ctx.cancel();
+                results.add(ctx);
+            }
+        }
+        return results;
+    }
+
+    private boolean isTracking(RequestContext ctx) {
+        for (String cityId : ctx.getCityIds()) {
+            Entry e = requests.get(cityId);
+            if (e != null && e.ctx == ctx) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return requests.size();
+    }
+
+    private static class Entry {
+        final RequestContext ctx;
+        final long sent;
+
+        Entry(RequestContext ctx, long sent) {
+            this.ctx = ctx;
+            this.sent = sent;
+        }
+    }
+}
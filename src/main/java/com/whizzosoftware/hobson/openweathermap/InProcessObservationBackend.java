@@ -0,0 +1,62 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An ObservationBackend shared by the plugin instances running in the same JVM.
+ */
+class InProcessObservationBackend implements ObservationBackend {
+    /**
+     * The instance shared by every plugin instance in the process.
+     */
+    static final InProcessObservationBackend INSTANCE = new InProcessObservationBackend();
+
+    private final Map<String,String> owners = new HashMap<>();
+    private final Map<String,Long> expirations = new HashMap<>();
+    private final Map<String,Observation> observations = new HashMap<>();
+
+    @Override
+    public synchronized boolean acquireLease(String cityId, String owner, long now, long duration) {
+        String holder = owners.get(cityId);
+        if (holder == null || holder.equals(owner) || now >= expirations.get(cityId)) {
+            owners.put(cityId, owner);
+            expirations.put(cityId, now + duration);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void releaseLease(String cityId, String owner) {
+        if (owner.equals(owners.get(cityId))) {
+            owners.remove(cityId);
+            expirations.remove(cityId);
+        }
+    }
+
+    @Override
+    public synchronized void publish(String cityId, Observation obs) {
+        Observation o = observations.get(cityId);
+        if (o == null) {
+            observations.put(cityId, obs.copy());
+        } else {
+            o.copyFrom(obs);
+        }
+    }
+
+    @Override
+    public synchronized Observation get(String cityId) {
+        Observation o = observations.get(cityId);
+        return o != null ? o.copy() : null;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.json.JSONObject;
+
+/**
+ * A single OpenWeatherMap current conditions observation. Values are stored as primitives with missing values
+ * represented as NaN (or -1 for the city ID and timestamp).
+ */
+public class Observation {
+    long cityId = -1;
+    String name;
+    long time = -1;
+    double temperature = Double.NaN;
+    double humidity = Double.NaN;
+    double pressure = Double.NaN;
+    double windSpeed = Double.NaN;
+    double windDirection = Double.NaN;
+    double latitude = Double.NaN;
+    double longitude = Double.NaN;
+    boolean hasMain;
+
+    /**
+     * Creates an Observation from a JSONObject representation of an OpenWeatherMap response.
+     *
+     * @param json the JSON object
+     *
+     * @return an Observation instance
+     */
+    static Observation fromJson(JSONObject json) {
+        Observation obs = new Observation();
+        if (json.has("id")) {
+            obs.cityId = json.getLong("id");
+        }
+        if (json.has("name")) {
+            obs.name = json.getString("name");
+        }
+        if (json.has("dt")) {
+            obs.time = json.getLong("dt");
+        }
+        if (json.has("main")) {
+            JSONObject main = json.getJSONObject("main");
+            obs.hasMain = true;
+            if (main.has("temp")) {
+                obs.temperature = main.getDouble("temp");
+            }
+            if (main.has("humidity")) {
+                obs.humidity = main.getDouble("humidity");
+            }
+            if (main.has("pressure")) {
+                obs.pressure = main.getDouble("pressure");
+            }
+        }
+        if (json.has("coord")) {
+            JSONObject coord = json.getJSONObject("coord");
+            if (coord.has("lat")) {
+                obs.latitude = coord.getDouble("lat");
+            }
+            if (coord.has("lon")) {
+                obs.longitude = coord.getDouble("lon");
+            }
+        }
+        if (json.has("wind")) {
+            JSONObject wind = json.getJSONObject("wind");
+            if (wind.has("speed")) {
+                obs.windSpeed = wind.getDouble("speed");
+            }
+            if (wind.has("deg")) {
+                obs.windDirection = wind.getDouble("deg");
+            }
+        }
+        return obs;
+    }
+
+    Observation copy() {
+        Observation obs = new Observation();
+        obs.copyFrom(this);
+        return obs;
+    }
+
+    void copyFrom(Observation obs) {
+        cityId = obs.cityId;
+        name = obs.name;
+        time = obs.time;
+        temperature = obs.temperature;
+        humidity = obs.humidity;
+        pressure = obs.pressure;
+        windSpeed = obs.windSpeed;
+        windDirection = obs.windDirection;
+        latitude = obs.latitude;
+        longitude = obs.longitude;
+        hasMain = obs.hasMain;
+    }
+
+    /**
+     * Returns a hash of the observation's time and values, used to recognize a response that has already been
+     * processed.
+     *
+     * @return an int
+     */
+    int fingerprint() {
+        int h = (int)(time ^ (time >>> 32));
+        h = 31 * h + (name != null ? name.hashCode() : 0);
+        h = 31 * h + hashDouble(temperature);
+        h = 31 * h + hashDouble(humidity);
+        h = 31 * h + hashDouble(pressure);
+        h = 31 * h + hashDouble(windSpeed);
+        h = 31 * h + hashDouble(windDirection);
+        return h;
+    }
+
+    private static int hashDouble(double d) {
+        long l = Double.doubleToLongBits(d);
+        return (int)(l ^ (l >>> 32));
+    }
+
+    /**
+     * Indicates whether another observation has the same weather readings as this one (regardless of time).
+     *
+     * @param obs the observation to compare against
+     *
+     * @return a boolean
+     */
+    boolean hasSameReadings(Observation obs) {
+        return Double.compare(temperature, obs.temperature) == 0 &&
+            Double.compare(humidity, obs.humidity) == 0 &&
+            Double.compare(pressure, obs.pressure) == 0 &&
+            Double.compare(windSpeed, obs.windSpeed) == 0 &&
+            Double.compare(windDirection, obs.windDirection) == 0;
+    }
+
+    void reset() {
+        cityId = -1;
+        name = null;
+        time = -1;
+        temperature = Double.NaN;
+        humidity = Double.NaN;
+        pressure = Double.NaN;
+        windSpeed = Double.NaN;
+        windDirection = Double.NaN;
+        latitude = Double.NaN;
+        longitude = Double.NaN;
+        hasMain = false;
+    }
+
+    public long getCityId() {
+        return cityId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the observation time.
+     *
+     * @return the time in seconds since the epoch (or -1 if not present)
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the temperature.
+     *
+     * @return the temperature in Kelvin (or NaN if not present)
+     */
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    /**
+     * Returns the atmospheric pressure.
+     *
+     * @return the pressure in hPa (or NaN if not present)
+     */
+    public double getPressure() {
+        return pressure;
+    }
+
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+
+    public double getWindDirection() {
+        return windDirection;
+    }
+
+    /**
+     * Returns the latitude of the station.
+     *
+     * @return the latitude (or NaN if not present)
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Returns the longitude of the station.
+     *
+     * @return the longitude (or NaN if not present)
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public boolean hasMain() {
+        return hasMain;
+    }
+
+    @Override
+    public String toString() {
+        return "Observation{cityId=" + cityId + ", name=" + name + ", time=" + time + ", temperature=" + temperature + ", humidity=" + humidity + ", windSpeed=" + windSpeed + ", windDirection=" + windDirection + "}";
+    }
+}
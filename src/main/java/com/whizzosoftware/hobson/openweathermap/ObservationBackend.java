@@ -0,0 +1,64 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.io.IOException;
+
+/**
+ * A store shared by plugin instances through which one instance (the lease holder) polls each station and the
+ * others pick up its observations. Implementations must be thread-safe.
+ */
+interface ObservationBackend {
+    /**
+     * Acquires or renews the lease that makes an instance the poller of a station. The lease is granted if it is
+     * unheld, has expired or is already held by the caller.
+     *
+     * @param cityId the station key
+     * @param owner the ID of the plugin instance
+     * @param now the current time in milliseconds
+     * @param duration how long (in milliseconds) the lease lasts if it is not renewed
+     *
+     * @return true if the caller holds the lease
+     *
+     * @throws IOException on failure
+     */
+    boolean acquireLease(String cityId, String owner, long now, long duration) throws IOException;
+
+    /**
+     * Gives up a lease so another instance can take over polling the station immediately.
+     *
+     * @param cityId the station key
+     * @param owner the ID of the plugin instance (the lease is left alone if it is held by anyone else)
+     *
+     * @throws IOException on failure
+     */
+    void releaseLease(String cityId, String owner) throws IOException;
+
+    /**
+     * Stores the latest observation for a station.
+     *
+     * @param cityId the station key
+     * @param obs the observation (the backend keeps its own copy)
+     *
+     * @throws IOException on failure
+     */
+    void publish(String cityId, Observation obs) throws IOException;
+
+    /**
+     * Returns the latest observation published for a station.
+     *
+     * @param cityId the station key
+     *
+     * @return a new Observation instance (or null if none has been published)
+     *
+     * @throws IOException on failure
+     */
+    Observation get(String cityId) throws IOException;
+}
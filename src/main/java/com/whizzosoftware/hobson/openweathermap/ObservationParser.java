@@ -0,0 +1,615 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A streaming parser that extracts the handful of values the plugin uses from OpenWeatherMap JSON responses
+ * without building a DOM. Everything else in the payload is skipped as it is read.
+ *
+ * Instances reuse their internal buffers and are therefore not thread-safe.
+ */
+public class ObservationParser {
+    private static final Logger logger = LoggerFactory.getLogger(ObservationParser.class);
+
+    /**
+     * The number of bytes of a response that doesn't support mark/reset that are retained so it can be re-parsed
+     * as a JSONObject if the streaming parser rejects it.
+     */
+    static final int FALLBACK_BUFFER_SIZE = 1024 * 1024;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Receives each station observation found in a group response. The Observation instance is reused between
+     * callbacks so implementations must copy any values they need to retain.
+     */
+    public interface Listener {
+        void onObservation(Observation obs);
+    }
+
+    private final byte[] buf = new byte[8192];
+    private final byte[] token = new byte[256];
+    private final Observation scratch = new Observation();
+    private InputStream in;
+    private int pos;
+    private int limit;
+    private int tokenLength;
+    private int groupCount;
+
+    /**
+     * Parses a single station response (e.g. from the weather endpoint).
+     *
+     * @param is the response body
+     * @param obs the observation to populate
+     *
+     * @throws IOException on read failure or malformed JSON
+     */
+    public void parse(InputStream is, Observation obs) throws IOException {
+        begin(is);
+        try {
+            obs.reset();
+            expect('{');
+            parseStation(obs);
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Parses a group response, invoking the listener once for each entry in its list.
+     *
+     * @param is the response body
+     * @param listener the listener to notify
+     *
+     * @return the number of observations parsed
+     * @throws IOException on read failure or malformed JSON
+     */
+    public int parseGroup(InputStream is, Listener listener) throws IOException {
+        begin(is);
+        groupCount = 0;
+        try {
+            expect('{');
+            if (nextNonWhitespace() == '}') {
+                return 0;
+            }
+            pos--;
+            do {
+                readKey();
+                if (tokenEquals("list")) {
+                    expect('[');
+                    if (nextNonWhitespace() != ']') {
+                        pos--;
+                        do {
+                            expect('{');
+                            scratch.reset();
+                            parseStation(scratch);
+                            listener.onObservation(scratch);
+                            groupCount++;
+                        } while (endOfElement(']'));
+                    }
+                } else {
+                    skipValue();
+                }
+            } while (endOfElement('}'));
+            return groupCount;
+        } finally {
+            in = null;
+        }
+    }
+
+    /**
+     * Parses a single station response like parse(), falling back to JSONObject if the streaming parser rejects it.
+     * A body that supports mark/reset (e.g. one already in memory) is re-read in place; any other is buffered as it
+     * is read so it can be re-read.
+     *
+     * @param is the response body
+     * @param obs the observation to populate
+     *
+     * @throws IOException on read failure, if the response is malformed or if it is too large to re-read
+     */
+    public void parseWithFallback(InputStream is, Observation obs) throws IOException {
+        InputStream in = markable(is);
+        try {
+            parse(in, obs);
+        } catch (IOException e) {
+            JSONObject json = reparse(in, e);
+            try {
+                obs.copyFrom(Observation.fromJson(json));
+            } catch (JSONException je) {
+                throw new IOException("Malformed response", je);
+            }
+        }
+    }
+
+    /**
+     * Parses a group response like parseGroup(), falling back to JSONObject if the streaming parser rejects it.
+     * Entries the streaming parser dispatched before it failed are not dispatched again.
+     *
+     * @param is the response body
+     * @param listener the listener to notify
+     *
+     * @return the number of observations parsed
+     * @throws IOException on read failure, if the response is malformed or if it is too large to re-read
+     */
+    public int parseGroupWithFallback(InputStream is, Listener listener) throws IOException {
+        InputStream in = markable(is);
+        try {
+            return parseGroup(in, listener);
+        } catch (IOException e) {
+            int dispatched = groupCount;
+            JSONObject json = reparse(in, e);
+            if (!json.has("list")) {
+                throw new IOException("Malformed group response (missing list)", e);
+            }
+            try {
+                JSONArray list = json.getJSONArray("list");
+                for (int i = dispatched; i < list.length(); i++) {
+                    listener.onObservation(Observation.fromJson(list.getJSONObject(i)));
+                }
+                return list.length();
+            } catch (JSONException je) {
+                throw new IOException("Malformed group response", je);
+            }
+        }
+    }
+
+    /**
+     * Parses a forecast response (e.g. from the forecast endpoint) into a forecast series. The series is reset
+     * first and each entry in the response's list populates the next slot.
+     *
+     * @param is the response body
+     * @param forecast the forecast to populate
+     *
+     * @return the number of entries parsed
+     * @throws IOException on read failure or malformed JSON
+     */
+    int parseForecast(InputStream is, Forecast forecast) throws IOException {
+        forecast.reset();
+        return parseGroup(is, forecast);
+    }
+
+    private static InputStream markable(InputStream is) {
+        InputStream in = is.markSupported() ? is : new BufferedInputStream(is);
+        in.mark(FALLBACK_BUFFER_SIZE);
+        return in;
+    }
+
+    private static JSONObject reparse(InputStream in, IOException cause) throws IOException {
+        logger.debug("Streaming parse failed; falling back to JSONObject", cause);
+        try {
+            in.reset();
+        } catch (IOException e) {
+            throw new IOException("Response is too large to re-parse as a JSONObject", cause);
+        }
+        try {
+            return new JSONObject(new JSONTokener(in));
+        } catch (JSONException e) {
+            throw new IOException("Malformed response", e);
+        }
+    }
+
+    private void begin(InputStream is) {
+        this.in = is;
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    private void parseStation(Observation obs) throws IOException {
+        if (nextNonWhitespace() == '}') {
+            return;
+        }
+        pos--;
+        do {
+            readKey();
+            if (tokenEquals("id")) {
+                obs.cityId = (long)readDouble(-1);
+            } else if (tokenEquals("name")) {
+                obs.name = readString();
+            } else if (tokenEquals("dt")) {
+                obs.time = (long)readDouble(-1);
+            } else if (tokenEquals("main")) {
+                obs.hasMain = true;
+                parseMain(obs);
+            } else if (tokenEquals("wind")) {
+                parseWind(obs);
+            } else if (tokenEquals("coord")) {
+                parseCoord(obs);
+            } else {
+                skipValue();
+            }
+        } while (endOfElement('}'));
+    }
+
+    private void parseMain(Observation obs) throws IOException {
+        expect('{');
+        if (nextNonWhitespace() == '}') {
+            return;
+        }
+        pos--;
+        do {
+            readKey();
+            if (tokenEquals("temp")) {
+                obs.temperature = readDouble(Double.NaN);
+            } else if (tokenEquals("humidity")) {
+                obs.humidity = readDouble(Double.NaN);
+            } else if (tokenEquals("pressure")) {
+                obs.pressure = readDouble(Double.NaN);
+            } else {
+                skipValue();
+            }
+        } while (endOfElement('}'));
+    }
+
+    private void parseWind(Observation obs) throws IOException {
+        expect('{');
+        if (nextNonWhitespace() == '}') {
+            return;
+        }
+        pos--;
+        do {
+            readKey();
+            if (tokenEquals("speed")) {
+                obs.windSpeed = readDouble(Double.NaN);
+            } else if (tokenEquals("deg")) {
+                obs.windDirection = readDouble(Double.NaN);
+            } else {
+                skipValue();
+            }
+        } while (endOfElement('}'));
+    }
+
+    private void parseCoord(Observation obs) throws IOException {
+        expect('{');
+        if (nextNonWhitespace() == '}') {
+            return;
+        }
+        pos--;
+        do {
+            readKey();
+            if (tokenEquals("lat")) {
+                obs.latitude = readDouble(Double.NaN);
+            } else if (tokenEquals("lon")) {
+                obs.longitude = readDouble(Double.NaN);
+            } else {
+                skipValue();
+            }
+        } while (endOfElement('}'));
+    }
+
+    /**
+     * Reads an object key and its trailing colon into the token buffer.
+     */
+    private void readKey() throws IOException {
+        expect('"');
+        tokenLength = 0;
+        int c;
+        while ((c = read()) != '"') {
+            if (c == '\\') {
+                c = read();
+            }
+            appendToken(c);
+        }
+        expect(':');
+    }
+
+    private boolean tokenEquals(String s) {
+        if (s.length() != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consumes the separator following an array element or object member.
+     *
+     * @param close the closing character of the enclosing array or object
+     *
+     * @return true if another element follows, false if the enclosing structure has ended
+     */
+    private boolean endOfElement(char close) throws IOException {
+        int c = nextNonWhitespace();
+        if (c == ',') {
+            return true;
+        } else if (c == close) {
+            return false;
+        } else {
+            throw unexpected(c);
+        }
+    }
+
+    private double readDouble(double nullValue) throws IOException {
+        int c = nextNonWhitespace();
+        if (c == 'n') {
+            skipLiteral();
+            return nullValue;
+        }
+        boolean quoted = (c == '"');
+        if (!quoted) {
+            pos--;
+        }
+
+        boolean negative = false;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int exponent = 0;
+        boolean exponentNegative = false;
+        boolean slowPath = false;
+
+        tokenLength = 0;
+        c = read();
+        if (c == '-') {
+            negative = true;
+            appendToken(c);
+            c = read();
+        }
+        while (c >= '0' && c <= '9') {
+            appendToken(c);
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa > 0) {
+                    digits++;
+                }
+            } else {
+                slowPath = true;
+            }
+            c = read();
+        }
+        if (c == '.') {
+            appendToken(c);
+            c = read();
+            while (c >= '0' && c <= '9') {
+                appendToken(c);
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa > 0) {
+                        digits++;
+                    }
+                    scale++;
+                } else {
+                    slowPath = true;
+                }
+                c = read();
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            appendToken(c);
+            c = read();
+            if (c == '-' || c == '+') {
+                exponentNegative = (c == '-');
+                appendToken(c);
+                c = read();
+            }
+            while (c >= '0' && c <= '9') {
+                appendToken(c);
+                exponent = exponent * 10 + (c - '0');
+                if (exponent > 1000) {
+                    slowPath = true;
+                }
+                c = read();
+            }
+        }
+        if (quoted) {
+            if (c != '"') {
+                throw unexpected(c);
+            }
+        } else {
+            pos--;
+        }
+
+        if (tokenLength == 0 || (tokenLength == 1 && negative)) {
+            throw new IOException("Expected a number in OpenWeatherMap response");
+        }
+
+        int tenPower = (exponentNegative ? -exponent : exponent) - scale;
+        if (!slowPath && digits <= 15 && tenPower >= -22 && tenPower <= 22) {
+            double d = (double)mantissa;
+            d = tenPower < 0 ? d / POWERS_OF_TEN[-tenPower] : d * POWERS_OF_TEN[tenPower];
+            return negative ? -d : d;
+        } else {
+            return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private String readString() throws IOException {
+        int c = nextNonWhitespace();
+        if (c == 'n') {
+            skipLiteral();
+            return null;
+        } else if (c != '"') {
+            throw unexpected(c);
+        }
+        tokenLength = 0;
+        while ((c = read()) != '"') {
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        appendToken('\b');
+                        break;
+                    case 'f':
+                        appendToken('\f');
+                        break;
+                    case 'n':
+                        appendToken('\n');
+                        break;
+                    case 'r':
+                        appendToken('\r');
+                        break;
+                    case 't':
+                        appendToken('\t');
+                        break;
+                    case 'u':
+                        appendCodePoint(readUnicodeEscape());
+                        break;
+                    default:
+                        appendToken(c);
+                        break;
+                }
+            } else {
+                appendToken(c);
+            }
+        }
+        return new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+    }
+
+    private int readUnicodeEscape() throws IOException {
+        int cp = readHex();
+        if (Character.isHighSurrogate((char)cp)) {
+            if (read() == '\\' && read() == 'u') {
+                int low = readHex();
+                if (Character.isLowSurrogate((char)low)) {
+                    return Character.toCodePoint((char)cp, (char)low);
+                }
+            }
+            return '?';
+        }
+        return cp;
+    }
+
+    private int readHex() throws IOException {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = read();
+            int d = Character.digit(c, 16);
+            if (d < 0) {
+                throw unexpected(c);
+            }
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            appendToken(cp);
+        } else if (cp < 0x800) {
+            appendToken(0xC0 | (cp >> 6));
+            appendToken(0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            appendToken(0xE0 | (cp >> 12));
+            appendToken(0x80 | ((cp >> 6) & 0x3F));
+            appendToken(0x80 | (cp & 0x3F));
+        } else {
+            appendToken(0xF0 | (cp >> 18));
+            appendToken(0x80 | ((cp >> 12) & 0x3F));
+            appendToken(0x80 | ((cp >> 6) & 0x3F));
+            appendToken(0x80 | (cp & 0x3F));
+        }
+    }
+
+    private void appendToken(int c) {
+        // values longer than the token buffer (e.g. very long station names) are truncated
+        if (tokenLength < token.length) {
+            token[tokenLength++] = (byte)c;
+        }
+    }
+
+    private void skipValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                skipStructure('{', '}');
+                break;
+            case '[':
+                skipStructure('[', ']');
+                break;
+            case '"':
+                skipString();
+                break;
+            default:
+                pos--;
+                skipLiteral();
+                break;
+        }
+    }
+
+    private void skipStructure(char open, char close) throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            if (c == '"') {
+                skipString();
+            } else if (c == open) {
+                depth++;
+            } else if (c == close) {
+                depth--;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        int c;
+        while ((c = read()) != '"') {
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != ',' && c != '}' && c != ']' && c > ' ');
+        pos--;
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = nextNonWhitespace();
+        if (c != expected) {
+            throw unexpected(c);
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw new IOException("Unexpected end of OpenWeatherMap response");
+            }
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    private IOException unexpected(int c) {
+        return new IOException("Unexpected character '" + (char)c + "' in OpenWeatherMap response");
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only file that holds the most recent observation for each station so devices can be populated
+ * immediately when the plugin starts.
+ *
+ * Each appended record supersedes any earlier record for the same station. When the file holds more than
+ * COMPACTION_FACTOR times as many records as there are stations, it is rewritten with only the latest records.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class ObservationStore {
+    private static final Logger logger = LoggerFactory.getLogger(ObservationStore.class);
+
+    private static final int MAGIC = 0x4F574D31; // "OWM1"
+    private static final int COMPACTION_FACTOR = 4;
+
+    private final File file;
+    private final Map<String,Observation> latest = new LinkedHashMap<>();
+    private DataOutputStream out;
+    private int recordCount;
+
+    ObservationStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the file, returning the latest observation for each station. A truncated final record (e.g. from a
+     * crash mid-write) is ignored.
+     *
+     * @return a Map of device ID to Observation
+     * @throws IOException on failure
+     */
+    Map<String,Observation> load() throws IOException {
+        latest.clear();
+        recordCount = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Unrecognized observation store format: " + file);
+                }
+                while (true) {
+                    String deviceId = in.readUTF();
+                    Observation obs = readObservation(in);
+                    latest.put(deviceId, obs);
+                    recordCount++;
+                }
+            } catch (EOFException ignored) {
+                // end of file (or a truncated record)
+            }
+            logger.debug("Loaded {} observation(s) for {} station(s) from {}", recordCount, latest.size(), file);
+            // rewrite so that any truncated record is removed before appending
+            compact();
+        }
+        return Collections.unmodifiableMap(latest);
+    }
+
+    /**
+     * Appends an observation for a station.
+     *
+     * @param deviceId the device ID
+     * @param obs the observation
+     *
+     * @throws IOException on failure
+     */
+    void append(String deviceId, Observation obs) throws IOException {
+        latest.put(deviceId, obs.copy());
+        if (recordCount >= COMPACTION_FACTOR * Math.max(latest.size(), 16)) {
+            compact();
+        } else {
+            writeRecord(getOutputStream(), deviceId, obs);
+            recordCount++;
+        }
+    }
+
+    void remove(String deviceId) {
+        latest.remove(deviceId);
+    }
+
+    Observation get(String deviceId) {
+        return latest.get(deviceId);
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.error("Error closing observation store", e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Rewrites the file so it contains only the latest observation for each station.
+     *
+     * @throws IOException on failure
+     */
+    void compact() throws IOException {
+        close();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            dos.writeInt(MAGIC);
+            for (Map.Entry<String,Observation> e : latest.entrySet()) {
+                writeRecord(dos, e.getKey(), e.getValue());
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Unable to replace observation store " + file);
+            }
+        }
+        recordCount = latest.size();
+    }
+
+    private DataOutputStream getOutputStream() throws IOException {
+        if (out == null) {
+            boolean exists = file.exists() && file.length() > 0;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (!exists) {
+                out.writeInt(MAGIC);
+            }
+        }
+        return out;
+    }
+
+    private void writeRecord(DataOutputStream dos, String deviceId, Observation obs) throws IOException {
+        dos.writeUTF(deviceId);
+        dos.writeLong(obs.cityId);
+        dos.writeLong(obs.time);
+        dos.writeBoolean(obs.hasMain);
+        dos.writeDouble(obs.temperature);
+        dos.writeDouble(obs.humidity);
+        dos.writeDouble(obs.windSpeed);
+        dos.writeDouble(obs.windDirection);
+        dos.writeBoolean(obs.name != null);
+        if (obs.name != null) {
+            dos.writeUTF(obs.name);
+        }
+    }
+
+    private Observation readObservation(DataInputStream in) throws IOException {
+        Observation obs = new Observation();
+        obs.cityId = in.readLong();
+        obs.time = in.readLong();
+        obs.hasMain = in.readBoolean();
+        obs.temperature = in.readDouble();
+        obs.humidity = in.readDouble();
+        obs.windSpeed = in.readDouble();
+        obs.windDirection = in.readDouble();
+        if (in.readBoolean()) {
+            obs.name = in.readUTF();
+        }
+        return obs;
+    }
+}
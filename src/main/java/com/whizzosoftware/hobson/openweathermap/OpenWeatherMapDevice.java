@@ -13,12 +13,14 @@ import com.whizzosoftware.hobson.api.device.DeviceType;
 import com.whizzosoftware.hobson.api.device.proxy.AbstractHobsonDeviceProxy;
 import com.whizzosoftware.hobson.api.plugin.HobsonPlugin;
 import com.whizzosoftware.hobson.api.property.TypedProperty;
+import com.whizzosoftware.hobson.api.variable.DeviceVariableDescriptor;
 import com.whizzosoftware.hobson.api.variable.VariableConstants;
 import com.whizzosoftware.hobson.api.variable.VariableMask;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,15 +32,74 @@ import java.util.Map;
 public class OpenWeatherMapDevice extends AbstractHobsonDeviceProxy {
     private static final Logger logger = LoggerFactory.getLogger(OpenWeatherMapDevice.class);
 
-    private JSONObject initialJson;
+    static final String PROP_ON_DEMAND = "onDemand";
 
-    OpenWeatherMapDevice(HobsonPlugin plugin, String cityId, String name, JSONObject json) {
+    static final String VAR_REQUEST_LATENCY = "owmRequestLatency";
+    static final String VAR_UPDATE_TIME = "owmUpdateTime";
+    static final String VAR_REQUEST_COUNT = "owmRequestCount";
+    static final String VAR_FAILURE_COUNT = "owmFailureCount";
+    static final String VAR_THROTTLED_COUNT = "owmThrottledCount";
+    static final String VAR_STALENESS = "owmStaleness";
+    static final String VAR_DEW_POINT_C = "dewPointC";
+    static final String VAR_DEW_POINT_F = "dewPointF";
+    static final String VAR_FEELS_LIKE_C = "feelsLikeC";
+    static final String VAR_FEELS_LIKE_F = "feelsLikeF";
+    static final String VAR_TEMP_1H_MIN = "tempC1hMin";
+    static final String VAR_TEMP_1H_MAX = "tempC1hMax";
+    static final String VAR_TEMP_1H_MEAN = "tempC1hMean";
+    static final String VAR_TEMP_24H_MIN = "tempC24hMin";
+    static final String VAR_TEMP_24H_MAX = "tempC24hMax";
+    static final String VAR_TEMP_24H_MEAN = "tempC24hMean";
+    static final String VAR_PRESSURE = "pressureHpa";
+    static final String VAR_PRESSURE_TREND = "pressureTrend";
+
+    /**
+     * The number of forecast periods published as variables.
+     */
+    static final int FORECAST_SLOTS = 8;
+
+    private static final int FORECAST_TIME = 0;
+    private static final int FORECAST_TEMP_C = 1;
+    private static final int FORECAST_TEMP_F = 2;
+    private static final int FORECAST_HUMIDITY = 3;
+    private static final int FORECAST_WIND_SPEED = 4;
+    private static final int FORECAST_WIND_DIRECTION = 5;
+    private static final String[] FORECAST_VARIABLE_SUFFIXES = {"Time", "TempC", "TempF", "Humidity", "WindSpeed", "WindDirection"};
+    private static final String[][] FORECAST_VARIABLES = new String[FORECAST_SLOTS][FORECAST_VARIABLE_SUFFIXES.length];
+
+    static {
+        for (int i = 0; i < FORECAST_SLOTS; i++) {
+            for (int j = 0; j < FORECAST_VARIABLE_SUFFIXES.length; j++) {
+                FORECAST_VARIABLES[i][j] = getForecastVariableName(i, FORECAST_VARIABLE_SUFFIXES[j]);
+            }
+        }
+    }
+
+    private final DeadbandPolicy deadbands;
+    private final DerivedMetrics derived = new DerivedMetrics();
+    private Observation initialObservation;
+    private final Observation lastObservation = new Observation();
+    private boolean hasLastObservation;
+    private int lastFingerprint;
+    private final VariableUpdate update = new VariableUpdate();
+    private final double[] published = new double[VariableUpdate.SLOT_COUNT];
+    private long lastCheckinTime;
+    private boolean metricsVariablesPublished;
+    private final Forecast publishedForecast = new Forecast(FORECAST_SLOTS);
+    private boolean forecastVariablesPublished;
+    private volatile boolean onDemand;
+
+    OpenWeatherMapDevice(HobsonPlugin plugin, String cityId, String name, Observation obs, DeadbandPolicy deadbands) {
         super(plugin, cityId, name, DeviceType.WEATHER_STATION);
-        this.initialJson = json;
+        this.initialObservation = obs;
+        this.deadbands = deadbands;
+        Arrays.fill(published, Double.NaN);
     }
 
     @Override
     public void onStartup(String name, Map<String,Object> config) {
+        onDeviceConfigurationUpdate(config);
+
         // publish the variables
         publishVariables(
             createDeviceVariable(VariableConstants.OUTDOOR_TEMP_C, VariableMask.READ_ONLY),
@@ -48,10 +109,17 @@ public class OpenWeatherMapDevice extends AbstractHobsonDeviceProxy {
             createDeviceVariable(VariableConstants.WIND_SPEED_MPH, VariableMask.READ_ONLY)
         );
 
-        // process any initial JSON we received
-        if (initialJson != null) {
-            onUpdate(initialJson);
-            initialJson = null;
+        // publish the variables derived from the observation stream
+        DeviceVariableDescriptor[] vars = new DeviceVariableDescriptor[VariableUpdate.SLOT_COUNT - VariableUpdate.FIRST_DERIVED];
+        for (int i = VariableUpdate.FIRST_DERIVED; i < VariableUpdate.SLOT_COUNT; i++) {
+            vars[i - VariableUpdate.FIRST_DERIVED] = createDeviceVariable(VariableUpdate.NAMES[i], VariableMask.READ_ONLY);
+        }
+        publishVariables(vars);
+
+        // process any initial observation we received
+        if (initialObservation != null) {
+            onUpdate(initialObservation);
+            initialObservation = null;
         }
     }
 
@@ -61,7 +129,9 @@ public class OpenWeatherMapDevice extends AbstractHobsonDeviceProxy {
 
     @Override
     protected TypedProperty[] getConfigurationPropertyTypes() {
-        return null;
+        return new TypedProperty[] {
+            new TypedProperty.Builder(PROP_ON_DEMAND, "Refresh on demand", "Only refresh this station at the plugin's maximum refresh interval, or sooner when the plugin is asked to refresh it, to save API calls", TypedProperty.Type.BOOLEAN).build()
+        };
     }
 
     @Override
@@ -86,7 +156,16 @@ public class OpenWeatherMapDevice extends AbstractHobsonDeviceProxy {
 
     @Override
     public void onDeviceConfigurationUpdate(Map<String, Object> config) {
+        onDemand = config != null && Boolean.TRUE.equals(config.get(PROP_ON_DEMAND));
+    }
 
+    /**
+     * Indicates whether the station should only be refreshed at the maximum refresh interval or on request.
+     *
+     * @return a boolean
+     */
+    boolean isOnDemand() {
+        return onDemand;
     }
 
     @Override
@@ -94,49 +173,233 @@ public class OpenWeatherMapDevice extends AbstractHobsonDeviceProxy {
 
     }
 
-    void onUpdate(JSONObject response) {
-        Map<String,Object> updates = new HashMap<>();
+    boolean onUpdate(JSONObject response) {
+        return onUpdate(Observation.fromJson(response));
+    }
+
+    /**
+     * Updates the device's variables from an observation.
+     *
+     * @param obs the observation
+     *
+     * @return true if the readings differ from the previous observation; false if they are the same or the
+     * observation has already been processed
+     */
+    boolean onUpdate(Observation obs) {
+        // skip observations that have already been processed
+        int fingerprint = obs.fingerprint();
+        if (hasLastObservation && obs.getTime() > -1 && obs.getTime() == lastObservation.getTime() && fingerprint == lastFingerprint) {
+            logger.trace("Ignoring previously processed observation for {}", getContext().getDeviceId());
+            return false;
+        }
+        // a late response must not overwrite newer data
+        if (hasLastObservation && obs.getTime() > -1 && obs.getTime() < lastObservation.getTime()) {
+            logger.trace("Ignoring observation for {} older than the one it holds", getContext().getDeviceId());
+            return false;
+        }
 
-        if (response.has("main")) {
-            JSONObject obsObj = response.getJSONObject("main");
+        update.clear();
 
+        // only variables whose change exceeds their deadband are published
+        if (obs.hasMain()) {
             // set temperature
-            if (obsObj.has("temp")) {
-                Double d = obsObj.getDouble("temp");
-                logger.trace("Temperature in Kelvin is {}", d);
-                Double tempC = d - 273.15;
-                Double tempF = tempC * 1.8 + 32;
-                updates.put(VariableConstants.OUTDOOR_TEMP_C, tempC);
-                updates.put(VariableConstants.OUTDOOR_TEMP_F, tempF);
+            if (!Double.isNaN(obs.getTemperature())) {
+                double d = obs.getTemperature();
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Temperature in Kelvin is {}", d);
+                }
+                double tempC = d - 273.15;
+                if (deadbands.isTemperatureChange(published[VariableUpdate.TEMP_C], tempC)) {
+                    publish(VariableUpdate.TEMP_C, tempC);
+                    publish(VariableUpdate.TEMP_F, tempC * 1.8 + 32);
+                }
             }
 
             // set humidity
-            if (obsObj.has("humidity")) {
-                Double d = obsObj.getDouble("humidity");
-                logger.trace("Humidity is {}", d);
-                updates.put(VariableConstants.OUTDOOR_RELATIVE_HUMIDITY, d);
+            if (!Double.isNaN(obs.getHumidity())) {
+                double d = obs.getHumidity();
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Humidity is {}", d);
+                }
+                if (deadbands.isHumidityChange(published[VariableUpdate.HUMIDITY], d)) {
+                    publish(VariableUpdate.HUMIDITY, d);
+                }
             }
         } else {
             logger.error("Received malformed JSON (missing main) from OpenWeatherMap");
         }
 
         // send wind info
-        if (response.has("wind")) {
-            JSONObject obsObj = response.getJSONObject("wind");
-            if (obsObj.has("speed")) {
-                updates.put(VariableConstants.WIND_SPEED_MPH, obsObj.getDouble("speed"));
+        if (!Double.isNaN(obs.getWindSpeed()) && deadbands.isWindSpeedChange(published[VariableUpdate.WIND_SPEED], obs.getWindSpeed())) {
+            publish(VariableUpdate.WIND_SPEED, obs.getWindSpeed());
+        }
+        if (!Double.isNaN(obs.getWindDirection()) && deadbands.isWindDirectionChange(published[VariableUpdate.WIND_DIRECTION], obs.getWindDirection())) {
+            publish(VariableUpdate.WIND_DIRECTION, obs.getWindDirection());
+        }
+
+        // update the derived values; temperatures use the temperature deadband and pressures publish any change
+        derived.onObservation(obs);
+        publishTemperature(VariableUpdate.DEW_POINT_C, VariableUpdate.DEW_POINT_F, derived.getDewPoint());
+        publishTemperature(VariableUpdate.FEELS_LIKE_C, VariableUpdate.FEELS_LIKE_F, derived.getFeelsLike());
+        RollingWindow w = derived.getHourTemperatures();
+        publishTemperature(VariableUpdate.TEMP_1H_MIN, -1, w.getMin());
+        publishTemperature(VariableUpdate.TEMP_1H_MAX, -1, w.getMax());
+        publishTemperature(VariableUpdate.TEMP_1H_MEAN, -1, w.getMean());
+        w = derived.getDayTemperatures();
+        publishTemperature(VariableUpdate.TEMP_24H_MIN, -1, w.getMin());
+        publishTemperature(VariableUpdate.TEMP_24H_MAX, -1, w.getMax());
+        publishTemperature(VariableUpdate.TEMP_24H_MEAN, -1, w.getMean());
+        publishChange(VariableUpdate.PRESSURE, derived.getPressure());
+        double trend = derived.getPressureTrend();
+        publishChange(VariableUpdate.PRESSURE_TREND, Double.isNaN(trend) ? trend : Math.round(trend * 10) / 10.0);
+
+        logger.debug("Successfully retrieved OpenWeatherMap data");
+
+        boolean changed = !hasLastObservation || !lastObservation.hasSameReadings(obs);
+        lastObservation.copyFrom(obs);
+        lastFingerprint = fingerprint;
+        hasLastObservation = true;
+
+        lastCheckinTime = System.currentTimeMillis();
+        setLastCheckin(lastCheckinTime);
+
+        // set new variables; the update is overwritten by the next observation and Hobson may hold on to the map
+        // it is given (e.g. in a variable update event), so it gets a copy
+        if (!update.isEmpty()) {
+            setVariableValues(new HashMap<>(update));
+        }
+
+        return changed;
+    }
+
+    private void publish(int slot, double value) {
+        update.set(slot, value);
+        published[slot] = value;
+    }
+
+    private void publishTemperature(int slotC, int slotF, double value) {
+        // derived temperatures are rounded so rounding errors in running sums don't register as changes
+        double tempC = Math.round(value * 100) / 100.0;
+        if (!Double.isNaN(value) && deadbands.isTemperatureChange(published[slotC], tempC)) {
+            publish(slotC, tempC);
+            if (slotF > -1) {
+                publish(slotF, tempC * 1.8 + 32);
             }
-            if (obsObj.has("deg")) {
-                updates.put(VariableConstants.WIND_DIRECTION_DEGREES, obsObj.getDouble("deg"));
+        }
+    }
+
+    private void publishChange(int slot, double value) {
+        if (!Double.isNaN(value) && Double.compare(value, published[slot]) != 0) {
+            publish(slot, value);
+        }
+    }
+
+    /**
+     * Returns the time of the last successful update.
+     *
+     * @return a time in milliseconds (or 0 if the device has never been updated)
+     */
+    long getLastCheckinTime() {
+        return lastCheckinTime;
+    }
+
+    /**
+     * Publishes the station's request metrics as device variables. The variables are created the first time this
+     * is called so devices only carry them when metrics publishing is enabled.
+     *
+     * @param sm the station's metrics
+     * @param staleness the number of seconds since the last successful update (or -1 if there hasn't been one)
+     */
+    void onMetrics(PluginMetrics.StationMetrics sm, long staleness) {
+        if (!metricsVariablesPublished) {
+            publishVariables(
+                createDeviceVariable(VAR_REQUEST_LATENCY, VariableMask.READ_ONLY),
+                createDeviceVariable(VAR_UPDATE_TIME, VariableMask.READ_ONLY),
+                createDeviceVariable(VAR_REQUEST_COUNT, VariableMask.READ_ONLY),
+                createDeviceVariable(VAR_FAILURE_COUNT, VariableMask.READ_ONLY),
+                createDeviceVariable(VAR_THROTTLED_COUNT, VariableMask.READ_ONLY),
+                createDeviceVariable(VAR_STALENESS, VariableMask.READ_ONLY)
+            );
+            metricsVariablesPublished = true;
+        }
+
+        Map<String,Object> values = new HashMap<>();
+        values.put(VAR_REQUEST_LATENCY, sm.lastLatency);
+        values.put(VAR_UPDATE_TIME, sm.lastUpdateTime);
+        values.put(VAR_REQUEST_COUNT, sm.requests.get());
+        values.put(VAR_FAILURE_COUNT, sm.failures.get());
+        values.put(VAR_THROTTLED_COUNT, sm.throttled.get());
+        values.put(VAR_STALENESS, staleness);
+        setVariableValues(values);
+    }
+
+    /**
+     * Returns the name of a forecast variable.
+     *
+     * @param slot the forecast slot (0 is the next period)
+     * @param suffix the variable suffix (e.g. "TempF")
+     *
+     * @return the variable name (e.g. "forecast1TempF")
+     */
+    static String getForecastVariableName(int slot, String suffix) {
+        return "forecast" + (slot + 1) + suffix;
+    }
+
+    /**
+     * Updates the device's forecast variables. Only slots whose period or values differ from the previously
+     * published forecast are republished.
+     *
+     * @param forecast the forecast
+     *
+     * @return the number of slots that changed
+     */
+    int onForecast(Forecast forecast) {
+        if (!forecastVariablesPublished) {
+            DeviceVariableDescriptor[] vars = new DeviceVariableDescriptor[FORECAST_SLOTS * FORECAST_VARIABLE_SUFFIXES.length];
+            int ix = 0;
+            for (String[] names : FORECAST_VARIABLES) {
+                for (String name : names) {
+                    vars[ix++] = createDeviceVariable(name, VariableMask.READ_ONLY);
+                }
             }
+            publishVariables(vars);
+            forecastVariablesPublished = true;
         }
 
-        logger.debug("Successfully retrieved OpenWeatherMap data");
-        setLastCheckin(System.currentTimeMillis());
+        Map<String,Object> updates = null;
+        int changed = 0;
+        int slots = Math.min(FORECAST_SLOTS, forecast.size());
+        for (int i = 0; i < slots; i++) {
+            if (!forecast.isSlotEqual(i, publishedForecast)) {
+                if (updates == null) {
+                    updates = new HashMap<>();
+                }
+                String[] names = FORECAST_VARIABLES[i];
+                if (forecast.getTime(i) > -1) {
+                    updates.put(names[FORECAST_TIME], forecast.getTime(i) * 1000);
+                }
+                if (!Double.isNaN(forecast.getTemperature(i))) {
+                    double tempC = forecast.getTemperature(i) - 273.15;
+                    updates.put(names[FORECAST_TEMP_C], tempC);
+                    updates.put(names[FORECAST_TEMP_F], tempC * 1.8 + 32);
+                }
+                if (!Double.isNaN(forecast.getHumidity(i))) {
+                    updates.put(names[FORECAST_HUMIDITY], forecast.getHumidity(i));
+                }
+                if (!Double.isNaN(forecast.getWindSpeed(i))) {
+                    updates.put(names[FORECAST_WIND_SPEED], forecast.getWindSpeed(i));
+                }
+                if (!Double.isNaN(forecast.getWindDirection(i))) {
+                    updates.put(names[FORECAST_WIND_DIRECTION], forecast.getWindDirection(i));
+                }
+                changed++;
+            }
+        }
+        publishedForecast.copyFrom(forecast);
 
-        // set new variables
-        if (updates.size() > 0) {
+        if (updates != null) {
             setVariableValues(updates);
         }
+        return changed;
     }
 }
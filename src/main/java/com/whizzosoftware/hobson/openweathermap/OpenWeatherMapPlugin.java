@@ -12,6 +12,7 @@ package com.whizzosoftware.hobson.openweathermap;
 import com.whizzosoftware.hobson.api.HobsonNotFoundException;
 import com.whizzosoftware.hobson.api.device.HobsonDeviceDescriptor;
 import com.whizzosoftware.hobson.api.device.proxy.HobsonDeviceProxy;
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
 import com.whizzosoftware.hobson.api.plugin.PluginStatus;
 import com.whizzosoftware.hobson.api.plugin.http.AbstractHttpClientPlugin;
 import com.whizzosoftware.hobson.api.plugin.http.HttpRequest;
@@ -19,14 +20,23 @@ import com.whizzosoftware.hobson.api.plugin.http.HttpResponse;
 import com.whizzosoftware.hobson.api.property.PropertyContainer;
 import com.whizzosoftware.hobson.api.property.TypedProperty;
 import com.whizzosoftware.hobson.openweathermap.action.AddDeviceActionProvider;
-import org.json.JSONObject;
-import org.json.JSONTokener;
+import com.whizzosoftware.hobson.openweathermap.action.BulkAddDeviceActionProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * A plugin that retrieves weather information from OpenWeatherMap.org.
@@ -37,9 +47,150 @@ public class OpenWeatherMapPlugin extends AbstractHttpClientPlugin {
     private static final Logger logger = LoggerFactory.getLogger(OpenWeatherMapPlugin.class);
 
     static final String PROP_API_KEY = "apiKey";
+    static final String OBSERVATION_STORE_FILE = "observations.dat";
+    static final String HISTORY_DIRECTORY = "history";
+    static final String PROP_BATCH_REFRESH = "batchRefresh";
+    static final String PROP_MIN_REFRESH_INTERVAL = "minRefreshInterval";
+    static final String PROP_MAX_REFRESH_INTERVAL = "maxRefreshInterval";
+    static final String PROP_CALLS_PER_MINUTE = "callsPerMinute";
+    static final String PROP_TEMP_DEADBAND = "tempDeadband";
+    static final String PROP_HUMIDITY_DEADBAND = "humidityDeadband";
+    static final String PROP_WIND_SPEED_DEADBAND = "windSpeedDeadband";
+    static final String PROP_WIND_DIRECTION_DEADBAND = "windDirectionDeadband";
+    static final String PROP_PUBLISH_METRICS = "publishMetrics";
+    static final String PROP_FORECAST = "forecast";
+    static final String PROP_FORECAST_INTERVAL = "forecastInterval";
+    static final String PROP_STATION_GRID_SIZE = "stationGridSize";
+    static final String PROP_USE_HTTPS = "useHttps";
+    static final String PROP_POOLED_CONNECTIONS = "pooledConnections";
+    static final String PROP_CONNECT_TIMEOUT = "connectTimeout";
+    static final String PROP_READ_TIMEOUT = "readTimeout";
+    static final String PROP_MAX_IN_FLIGHT = "maxInFlightRequests";
+    static final String PROP_ASYNC_PROCESSING = "asyncProcessing";
+    static final String PROP_WORKER_THREADS = "workerThreads";
+    static final String PROP_ON_DEMAND_TTL = "onDemandTtl";
+    static final String PROP_SHARE_OBSERVATIONS = "shareObservations";
+    static final String PROP_SHARED_DIRECTORY = "sharedDirectory";
+    static final String PROP_HISTORY = "history";
+    static final String PROP_HISTORY_RETENTION = "historyRetention";
+    static final String PROP_REQUEST_DEADLINE = "requestDeadline";
 
-    private String apiKey;
+    static final long DEFAULT_MIN_REFRESH_INTERVAL = 300;
+    static final long DEFAULT_MAX_REFRESH_INTERVAL = 1800;
+    static final int DEFAULT_CALLS_PER_MINUTE = 60;
+    static final long DEFAULT_FORECAST_INTERVAL = 10800;
+    static final long DEFAULT_CONNECT_TIMEOUT = 10;
+    static final long DEFAULT_READ_TIMEOUT = 30;
+    static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    static final int DEFAULT_WORKER_THREADS = 2;
+    static final long DEFAULT_ON_DEMAND_TTL = DEFAULT_MIN_REFRESH_INTERVAL;
+    static final long DEFAULT_HISTORY_RETENTION = 730;
+    static final long DEFAULT_REQUEST_DEADLINE = 60;
+
+    /**
+     * How often (in seconds) the scheduler is checked for stations that are due.
+     */
+    static final long TICK_INTERVAL = 10;
+
+    /**
+     * The maximum number of city IDs OpenWeatherMap accepts in a single group request.
+     */
+    static final int MAX_GROUP_SIZE = 20;
+
+    /**
+     * How often (in milliseconds) metrics are summarized in the log and published to device variables.
+     */
+    static final long METRICS_INTERVAL = 60000;
+
+    /**
+     * How often (in milliseconds) history older than the retention period is deleted.
+     */
+    static final long HISTORY_RETENTION_INTERVAL = 3600000;
+
+    private final ObservationParser parser = new ObservationParser();
+    private final DeadbandPolicy deadbands = new DeadbandPolicy();
+    private final HttpValidatorCache validatorCache = new HttpValidatorCache(4096);
+    private final RefreshScheduler scheduler = new RefreshScheduler(DEFAULT_MIN_REFRESH_INTERVAL * 1000, DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+    private final RefreshScheduler forecastScheduler = new RefreshScheduler(DEFAULT_FORECAST_INTERVAL * 1000, DEFAULT_FORECAST_INTERVAL * 1000);
+    private final Forecast forecast = new Forecast();
+    private final StationResolver resolver = new StationResolver(0);
+    private final InFlightRequests inFlight = new InFlightRequests();
+    private final DemandTracker demand = new DemandTracker(DEFAULT_ON_DEMAND_TTL * 1000);
+    private final String instanceId = UUID.randomUUID().toString();
+    private final PluginMetrics metrics = new PluginMetrics();
+    private final Set<String> pendingDevices = new HashSet<>();
+    private final Map<String,Long> observationTimes = new HashMap<>();
+    private final List<BulkImport> bulkImports = new ArrayList<>();
+    private final ApiKeyRing apiKeys = new ApiKeyRing();
+    private final ApiKeyRing.Sender requestSender = new ApiKeyRing.Sender() {
+        @Override
+        public void send(String apiKey, List<String> cityIds) {
+            RequestContext ctx = cityIds.size() == 1 ? RequestContext.current(cityIds.get(0)) : RequestContext.group(cityIds);
+            ctx.setApiKey(apiKey);
+            sendRequest(ctx);
+        }
+    };
+    private final HttpTransport defaultTransport = new HttpTransport() {
+        @Override
+        public void send(URI uri, Map<String,String> headers, RequestContext ctx) {
+            sendHttpRequest(uri, HttpRequest.Method.GET, headers, ctx);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private final HttpTransport.Callback transportCallback = new HttpTransport.Callback() {
+        @Override
+        public void onResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx) {
+            try {
+                processResponse(statusCode, headers, body, ctx);
+            } catch (IOException e) {
+                logger.error("Error processing HTTP response", e);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable cause, RequestContext ctx) {
+            onHttpRequestFailure(cause, ctx);
+        }
+    };
+    private final AsyncResponseProcessor.Handler asyncHandler = new AsyncResponseProcessor.Handler() {
+        @Override
+        public void onParsed(RequestContext ctx, List<Observation> observations, long bytes, long parseNanos) {
+            metrics.onParse(bytes, parseNanos);
+            for (Observation obs : observations) {
+                if (ctx.getType() != RequestContext.Type.GROUP) {
+                    onObservation(obs, ctx.getCityId());
+                } else {
+                    onGroupObservation(obs);
+                }
+            }
+        }
+
+        @Override
+        public void onParseFailure(RequestContext ctx, Exception e) {
+            logger.error("Error parsing OpenWeatherMap response for " + ctx, e);
+            metrics.onParseFailure();
+        }
+    };
+
+    private ObservationStore observationStore;
+    private HttpTransport transport = defaultTransport;
+    private AsyncResponseProcessor asyncProcessor;
+    private SharedObservations sharing;
+    private String sharingLocation;
+    private HistoryStore history;
+    private long nextHistoryRetention;
+    private long requestDeadline = DEFAULT_REQUEST_DEADLINE * 1000;
+    private boolean batchRefresh;
+    private boolean publishMetrics;
+    private boolean forecastEnabled;
+    private long nextMetricsReport;
     private boolean startupCompleted;
+    private String apiScheme = "http";
+    private String apiHost = "api.openweathermap.org";
+    private int apiPort = -1;
 
     public OpenWeatherMapPlugin(String pluginId, String version, String description) {
         super(pluginId, version, description);
@@ -63,6 +214,17 @@ public class OpenWeatherMapPlugin extends AbstractHttpClientPlugin {
 
     @Override
     public void onShutdown() {
+        transport.close();
+        if (asyncProcessor != null) {
+            asyncProcessor.close();
+        }
+        if (observationStore != null) {
+            observationStore.close();
+        }
+        if (sharing != null) {
+            sharing.close();
+        }
+        flushHistory();
     }
 
     @Override
@@ -77,29 +239,252 @@ public class OpenWeatherMapPlugin extends AbstractHttpClientPlugin {
 
     @Override
     public long getRefreshInterval() {
-        return 300;
+        return TICK_INTERVAL;
     }
 
     @Override
     public void onRefresh() {
-        if (apiKey != null) {
+        if (!apiKeys.isEmpty()) {
+            List<String> deviceIds = new ArrayList<>();
+            List<String> scheduledDeviceIds = new ArrayList<>();
             for (HobsonDeviceProxy d : getDeviceProxies()) {
-                try {
-                    URI uri = createUri(d.getContext().getDeviceId());
-                    logger.debug("Requesting OpenWeatherMap data from {}", uri);
-                    String id = d.getContext().getDeviceId();
-                    sendHttpRequest(uri, HttpRequest.Method.GET, id);
-                } catch (Exception e) {
-                    logger.error("Error retrieving data from OpenWeatherMap", e);
+                String deviceId = d.getContext().getDeviceId();
+                deviceIds.add(deviceId);
+                if (!(d instanceof OpenWeatherMapDevice) || !((OpenWeatherMapDevice)d).isOnDemand() || demand.isSubscribed(deviceId)) {
+                    scheduledDeviceIds.add(deviceId);
+                }
+            }
+            long now = now();
+
+            // each station key is only fetched once no matter how many devices map to it; stations whose devices
+            // are all refreshed on demand stay on the schedule at the maximum interval so they never go stale for
+            // good, and are otherwise refreshed when read
+            resolver.sync(deviceIds);
+            List<String> keys = resolver.getKeys(scheduledDeviceIds);
+            List<String> allKeys = resolver.getKeys(deviceIds);
+            scheduler.sync(allKeys, now);
+            Set<String> idleKeys = new HashSet<>(allKeys);
+            idleKeys.removeAll(keys);
+            scheduler.setIdle(idleKeys, now);
+            demand.retain(allKeys);
+            if (sharing != null) {
+                sharing.retain(allKeys);
+            }
+            Set<String> keySet = new HashSet<>(allKeys);
+            observationTimes.keySet().retainAll(keySet);
+            // device update times are recorded by device ID, which differs from the key for aliased devices
+            Set<String> metricKeys = new HashSet<>(keySet);
+            metricKeys.addAll(deviceIds);
+            metrics.retain(metricKeys);
+            supersedeRequests(keySet, now);
+            for (String cityId : scheduler.pollDue(now)) {
+                refreshStation(cityId, now);
+            }
+            submitDemandedRequests(now);
+            drainRequests(now);
+            forecastScheduler.sync(forecastEnabled ? keys : Collections.<String>emptyList(), now);
+            requestForecasts(now);
+            pumpBulkImports(now);
+            flushObservationStore();
+            flushHistory();
+            if (history != null && now >= nextHistoryRetention) {
+                applyHistoryRetention(now);
+                nextHistoryRetention = now + HISTORY_RETENTION_INTERVAL;
+            }
+            if (now >= nextMetricsReport) {
+                reportMetrics(now);
+                nextMetricsReport = now + METRICS_INTERVAL;
+            }
+        }
+    }
+
+    /**
+     * Supersedes requests that have been outstanding for longer than the request deadline. Their stations are
+     * queued again so the next cycle replaces the request rather than waiting on it, and their API keys back off
+     * as they would after a failure so a degraded API receives fewer requests rather than more. Each key backs off
+     * once per cycle no matter how many of its requests were superseded. A superseded bulk import request is
+     * recorded as a (retryable) failure of the import.
+     *
+     * @param keys the station keys in use
+     * @param now the current time in milliseconds
+     */
+    private void supersedeRequests(Set<String> keys, long now) {
+        List<RequestContext> superseded = inFlight.supersede(now, requestDeadline);
+        if (!superseded.isEmpty()) {
+            Set<String> throttledKeys = new HashSet<>();
+            List<String> cityIds = new ArrayList<>();
+            for (RequestContext ctx : superseded) {
+                if (ctx.getApiKey() != null && throttledKeys.add(ctx.getApiKey())) {
+                    apiKeys.onThrottled(ctx.getApiKey(), -1, now);
+                }
+                if (ctx.getBulkImport() != null) {
+                    ctx.getBulkImport().onFailure(ctx, "Request superseded", true);
+                    continue;
+                }
+                for (String cityId : ctx.getCityIds()) {
+                    if (keys.contains(cityId)) {
+                        cityIds.add(cityId);
+                    }
+                }
+            }
+            apiKeys.requeue(cityIds, now);
+            metrics.onSuperseded(superseded.size());
+            logger.debug("Superseded {} request(s) outstanding for more than {} ms", superseded.size(), requestDeadline);
+        }
+    }
+
+    /**
+     * Queues requests for on-demand stations that have been read since the last tick and whose data has expired.
+     * They are queued alongside the scheduled stations so, with batching enabled, they share group requests.
+     * Stations with a device on the regular schedule are already refreshed often enough and are skipped.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void submitDemandedRequests(long now) {
+        for (String deviceId : demand.pollDemanded()) {
+            String key = resolver.getKey(deviceId);
+            if (scheduler.isIdle(key) && demand.isStale(key, now)) {
+                logger.trace("Refreshing on-demand station {} for {}", key, deviceId);
+                refreshStation(key, now);
+            }
+        }
+    }
+
+    /**
+     * Refreshes a station that has come due. When observations are shared with other plugin instances and another
+     * instance polls the station, its latest observation is used instead of making a request.
+     *
+     * @param key the station key
+     * @param now the current time in milliseconds
+     */
+    private void refreshStation(String key, long now) {
+        if (sharing != null && !sharing.shouldPoll(key, now)) {
+            Observation obs = sharing.takeShared(key);
+            if (obs != null) {
+                logger.trace("Using shared observation for {}", key);
+                onObservation(obs, key);
+            }
+        } else {
+            submitRequest(key);
+        }
+    }
+
+    /**
+     * Signals that a device's variables have been read. If the device is refreshed on demand and its station's data
+     * is older than the on-demand TTL, the station is requested on the next refresh rather than waiting for the
+     * maximum refresh interval. This may be called from any thread.
+     *
+     * @param deviceId the device ID
+     */
+    public void requestRefresh(String deviceId) {
+        demand.onDemand(deviceId);
+    }
+
+    /**
+     * Signals that something has subscribed to a device's variables. An on-demand device is refreshed on the
+     * regular schedule while it has at least one subscriber. This may be called from any thread.
+     *
+     * @param deviceId the device ID
+     */
+    public void subscribe(String deviceId) {
+        demand.subscribe(deviceId);
+    }
+
+    /**
+     * Signals that a subscriber to a device's variables has gone away. Once an on-demand device has no subscribers
+     * left, its station returns to being refreshed at the maximum interval and when read. This may be called from
+     * any thread.
+     *
+     * @param deviceId the device ID
+     */
+    public void unsubscribe(String deviceId) {
+        demand.unsubscribe(deviceId);
+    }
+
+    /**
+     * Sends forecast requests for stations whose forecast is due. Forecasts only use request quota left over after
+     * current conditions have been requested; stations that can't be sent stay due until the next tick.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void requestForecasts(long now) {
+        for (String cityId : forecastScheduler.pollDue(now)) {
+            String apiKey = apiKeys.tryAcquire(cityId, now);
+            if (apiKey != null) {
+                RequestContext ctx = RequestContext.forecast(cityId);
+                ctx.setApiKey(apiKey);
+                sendRequest(ctx);
+            } else {
+                forecastScheduler.requestNow(cityId);
+            }
+        }
+    }
+
+    /**
+     * Logs a summary of the plugin-wide metrics and, if enabled, publishes each station's metrics to its device
+     * variables.
+     *
+     * @param now the current time in milliseconds
+     */
+    private void reportMetrics(long now) {
+        long maxStaleness = 0;
+        long totalStaleness = 0;
+        int count = 0;
+        for (HobsonDeviceProxy d : getDeviceProxies()) {
+            if (d instanceof OpenWeatherMapDevice) {
+                OpenWeatherMapDevice device = (OpenWeatherMapDevice)d;
+                long staleness = device.getLastCheckinTime() > 0 ? Math.max(0, now - device.getLastCheckinTime()) / 1000 : -1;
+                if (staleness >= 0) {
+                    maxStaleness = Math.max(maxStaleness, staleness);
+                    totalStaleness += staleness;
+                    count++;
+                }
+                if (publishMetrics) {
+                    device.onMetrics(metrics.getStation(resolver.getKey(device.getContext().getDeviceId())), staleness);
                 }
             }
         }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Metrics: {}; staleness(s) [mean={} max={}]; {} device(s) sharing another station; {}/{} API key(s) available", metrics, count > 0 ? totalStaleness / count : 0, maxStaleness, resolver.getAliasCount(), apiKeys.getAvailableCount(now), apiKeys.size());
+        }
+    }
+
+    private void drainRequests(long now) {
+        apiKeys.drain(now, batchRefresh ? MAX_GROUP_SIZE : 1, requestSender);
+        if (apiKeys.getQueueSize() > 0) {
+            logger.debug("{} station(s) deferred by request governor", apiKeys.getQueueSize());
+        }
     }
 
     @Override
     protected TypedProperty[] getConfigurationPropertyTypes() {
         return new TypedProperty[] {
-            new TypedProperty.Builder(PROP_API_KEY, "API Key", "The OpenWeatherMap API key to use for requests", TypedProperty.Type.STRING).build(),
+            new TypedProperty.Builder(PROP_API_KEY, "API Key", "The OpenWeatherMap API key to use for requests; separate multiple keys with commas to spread stations across them", TypedProperty.Type.STRING).build(),
+            new TypedProperty.Builder(PROP_BATCH_REFRESH, "Batch requests", "Retrieve up to " + MAX_GROUP_SIZE + " stations per request using the OpenWeatherMap group API", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_MIN_REFRESH_INTERVAL, "Minimum refresh interval", "The minimum number of seconds between refreshes of a station (default " + DEFAULT_MIN_REFRESH_INTERVAL + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_MAX_REFRESH_INTERVAL, "Maximum refresh interval", "The maximum number of seconds between refreshes of a station whose readings are not changing (default " + DEFAULT_MAX_REFRESH_INTERVAL + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_CALLS_PER_MINUTE, "Calls per minute", "The maximum number of API calls per minute allowed for each API key (default " + DEFAULT_CALLS_PER_MINUTE + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_TEMP_DEADBAND, "Temperature deadband", "The minimum temperature change (in degrees Celsius) that will be published", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_HUMIDITY_DEADBAND, "Humidity deadband", "The minimum relative humidity change (in percent) that will be published", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_WIND_SPEED_DEADBAND, "Wind speed deadband", "The minimum wind speed change that will be published", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_WIND_DIRECTION_DEADBAND, "Wind direction deadband", "The minimum wind direction change (in degrees) that will be published", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_FORECAST, "Retrieve forecasts", "Publish each station's 3 hour forecast for the next " + OpenWeatherMapDevice.FORECAST_SLOTS * 3 + " hours", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_FORECAST_INTERVAL, "Forecast refresh interval", "The number of seconds between forecast refreshes of a station (default " + DEFAULT_FORECAST_INTERVAL + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_STATION_GRID_SIZE, "Station grid size", "Stations within the same grid cell of this size (in degrees, e.g. 0.01) are fetched once and shared by all their devices; 0 disables sharing", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_USE_HTTPS, "Use HTTPS", "Connect to OpenWeatherMap using HTTPS", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_POOLED_CONNECTIONS, "Pooled connections", "Send requests from the plugin's own connection pool, reusing keep-alive connections, rather than the Hobson HTTP client", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_CONNECT_TIMEOUT, "Connect timeout", "The number of seconds to wait for a pooled connection to be established (default " + DEFAULT_CONNECT_TIMEOUT + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_READ_TIMEOUT, "Read timeout", "The number of seconds to wait for a pooled connection's response (default " + DEFAULT_READ_TIMEOUT + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_MAX_IN_FLIGHT, "Maximum concurrent requests", "The maximum number of pooled requests outstanding at once (default " + DEFAULT_MAX_IN_FLIGHT + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_ASYNC_PROCESSING, "Process responses on worker threads", "Parse responses off the plugin event loop", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_WORKER_THREADS, "Worker threads", "The number of worker threads used when processing responses on worker threads (default " + DEFAULT_WORKER_THREADS + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_ON_DEMAND_TTL, "On-demand refresh TTL", "The number of seconds a station that is refreshed on demand is considered current before reading it triggers a refresh (default " + DEFAULT_ON_DEMAND_TTL + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_SHARE_OBSERVATIONS, "Share observations", "Share observations with other OpenWeatherMap plugin instances so each station is only polled by one of them", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_SHARED_DIRECTORY, "Shared observation directory", "A directory through which observations are shared with plugin instances in other processes (instances in the same process share observations directly when this is not set)", TypedProperty.Type.STRING).build(),
+            new TypedProperty.Builder(PROP_REQUEST_DEADLINE, "Request deadline", "The number of seconds a request may be outstanding before it is superseded by a new request for its stations (default " + DEFAULT_REQUEST_DEADLINE + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_HISTORY, "Record history", "Record each station's observations in a compact on-disk history", TypedProperty.Type.BOOLEAN).build(),
+            new TypedProperty.Builder(PROP_HISTORY_RETENTION, "History retention", "The number of days of history to keep (default " + DEFAULT_HISTORY_RETENTION + ")", TypedProperty.Type.NUMBER).build(),
+            new TypedProperty.Builder(PROP_PUBLISH_METRICS, "Publish metrics", "Publish request latency, update time, error counts and staleness as variables on each station", TypedProperty.Type.BOOLEAN).build(),
         };
     }
 
@@ -107,67 +492,659 @@ public class OpenWeatherMapPlugin extends AbstractHttpClientPlugin {
     public void onHttpResponse(HttpResponse response, Object context) {
         logger.trace("Received HTTP response for {}", context);
         try {
-            if (response.getStatusCode() == 200) {
-                onHttpResponse(new JSONObject(new JSONTokener(response.getBody())), (String)context);
-            } else {
-                logger.error("Error retrieving data from OpenWeatherMap (" + response.getStatusCode() + ")");
-            }
+            processResponse(response.getStatusCode(), response.getHeaders(), response.getBody(), (RequestContext)context);
         } catch (IOException e) {
             logger.error("Error processing HTTP response", e);
         }
     }
 
-    private void onHttpResponse(JSONObject json, String deviceId) {
-        logger.trace("Received JSON response for device {}: {}", deviceId, json);
+    void processResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx) throws IOException {
+        inFlight.complete(ctx);
+        metrics.onResponse(ctx, statusCode, ctx.getElapsedTime(System.nanoTime()));
+        if (ctx.getBulkImport() != null) {
+            processBulkImportResponse(statusCode, headers, body, ctx);
+        } else if (ctx.getType() == RequestContext.Type.FORECAST) {
+            processForecastResponse(statusCode, headers, body, ctx);
+        } else if (statusCode == 401) {
+            long now = now();
+            onUnauthorized(ctx, now);
+            requeue(ctx, now);
+        } else if (statusCode == 429 || statusCode >= 500) {
+            long now = now();
+            apiKeys.onThrottled(ctx.getApiKey(), RequestGovernor.parseRetryAfter(HttpValidatorCache.getHeader(headers, "Retry-After"), now), now);
+            requeue(ctx, now);
+            logger.warn("OpenWeatherMap request throttled or failed ({}); backing off API key {} until {}", statusCode, ApiKeyRing.mask(ctx.getApiKey()), apiKeys.getBackoffUntil(ctx.getApiKey()));
+        } else if (statusCode == 304) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            logger.trace("OpenWeatherMap data for {} has not been modified", ctx);
+            long now = now();
+            for (String cityId : ctx.getCityIds()) {
+                scheduler.onResult(cityId, false);
+                demand.onRefreshed(cityId, now);
+            }
+        } else if (statusCode == 200 && asyncProcessor != null) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            validatorCache.update(ctx.getCacheKey(), headers);
+            asyncProcessor.parse(body, ctx);
+        } else if (statusCode == 200) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            validatorCache.update(ctx.getCacheKey(), headers);
+            CountingInputStream counter = new CountingInputStream(body);
+            // group entries are dispatched as they are parsed, so the time spent dispatching them is excluded from
+            // the parse time; a single observation is only dispatched once parsed
+            long start = System.nanoTime();
+            GroupDispatcher group = ctx.getType() == RequestContext.Type.GROUP ? new GroupDispatcher() : null;
+            Observation obs = null;
+            try {
+                if (group != null) {
+                    parser.parseGroupWithFallback(counter, group);
+                } else {
+                    obs = new Observation();
+                    parser.parseWithFallback(counter, obs);
+                }
+            } catch (IOException e) {
+                logger.error("Error parsing OpenWeatherMap response for " + ctx, e);
+                metrics.onParseFailure();
+                return;
+            }
+            metrics.onParse(counter.getCount(), System.nanoTime() - start - (group != null ? group.dispatchNanos : 0));
+            if (obs != null) {
+                onObservation(obs, ctx.getCityId());
+            }
+        } else {
+            logger.error("Error retrieving data from OpenWeatherMap (" + statusCode + ")");
+        }
+    }
+
+    private void processBulkImportResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx) {
+        // a superseded request has already been recorded as a failure and retried
+        if (ctx.isCancelled()) {
+            logger.debug("Ignoring response to superseded request {}", ctx);
+            return;
+        }
+        BulkImport bulkImport = ctx.getBulkImport();
+        long now = now();
+        if (statusCode == 200) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            final List<Observation> results = new ArrayList<>();
+            try {
+                parser.parseGroup(body, new ObservationParser.Listener() {
+                    @Override
+                    public void onObservation(Observation obs) {
+                        results.add(obs.copy());
+                    }
+                });
+                bulkImport.onResponse(ctx, results);
+            } catch (IOException e) {
+                logger.error("Error parsing OpenWeatherMap response for " + ctx, e);
+                bulkImport.onFailure(ctx, "Malformed response", false);
+            }
+        } else if (statusCode == 401) {
+            onUnauthorized(ctx, now);
+            bulkImport.onFailure(ctx, "HTTP " + statusCode, true);
+        } else if (statusCode == 429 || statusCode >= 500) {
+            apiKeys.onThrottled(ctx.getApiKey(), RequestGovernor.parseRetryAfter(HttpValidatorCache.getHeader(headers, "Retry-After"), now), now);
+            bulkImport.onFailure(ctx, "HTTP " + statusCode, true);
+        } else {
+            bulkImport.onFailure(ctx, "HTTP " + statusCode, false);
+        }
+        pumpBulkImports(now);
+    }
+
+    private void processForecastResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx) {
+        String cityId = ctx.getCityId();
+        if (statusCode == 200) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            validatorCache.update(ctx.getCacheKey(), headers);
+            CountingInputStream counter = new CountingInputStream(body);
+            try {
+                long start = System.nanoTime();
+                parser.parseForecast(counter, forecast);
+                metrics.onParse(counter.getCount(), System.nanoTime() - start);
+            } catch (IOException e) {
+                logger.error("Error parsing OpenWeatherMap forecast for " + cityId, e);
+                return;
+            }
+            for (String deviceId : resolver.getDevices(cityId)) {
+                try {
+                    int changed = ((OpenWeatherMapDevice)getDeviceProxy(deviceId)).onForecast(forecast);
+                    logger.debug("Received {} for {}; {} slot(s) changed", forecast, deviceId, changed);
+                } catch (HobsonNotFoundException e) {
+                    logger.trace("Ignoring forecast for removed device {}", deviceId);
+                }
+            }
+        } else if (statusCode == 304) {
+            apiKeys.onSuccess(ctx.getApiKey());
+            logger.trace("OpenWeatherMap forecast for {} has not been modified", cityId);
+        } else if (statusCode == 401) {
+            onUnauthorized(ctx, now());
+            forecastScheduler.requestNow(cityId);
+        } else if (statusCode == 429 || statusCode >= 500) {
+            long now = now();
+            apiKeys.onThrottled(ctx.getApiKey(), RequestGovernor.parseRetryAfter(HttpValidatorCache.getHeader(headers, "Retry-After"), now), now);
+            forecastScheduler.requestNow(cityId);
+            logger.warn("OpenWeatherMap forecast request throttled or failed ({}); backing off API key {} until {}", statusCode, ApiKeyRing.mask(ctx.getApiKey()), apiKeys.getBackoffUntil(ctx.getApiKey()));
+        } else {
+            logger.error("Error retrieving forecast from OpenWeatherMap (" + statusCode + ")");
+        }
+    }
+
+    /**
+     * Takes the API key a request was rejected for out of rotation; its stations move to the remaining keys.
+     *
+     * @param ctx the request context
+     * @param now the current time in milliseconds
+     */
+    private void onUnauthorized(RequestContext ctx, long now) {
+        apiKeys.onUnauthorized(ctx.getApiKey(), now);
+        if (apiKeys.getAvailableCount(now) > 0) {
+            logger.error("OpenWeatherMap rejected API key {}; moving its stations to the remaining keys", ApiKeyRing.mask(ctx.getApiKey()));
+        } else {
+            logger.error("OpenWeatherMap rejected API key {} and no other key is available", ApiKeyRing.mask(ctx.getApiKey()));
+        }
+    }
+
+    /**
+     * Dispatches the entries of a group response as they are parsed, tracking the time spent dispatching them so it
+     * can be excluded from the parse time.
+     */
+    private class GroupDispatcher implements ObservationParser.Listener {
+        long dispatchNanos;
+
+        @Override
+        public void onObservation(Observation obs) {
+            long start = System.nanoTime();
+            onGroupObservation(obs);
+            dispatchNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void onGroupObservation(Observation obs) {
+        if (obs.getCityId() > -1) {
+            onObservation(obs, Long.toString(obs.getCityId()));
+        } else {
+            logger.error("Received group entry without a city ID from OpenWeatherMap");
+        }
+    }
+
+    /**
+     * Fans an observation out to every device mapped to the station it was fetched for.
+     *
+     * @param obs the observation
+     * @param key the station key
+     */
+    private void onObservation(Observation obs, String key) {
+        logger.trace("Received observation for station {}: {}", key, obs);
+        if (isOutOfDate(obs, key)) {
+            return;
+        }
+        boolean changed = false;
+        for (String deviceId : resolver.getDevices(key)) {
+            changed |= updateDevice(deviceId, obs);
+        }
+        onObservationProcessed(obs, key, changed);
+    }
+
+    /**
+     * Determines whether an observation is older than one already received for its station, as happens when the
+     * response to a superseded request arrives after the response to the request that replaced it.
+     *
+     * @param obs the observation
+     * @param key the station key
+     *
+     * @return true if the observation should be discarded
+     */
+    private boolean isOutOfDate(Observation obs, String key) {
+        if (obs.getTime() > -1) {
+            Long latest = observationTimes.get(key);
+            if (latest != null && obs.getTime() < latest) {
+                logger.debug("Discarding observation for station {} from {}; already have one from {}", key, obs.getTime(), latest);
+                metrics.onOutOfDate();
+                return true;
+            }
+            observationTimes.put(key, obs.getTime());
+        }
+        return false;
+    }
+
+    private void onObservationProcessed(Observation obs, String key, boolean changed) {
+        scheduler.onResult(key, changed);
+        demand.onRefreshed(key, now());
+        if (sharing != null) {
+            sharing.onObservation(key, obs);
+        }
+        recordHistory(key, obs);
+        if (resolver.onLocation(key, obs.getLatitude(), obs.getLongitude())) {
+            logger.debug("Station {} shares a grid cell with station {}; its devices will be updated from that station", key, resolver.getKey(key));
+        }
+    }
+
+    private boolean updateDevice(String deviceId, Observation obs) {
         OpenWeatherMapDevice device;
         try {
             device = (OpenWeatherMapDevice)getDeviceProxy(deviceId);
-            device.onUpdate(json);
+            pendingDevices.remove(deviceId);
+            long start = System.nanoTime();
+            boolean changed = device.onUpdate(obs);
+            long elapsed = System.nanoTime() - start;
+            metrics.onUpdate(deviceId, elapsed);
+            if (changed) {
+                persistObservation(deviceId, obs);
+            }
+            return changed;
         } catch (HobsonNotFoundException e) {
+            // make sure a device is only created once even if several responses arrive before it is published
+            if (!pendingDevices.add(deviceId)) {
+                logger.trace("Device {} is already being published; ignoring observation", deviceId);
+                return false;
+            }
             logger.trace("Publishing new device: {}", deviceId);
             String name = "OpenWeatherMap Station";
-            if (json.has("name")) {
-                name = json.getString("name");
+            if (obs.getName() != null) {
+                name = obs.getName();
             }
-            publishDeviceProxy(new OpenWeatherMapDevice(this, deviceId, name, json));
+            publishDeviceProxy(new OpenWeatherMapDevice(this, deviceId, name, obs.copy(), deadbands));
+            persistObservation(deviceId, obs);
+            return true;
         }
     }
 
+    private void openObservationStore() {
+        try {
+            observationStore = new ObservationStore(getDataFile(OBSERVATION_STORE_FILE));
+            observationStore.load();
+        } catch (Exception e) {
+            logger.error("Unable to open observation store; devices will not be populated until refreshed", e);
+            observationStore = null;
+        }
+    }
+
+    private void persistObservation(String deviceId, Observation obs) {
+        if (observationStore != null) {
+            try {
+                observationStore.append(deviceId, obs);
+            } catch (IOException e) {
+                logger.error("Error persisting observation for " + deviceId, e);
+            }
+        }
+    }
+
+    private void flushObservationStore() {
+        if (observationStore != null) {
+            try {
+                observationStore.flush();
+            } catch (IOException e) {
+                logger.error("Error flushing observation store", e);
+            }
+        }
+    }
+
+    private void recordHistory(String key, Observation obs) {
+        if (history != null) {
+            try {
+                history.append(key, obs);
+            } catch (IOException e) {
+                logger.error("Error recording history for " + key, e);
+            }
+        }
+    }
+
+    private void flushHistory() {
+        if (history != null) {
+            try {
+                history.flush();
+            } catch (IOException e) {
+                logger.error("Error flushing history", e);
+            }
+        }
+    }
+
+    private void applyHistoryRetention(long now) {
+        int count = history.applyRetention(now / 1000);
+        if (count > 0) {
+            logger.debug("Deleted {} expired history segment(s)", count);
+        }
+    }
+
+    /**
+     * Returns the recorded history of a device's station aggregated into fixed-length intervals. This is expected
+     * to be called from the plugin event loop.
+     *
+     * @param deviceId the device ID
+     * @param column the column to aggregate (e.g. HistoryStore.TEMPERATURE)
+     * @param from the start of the range in seconds since the epoch (inclusive)
+     * @param to the end of the range in seconds since the epoch (exclusive)
+     * @param interval the length of each interval in seconds
+     *
+     * @return the intervals containing at least one observation (empty if history is not being recorded)
+     *
+     * @throws IOException on failure
+     */
+    public List<HistoryStore.Bucket> getHistory(String deviceId, int column, long from, long to, long interval) throws IOException {
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return history.downsample(resolver.getKey(deviceId), column, from, to, interval);
+    }
+
+    /**
+     * Returns every recorded observation of a device's station within a time range. This is expected to be called
+     * from the plugin event loop.
+     *
+     * @param deviceId the device ID
+     * @param from the start of the range in seconds since the epoch (inclusive)
+     * @param to the end of the range in seconds since the epoch (exclusive)
+     * @param visitor the visitor to call for each observation
+     *
+     * @throws IOException on failure
+     */
+    public void queryHistory(String deviceId, long from, long to, HistoryStore.Visitor visitor) throws IOException {
+        if (history != null) {
+            history.query(resolver.getKey(deviceId), from, to, visitor);
+        }
+    }
+
+    HistoryStore getHistoryStore() {
+        return history;
+    }
+
     @Override
     public void onHttpRequestFailure(Throwable cause, Object context) {
         logger.error("Error retrieving data from OpenWeatherMap", cause);
+        if (context instanceof RequestContext) {
+            RequestContext ctx = (RequestContext)context;
+            inFlight.complete(ctx);
+            metrics.onResponse(ctx, -1, ctx.getElapsedTime(System.nanoTime()));
+            // a superseded request has already backed off its key and had its stations queued again
+            if (ctx.isCancelled()) {
+                logger.debug("Ignoring failure of superseded request {}", ctx);
+                return;
+            }
+            long now = now();
+            apiKeys.onThrottled(ctx.getApiKey(), -1, now);
+            if (ctx.getBulkImport() != null) {
+                ctx.getBulkImport().onFailure(ctx, cause.getMessage(), true);
+            } else if (ctx.getType() == RequestContext.Type.FORECAST) {
+                forecastScheduler.requestNow(ctx.getCityId());
+            } else {
+                requeue(ctx, now);
+            }
+        }
+    }
+
+    /**
+     * Queues a failed request's stations again unless the request was superseded, in which case they have already
+     * been queued again.
+     *
+     * @param ctx the request context
+     * @param now the current time in milliseconds
+     */
+    private void requeue(RequestContext ctx, long now) {
+        if (!ctx.isCancelled()) {
+            apiKeys.requeue(ctx.getCityIds(), now);
+        }
     }
 
     public void addCityId(String cityId) {
+        logger.debug("Adding city ID: {}", cityId);
+        submitRequest(cityId);
+        drainRequests(now());
+    }
+
+    /**
+     * Starts importing a set of stations. Devices for all resolved stations are published once every request for
+     * the import has finished.
+     *
+     * @param bulkImport the import to perform
+     */
+    public void startBulkImport(BulkImport bulkImport) {
+        logger.debug("Starting bulk import: {}", bulkImport);
+        bulkImports.add(bulkImport);
+        pumpBulkImports(now());
+    }
+
+    private void pumpBulkImports(long now) {
+        for (BulkImport bulkImport : new ArrayList<>(bulkImports)) {
+            String apiKey;
+            while (bulkImport.hasNextRequest() && (apiKey = apiKeys.tryAcquire(null, now)) != null) {
+                RequestContext ctx = bulkImport.nextRequest();
+                ctx.setApiKey(apiKey);
+                sendRequest(ctx);
+            }
+            if (bulkImport.isFinished() && bulkImports.remove(bulkImport)) {
+                for (Observation obs : bulkImport.getResolved()) {
+                    onObservation(obs, Long.toString(obs.getCityId()));
+                }
+                logger.info("Bulk import finished: {}", bulkImport);
+                bulkImport.complete();
+            }
+        }
+    }
+
+    /**
+     * Queues a request for a station unless one is already in flight, in which case the outstanding request's
+     * response will satisfy it.
+     *
+     * @param cityId the city ID
+     */
+    private void submitRequest(String cityId) {
+        if (inFlight.contains(cityId)) {
+            logger.trace("Coalescing request for {} with the one already in flight", cityId);
+        } else {
+            apiKeys.submit(cityId, now());
+        }
+    }
+
+    private void sendRequest(RequestContext ctx) {
         try {
-            URI uri = createUri(cityId);
+            URI uri;
+            switch (ctx.getType()) {
+                case GROUP:
+                    uri = createGroupUri(ctx.getCityIds(), ctx.getApiKey());
+                    break;
+                case SEARCH:
+                    uri = createSearchUri(ctx.getSearch(), ctx.getApiKey());
+                    break;
+                case FORECAST:
+                    uri = createForecastUri(ctx.getCityId(), ctx.getApiKey());
+                    break;
+                default:
+                    uri = createUri(ctx.getCityId(), ctx.getApiKey());
+                    break;
+            }
             logger.debug("Requesting OpenWeatherMap data from {}", uri);
-            sendHttpRequest(uri, HttpRequest.Method.GET, null, cityId);
-        } catch (URISyntaxException e) {
-            logger.error("Error adding city ID: " + cityId, e);
+            // forecasts are not tracked so they never coalesce with a current conditions request for the station
+            if (ctx.getType() != RequestContext.Type.FORECAST) {
+                long now = now();
+                for (String cityId : ctx.getCityIds()) {
+                    inFlight.begin(cityId, ctx, now);
+                }
+            }
+            ctx.markSent(System.nanoTime());
+            transport.send(uri, ctx.getBulkImport() == null ? validatorCache.createRequestHeaders(ctx.getCacheKey()) : null, ctx);
+        } catch (Exception e) {
+            logger.error("Error retrieving data from OpenWeatherMap", e);
+            inFlight.complete(ctx);
+            if (ctx.getBulkImport() != null) {
+                ctx.getBulkImport().onFailure(ctx, e.getMessage(), false);
+            }
         }
     }
 
     private void configureApiKey(PropertyContainer config) throws Exception {
         if (config != null) {
-            apiKey = (String)config.getPropertyValue(PROP_API_KEY);
-            if (apiKey != null) {
+            Object keys = config.getPropertyValue(PROP_API_KEY);
+            batchRefresh = Boolean.TRUE.equals(config.getPropertyValue(PROP_BATCH_REFRESH));
+            publishMetrics = Boolean.TRUE.equals(config.getPropertyValue(PROP_PUBLISH_METRICS));
+            forecastEnabled = Boolean.TRUE.equals(config.getPropertyValue(PROP_FORECAST));
+            long forecastInterval = getLongProperty(config, PROP_FORECAST_INTERVAL, DEFAULT_FORECAST_INTERVAL) * 1000;
+            forecastScheduler.setIntervals(forecastInterval, forecastInterval);
+            demand.setTtl(getLongProperty(config, PROP_ON_DEMAND_TTL, DEFAULT_ON_DEMAND_TTL) * 1000);
+            requestDeadline = Math.max(TICK_INTERVAL, getLongProperty(config, PROP_REQUEST_DEADLINE, DEFAULT_REQUEST_DEADLINE)) * 1000;
+            resolver.setCellSize(getDoubleProperty(config, PROP_STATION_GRID_SIZE, 0));
+            configureTransport(config);
+            configureProcessing(config);
+            apiKeys.setKeys(ApiKeyRing.parseKeys(keys != null ? keys.toString() : null), getCallsPerMinute(config), TICK_INTERVAL * 1000);
+            scheduler.setIntervals(
+                getLongProperty(config, PROP_MIN_REFRESH_INTERVAL, DEFAULT_MIN_REFRESH_INTERVAL) * 1000,
+                getLongProperty(config, PROP_MAX_REFRESH_INTERVAL, DEFAULT_MAX_REFRESH_INTERVAL) * 1000
+            );
+            configureSharing(config);
+            configureHistory(config);
+            deadbands.setDeadbands(
+                getDoubleProperty(config, PROP_TEMP_DEADBAND, 0),
+                getDoubleProperty(config, PROP_HUMIDITY_DEADBAND, 0),
+                getDoubleProperty(config, PROP_WIND_SPEED_DEADBAND, 0),
+                getDoubleProperty(config, PROP_WIND_DIRECTION_DEADBAND, 0)
+            );
+            if (!apiKeys.isEmpty()) {
                 performStartup();
             }
         }
 
-        if (apiKey == null) {
+        if (apiKeys.isEmpty()) {
             logger.debug("No plugin configuration; unable to query OpenWeatherMap server");
             setStatus(PluginStatus.notConfigured("API key is not set in plugin configuration"));
         }
     }
 
+    /**
+     * Selects how observations are shared with other plugin instances: not at all, directly with instances in the
+     * same process or through a directory. Leases last twice the maximum refresh interval so they survive a
+     * station's longest gap between polls.
+     *
+     * @param config the plugin configuration
+     */
+    private void configureSharing(PropertyContainer config) {
+        String location = null;
+        if (Boolean.TRUE.equals(config.getPropertyValue(PROP_SHARE_OBSERVATIONS))) {
+            Object dir = config.getPropertyValue(PROP_SHARED_DIRECTORY);
+            location = dir != null ? dir.toString().trim() : "";
+        }
+        long leaseDuration = scheduler.getMaxInterval() * 2;
+        if (location == null ? sharingLocation != null : !location.equals(sharingLocation)) {
+            if (sharing != null) {
+                sharing.close();
+                sharing = null;
+            }
+            if (location != null) {
+                ObservationBackend backend = location.length() > 0 ? new FileObservationBackend(new File(location)) : InProcessObservationBackend.INSTANCE;
+                sharing = new SharedObservations(backend, instanceId, leaseDuration);
+                logger.debug("Sharing observations {}", location.length() > 0 ? "through " + location : "in process");
+            }
+            sharingLocation = location;
+        } else if (sharing != null) {
+            sharing.setLeaseDuration(leaseDuration);
+        }
+    }
+
+    /**
+     * Enables or disables recording history and updates its retention period.
+     *
+     * @param config the plugin configuration
+     */
+    private void configureHistory(PropertyContainer config) {
+        long retention = getLongProperty(config, PROP_HISTORY_RETENTION, DEFAULT_HISTORY_RETENTION) * 86400;
+        if (Boolean.TRUE.equals(config.getPropertyValue(PROP_HISTORY))) {
+            if (history == null) {
+                history = new HistoryStore(getDataFile(HISTORY_DIRECTORY), retention);
+                nextHistoryRetention = 0;
+                logger.debug("Recording history");
+            } else {
+                history.setRetention(retention);
+            }
+        } else if (history != null) {
+            flushHistory();
+            history = null;
+        }
+    }
+
+    /**
+     * Selects the HTTP transport. The Hobson HTTP client is used unless pooled connections are enabled, in which
+     * case a PooledHttpTransport is (re)created whenever its settings change.
+     *
+     * @param config the plugin configuration
+     */
+    private void configureTransport(PropertyContainer config) {
+        apiScheme = Boolean.TRUE.equals(config.getPropertyValue(PROP_USE_HTTPS)) ? "https" : "http";
+
+        HttpTransport newTransport = defaultTransport;
+        if (Boolean.TRUE.equals(config.getPropertyValue(PROP_POOLED_CONNECTIONS))) {
+            int connectTimeout = (int)(getLongProperty(config, PROP_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT) * 1000);
+            int readTimeout = (int)(getLongProperty(config, PROP_READ_TIMEOUT, DEFAULT_READ_TIMEOUT) * 1000);
+            int maxInFlight = (int)getLongProperty(config, PROP_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
+            if (transport instanceof PooledHttpTransport) {
+                PooledHttpTransport pt = (PooledHttpTransport)transport;
+                if (pt.getConnectTimeout() == connectTimeout && pt.getReadTimeout() == readTimeout && pt.getMaxInFlight() == Math.max(1, maxInFlight)) {
+                    return;
+                }
+            }
+            newTransport = new PooledHttpTransport(transportCallback, getResponseEventLoop(), connectTimeout, readTimeout, maxInFlight);
+        }
+
+        if (newTransport != transport) {
+            logger.debug("Using {} HTTP transport", newTransport == defaultTransport ? "default" : "pooled");
+            transport.close();
+            transport = newTransport;
+        }
+    }
+
+    /**
+     * Enables or disables processing responses on worker threads.
+     *
+     * @param config the plugin configuration
+     */
+    private void configureProcessing(PropertyContainer config) {
+        int threads = Boolean.TRUE.equals(config.getPropertyValue(PROP_ASYNC_PROCESSING)) ? (int)Math.max(1, getLongProperty(config, PROP_WORKER_THREADS, DEFAULT_WORKER_THREADS)) : 0;
+        if (asyncProcessor != null && asyncProcessor.getThreadCount() != threads) {
+            asyncProcessor.close();
+            asyncProcessor = null;
+        }
+        if (asyncProcessor == null && threads > 0) {
+            logger.debug("Processing responses on {} worker thread(s)", threads);
+            asyncProcessor = new AsyncResponseProcessor(asyncHandler, getResponseEventLoop(), threads);
+        }
+    }
+
+    /**
+     * Returns the executor that pooled HTTP responses and asynchronously processed results are handed back to.
+     *
+     * @return an EventLoopExecutor
+     */
+    EventLoopExecutor getResponseEventLoop() {
+        return getEventLoopExecutor();
+    }
+
+    AsyncResponseProcessor getAsyncProcessor() {
+        return asyncProcessor;
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    int getQueuedCount() {
+        return apiKeys.getQueueSize();
+    }
+
+    long getBackoffUntil(String apiKey) {
+        return apiKeys.getBackoffUntil(apiKey);
+    }
+
     private void performStartup() {
         if (!startupCompleted) {
             publishActionProvider(new AddDeviceActionProvider(this));
+            publishActionProvider(new BulkAddDeviceActionProvider(this));
 
+            // seed devices from the observation store so their variables are populated immediately; stations
+            // with a stored observation have their first refresh staggered rather than all requested at once
+            openObservationStore();
+            long now = now();
             for (HobsonDeviceDescriptor d : getPublishedDeviceDescriptions()) {
-                publishDeviceProxy(new OpenWeatherMapDevice(this, d.getContext().getDeviceId(), d.getName(),null));
+                String deviceId = d.getContext().getDeviceId();
+                Observation obs = observationStore != null ? observationStore.get(deviceId) : null;
+                publishDeviceProxy(new OpenWeatherMapDevice(this, deviceId, d.getName(), obs != null ? obs.copy() : null, deadbands));
+                scheduler.add(deviceId, now, obs != null);
             }
 
             startupCompleted = true;
@@ -177,7 +1154,89 @@ public class OpenWeatherMapPlugin extends AbstractHttpClientPlugin {
         }
     }
 
-    private URI createUri(String cityId) throws URISyntaxException {
-        return new URI("http", "api.openweathermap.org", "/data/2.5/weather", "id=" + cityId + "&APPID=" + apiKey, null);
+    /**
+     * Returns the configured per-key quota. A quota of zero or less would stop the request governor from ever
+     * issuing another request, so it falls back to the default.
+     *
+     * @param config the plugin configuration
+     *
+     * @return the number of calls per minute
+     */
+    private int getCallsPerMinute(PropertyContainer config) {
+        long callsPerMinute = getLongProperty(config, PROP_CALLS_PER_MINUTE, DEFAULT_CALLS_PER_MINUTE);
+        if (callsPerMinute <= 0 || callsPerMinute > Integer.MAX_VALUE) {
+            logger.warn("Invalid value for {}: {}; using the default of {}", PROP_CALLS_PER_MINUTE, callsPerMinute, DEFAULT_CALLS_PER_MINUTE);
+            return DEFAULT_CALLS_PER_MINUTE;
+        }
+        return (int)callsPerMinute;
+    }
+
+    private long getLongProperty(PropertyContainer config, String name, long defaultValue) {
+        Object o = config.getPropertyValue(name);
+        if (o instanceof Number) {
+            return ((Number)o).longValue();
+        } else if (o instanceof String && ((String)o).trim().length() > 0) {
+            try {
+                return Long.parseLong(((String)o).trim());
+            } catch (NumberFormatException e) {
+                logger.error("Invalid value for {}: {}", name, o);
+            }
+        }
+        return defaultValue;
+    }
+
+    private double getDoubleProperty(PropertyContainer config, String name, double defaultValue) {
+        Object o = config.getPropertyValue(name);
+        if (o instanceof Number) {
+            return ((Number)o).doubleValue();
+        } else if (o instanceof String && ((String)o).trim().length() > 0) {
+            try {
+                return Double.parseDouble(((String)o).trim());
+            } catch (NumberFormatException e) {
+                logger.error("Invalid value for {}: {}", name, o);
+            }
+        }
+        return defaultValue;
+    }
+
+    PluginMetrics getMetrics() {
+        return metrics;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    void setApiEndpoint(String scheme, String host, int port) {
+        this.apiScheme = scheme;
+        this.apiHost = host;
+        this.apiPort = port;
+    }
+
+    private URI createUri(String cityId, String apiKey) throws URISyntaxException {
+        return new URI(apiScheme, null, apiHost, apiPort, "/data/2.5/weather", "id=" + cityId + "&APPID=" + apiKey, null);
+    }
+
+    private URI createForecastUri(String cityId, String apiKey) throws URISyntaxException {
+        return new URI(apiScheme, null, apiHost, apiPort, "/data/2.5/forecast", "id=" + cityId + "&APPID=" + apiKey, null);
+    }
+
+    private URI createGroupUri(List<String> cityIds, String apiKey) throws URISyntaxException {
+        StringBuilder sb = new StringBuilder();
+        for (String cityId : cityIds) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(cityId);
+        }
+        return new URI(apiScheme, null, apiHost, apiPort, "/data/2.5/group", "id=" + sb + "&APPID=" + apiKey, null);
+    }
+
+    private URI createSearchUri(BulkImport.Search search, String apiKey) throws URISyntaxException {
+        if (search.isBoundingBox()) {
+            return new URI(apiScheme, null, apiHost, apiPort, "/data/2.5/box/city", "bbox=" + search.getBoundingBox() + "&APPID=" + apiKey, null);
+        } else {
+            return new URI(apiScheme, null, apiHost, apiPort, "/data/2.5/find", "lat=" + search.getLatitude() + "&lon=" + search.getLongitude() + "&cnt=" + search.getCount() + "&APPID=" + apiKey, null);
+        }
     }
 }
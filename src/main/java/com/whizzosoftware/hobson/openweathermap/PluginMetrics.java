@@ -0,0 +1,201 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentation for the request/parse/publish path, kept both plugin-wide and per station. Everything is
+ * lock-free so it can be updated from whichever thread delivers HTTP responses.
+ */
+class PluginMetrics {
+    /**
+     * HTTP round-trip latency in milliseconds.
+     */
+    final Histogram httpLatency = new Histogram();
+    /**
+     * Response body size in bytes.
+     */
+    final Histogram responseSize = new Histogram();
+    /**
+     * Time spent parsing a response (excluding device updates) in microseconds.
+     */
+    final Histogram parseTime = new Histogram();
+    /**
+     * Time spent in OpenWeatherMapDevice.onUpdate in microseconds.
+     */
+    final Histogram updateTime = new Histogram();
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong parseFailures = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong outOfDate = new AtomicLong();
+    private final ConcurrentMap<String,StationMetrics> stations = new ConcurrentHashMap<>();
+
+    /**
+     * Records the outcome of an HTTP request.
+     *
+     * @param ctx the request context
+     * @param statusCode the HTTP status code (or -1 if the request failed without a response)
+     * @param latencyNanos the round-trip time in nanoseconds (or -1 if unknown)
+     */
+    void onResponse(RequestContext ctx, int statusCode, long latencyNanos) {
+        long latencyMs = latencyNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(latencyNanos) : -1;
+        if (latencyMs >= 0) {
+            httpLatency.record(latencyMs);
+        }
+        AtomicLong counter;
+        if (statusCode == 200) {
+            counter = successes;
+        } else if (statusCode == 304) {
+            counter = notModified;
+        } else if (statusCode == 429) {
+            counter = throttled;
+        } else {
+            counter = failures;
+        }
+        counter.incrementAndGet();
+
+        if (ctx.getBulkImport() == null) {
+            for (String cityId : ctx.getCityIds()) {
+                StationMetrics sm = getStation(cityId);
+                sm.requests.incrementAndGet();
+                if (statusCode == 429) {
+                    sm.throttled.incrementAndGet();
+                } else if (statusCode != 200 && statusCode != 304) {
+                    sm.failures.incrementAndGet();
+                }
+                if (latencyMs >= 0) {
+                    sm.lastLatency = latencyMs;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the time taken by a device update.
+     *
+     * @param cityId the city ID of the device
+     * @param nanos the elapsed time in nanoseconds
+     */
+    void onUpdate(String cityId, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        updateTime.record(micros);
+        getStation(cityId).lastUpdateTime = micros;
+    }
+
+    /**
+     * Records the size and parse time of a response body.
+     *
+     * @param bytes the size of the body in bytes
+     * @param parseNanos the time spent parsing (excluding device updates) in nanoseconds
+     */
+    void onParse(long bytes, long parseNanos) {
+        responseSize.record(bytes);
+        parseTime.record(TimeUnit.NANOSECONDS.toMicros(parseNanos));
+    }
+
+    /**
+     * Records a successful response whose body could not be parsed.
+     */
+    void onParseFailure() {
+        parseFailures.incrementAndGet();
+    }
+
+    long getParseFailureCount() {
+        return parseFailures.get();
+    }
+
+    /**
+     * Forgets the metrics of stations that are no longer in use.
+     *
+     * @param keys the station keys (and device IDs) in use
+     */
+    void retain(Set<String> keys) {
+        stations.keySet().retainAll(keys);
+    }
+
+    StationMetrics getStation(String cityId) {
+        StationMetrics sm = stations.get(cityId);
+        if (sm == null) {
+            sm = new StationMetrics();
+            StationMetrics existing = stations.putIfAbsent(cityId, sm);
+            if (existing != null) {
+                sm = existing;
+            }
+        }
+        return sm;
+    }
+
+    /**
+     * Records requests superseded after their deadline.
+     *
+     * @param count the number of requests
+     */
+    void onSuperseded(int count) {
+        superseded.addAndGet(count);
+    }
+
+    /**
+     * Records an observation discarded because it was older than one already received for its station.
+     */
+    void onOutOfDate() {
+        outOfDate.incrementAndGet();
+    }
+
+    long getSupersededCount() {
+        return superseded.get();
+    }
+
+    long getOutOfDateCount() {
+        return outOfDate.get();
+    }
+
+    long getSuccessCount() {
+        return successes.get();
+    }
+
+    long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    long getThrottledCount() {
+        return throttled.get();
+    }
+
+    long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ok=" + successes.get() + " notModified=" + notModified.get() + " throttled=" + throttled.get() +
+            " failed=" + failures.get() + " parseFailed=" + parseFailures.get() + " superseded=" + superseded.get() + " outOfDate=" + outOfDate.get() + "; latency(ms) [" + httpLatency + "]; size(bytes) [" + responseSize +
+            "]; parse(us) [" + parseTime + "]; update(us) [" + updateTime + "]";
+    }
+
+    /**
+     * Metrics for a single station.
+     */
+    static class StationMetrics {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong throttled = new AtomicLong();
+        volatile long lastLatency = -1;
+        volatile long lastUpdateTime = -1;
+    }
+}
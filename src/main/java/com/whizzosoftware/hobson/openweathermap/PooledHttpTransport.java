@@ -0,0 +1,188 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An HttpTransport that performs requests with HttpURLConnection (HTTP or HTTPS) on a bounded pool of worker
+ * threads.
+ *
+ * Connections are reused through the JDK's keep-alive cache: each response body is read to the end and closed
+ * on the worker thread so the underlying socket is returned for the next request to the same host. The number of
+ * worker threads bounds the number of requests in flight; further requests queue until a worker is free.
+ * Completed responses are handed to the callback on the plugin event loop.
+ */
+class PooledHttpTransport implements HttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+
+    private final Callback callback;
+    private final EventLoopExecutor eventLoop;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxInFlight;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param callback the callback to deliver responses to
+     * @param eventLoop the executor the callback is invoked on
+     * @param connectTimeout the connect timeout in milliseconds
+     * @param readTimeout the read timeout in milliseconds
+     * @param maxInFlight the maximum number of requests outstanding at once
+     */
+    PooledHttpTransport(Callback callback, EventLoopExecutor eventLoop, int connectTimeout, int readTimeout, int maxInFlight) {
+        this.callback = callback;
+        this.eventLoop = eventLoop;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.executor = new ThreadPoolExecutor(this.maxInFlight, this.maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "OpenWeatherMap HTTP " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    int getReadTimeout() {
+        return readTimeout;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public void send(final URI uri, final Map<String,String> headers, final RequestContext ctx) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    perform(uri, headers, ctx);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            deliverFailure(e, ctx);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void perform(URI uri, Map<String,String> headers, final RequestContext ctx) {
+        // a request superseded while it waited for a connection is dropped rather than sent
+        if (ctx.isCancelled()) {
+            logger.trace("Dropping cancelled request {}", ctx);
+            return;
+        }
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection)uri.toURL().openConnection();
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.setUseCaches(false);
+            if (headers != null) {
+                for (Map.Entry<String,String> e : headers.entrySet()) {
+                    conn.setRequestProperty(e.getKey(), e.getValue());
+                }
+            }
+
+            final int statusCode = conn.getResponseCode();
+            final Map<String,String> responseHeaders = new HashMap<>();
+            for (Map.Entry<String,List<String>> e : conn.getHeaderFields().entrySet()) {
+                if (e.getKey() != null && !e.getValue().isEmpty()) {
+                    responseHeaders.put(e.getKey(), e.getValue().get(0));
+                }
+            }
+            final byte[] body = readFully(statusCode < 400 ? conn.getInputStream() : conn.getErrorStream());
+
+            eventLoop.executeInEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onResponse(statusCode, responseHeaders, new ByteArrayInputStream(body), ctx);
+                }
+            });
+        } catch (Exception e) {
+            logger.debug("Request to " + uri + " failed", e);
+            if (conn != null) {
+                // drain the error stream so the connection can be reused
+                try {
+                    readFully(conn.getErrorStream());
+                } catch (IOException ignored) {
+                }
+            }
+            deliverFailure(e, ctx);
+        }
+    }
+
+    private void deliverFailure(final Throwable cause, final RequestContext ctx) {
+        eventLoop.executeInEventLoop(new Runnable() {
+            @Override
+            public void run() {
+                callback.onFailure(cause, ctx);
+            }
+        });
+    }
+
+    /**
+     * Reads a stream to the end and closes it, which releases the connection back to the keep-alive cache.
+     *
+     * @param is the stream (may be null)
+     *
+     * @return the bytes read
+     */
+    private static byte[] readFully(InputStream is) throws IOException {
+        if (is == null) {
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                baos.write(buf, 0, n);
+            }
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
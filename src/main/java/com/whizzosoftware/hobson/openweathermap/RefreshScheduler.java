@@ -0,0 +1,230 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks when each station is next due for a refresh.
+ *
+ * Each station is assigned a phase so that, after its first poll, requests are spread evenly across the refresh
+ * interval rather than bursting on every tick. A station whose readings have not changed has its interval
+ * lengthened (up to the maximum) and is returned to the minimum interval as soon as a change is seen. Idle stations
+ * (e.g. ones that are otherwise refreshed on demand) are always refreshed at the maximum interval.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class RefreshScheduler {
+    /**
+     * The fractional part of the golden ratio; successive multiples of it give an evenly spread sequence of phases.
+     */
+    private static final double PHASE_STEP = 0.6180339887498949;
+    private static final double BACKOFF_FACTOR = 1.5;
+
+    private final Map<String,Entry> entries = new HashMap<>();
+    private long minInterval;
+    private long maxInterval;
+    private int phaseCounter;
+
+    /**
+     * Constructor.
+     *
+     * @param minInterval the minimum refresh interval in milliseconds
+     * @param maxInterval the maximum refresh interval in milliseconds
+     */
+    RefreshScheduler(long minInterval, long maxInterval) {
+        setIntervals(minInterval, maxInterval);
+    }
+
+    void setIntervals(long minInterval, long maxInterval) {
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+        for (Entry e : entries.values()) {
+            e.interval = e.idle ? this.maxInterval : Math.min(Math.max(e.interval, this.minInterval), this.maxInterval);
+        }
+    }
+
+    long getMinInterval() {
+        return minInterval;
+    }
+
+    long getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Adds and removes stations so the scheduler tracks exactly the given set. Newly added stations are due
+     * immediately.
+     *
+     * @param keys the station keys
+     * @param now the current time in milliseconds
+     */
+    void sync(Collection<String> keys, long now) {
+        Set<String> keySet = new HashSet<>(keys);
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (!keySet.contains(it.next())) {
+                it.remove();
+            }
+        }
+        for (String key : keySet) {
+            add(key, now);
+        }
+    }
+
+    void add(String key, long now) {
+        add(key, now, false);
+    }
+
+    /**
+     * Adds a station.
+     *
+     * @param key the station key
+     * @param now the current time in milliseconds
+     * @param stagger if true, the station's first refresh is spread across the minimum interval according to its
+     *                phase rather than being due immediately (e.g. because it already has a recent observation)
+     */
+    void add(String key, long now, boolean stagger) {
+        if (!entries.containsKey(key)) {
+            Entry e = new Entry();
+            e.phase = (phaseCounter++ * PHASE_STEP) % 1.0;
+            e.interval = minInterval;
+            if (stagger) {
+                e.nextDue = now + (long)(minInterval * e.phase);
+                e.firstPoll = false;
+            } else {
+                e.nextDue = now;
+            }
+            entries.put(key, e);
+        }
+    }
+
+    /**
+     * Sets which stations are idle. An idle station is refreshed at the maximum interval regardless of whether its
+     * readings change, and one that has never been polled is first due a maximum interval from now rather than
+     * immediately. A station that stops being idle returns to the minimum interval.
+     *
+     * @param keys the keys of the idle stations
+     * @param now the current time in milliseconds
+     */
+    void setIdle(Collection<String> keys, long now) {
+        Set<String> keySet = new HashSet<>(keys);
+        for (Map.Entry<String,Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            boolean idle = keySet.contains(me.getKey());
+            if (idle && !e.idle) {
+                e.interval = maxInterval;
+                e.nextDue = (e.lastPoll > 0 ? e.lastPoll : now) + maxInterval;
+                e.firstPoll = false;
+            } else if (!idle && e.idle) {
+                e.interval = minInterval;
+                e.nextDue = Math.min(e.nextDue, e.lastPoll > 0 ? e.lastPoll + minInterval : now);
+            }
+            e.idle = idle;
+        }
+    }
+
+    boolean isIdle(String key) {
+        Entry e = entries.get(key);
+        return e != null && e.idle;
+    }
+
+    void remove(String key) {
+        entries.remove(key);
+    }
+
+    boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the stations that are due and pushes each of their next due times out by their current interval.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return a list of station keys
+     */
+    List<String> pollDue(long now) {
+        List<String> results = new ArrayList<>();
+        for (Map.Entry<String,Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            if (e.nextDue <= now) {
+                results.add(me.getKey());
+                e.lastPoll = now;
+                if (e.firstPoll) {
+                    // spread stations across the interval based on their phase
+                    e.nextDue = now + (long)(e.interval * (0.5 + e.phase));
+                    e.firstPoll = false;
+                } else {
+                    e.nextDue = now + e.interval;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Records the outcome of a refresh so the station's interval can adapt.
+     *
+     * @param key the station key
+     * @param changed whether the readings changed since the previous refresh
+     */
+    void onResult(String key, boolean changed) {
+        Entry e = entries.get(key);
+        if (e != null && !e.idle) {
+            long interval = changed ? minInterval : Math.min((long)(e.interval * BACKOFF_FACTOR), maxInterval);
+            if (interval != e.interval && e.lastPoll > 0 && !e.firstPoll) {
+                e.nextDue = e.lastPoll + interval;
+            }
+            e.interval = interval;
+        }
+    }
+
+    /**
+     * Makes a station due on the next call to pollDue.
+     *
+     * @param key the station key
+     */
+    void requestNow(String key) {
+        Entry e = entries.get(key);
+        if (e != null) {
+            e.nextDue = Long.MIN_VALUE;
+        }
+    }
+
+    long getInterval(String key) {
+        Entry e = entries.get(key);
+        return e != null ? e.interval : -1;
+    }
+
+    long getNextDue(String key) {
+        Entry e = entries.get(key);
+        return e != null ? e.nextDue : -1;
+    }
+
+    private static class Entry {
+        double phase;
+        long interval;
+        long nextDue;
+        long lastPoll;
+        boolean firstPoll = true;
+        boolean idle;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The context object attached to each OpenWeatherMap HTTP request so the response can be routed back to the
+ * station(s) it was made for.
+ */
+class RequestContext {
+    enum Type {
+        CURRENT,
+        GROUP,
+        SEARCH,
+        FORECAST
+    }
+
+    private final Type type;
+    private final List<String> cityIds;
+    private final BulkImport bulkImport;
+    private final BulkImport.Batch batch;
+    private final BulkImport.Search search;
+    private volatile String apiKey;
+    private volatile long sentTime;
+    private volatile boolean sent;
+    private volatile boolean cancelled;
+
+    static RequestContext current(String cityId) {
+        return new RequestContext(Type.CURRENT, Collections.singletonList(cityId), null, null, null);
+    }
+
+    static RequestContext forecast(String cityId) {
+        return new RequestContext(Type.FORECAST, Collections.singletonList(cityId), null, null, null);
+    }
+
+    static RequestContext group(List<String> cityIds) {
+        return new RequestContext(Type.GROUP, cityIds, null, null, null);
+    }
+
+    static RequestContext bulk(BulkImport.Batch batch, BulkImport bulkImport) {
+        return new RequestContext(Type.GROUP, batch.cityIds, bulkImport, batch, null);
+    }
+
+    static RequestContext search(BulkImport.Search search, BulkImport bulkImport) {
+        return new RequestContext(Type.SEARCH, Collections.<String>emptyList(), bulkImport, null, search);
+    }
+
+    private RequestContext(Type type, List<String> cityIds, BulkImport bulkImport, BulkImport.Batch batch, BulkImport.Search search) {
+        this.type = type;
+        this.cityIds = cityIds;
+        this.bulkImport = bulkImport;
+        this.batch = batch;
+        this.search = search;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    List<String> getCityIds() {
+        return cityIds;
+    }
+
+    /**
+     * Returns the bulk import this request was made for.
+     *
+     * @return a BulkImport (or null if the request is not part of an import)
+     */
+    BulkImport getBulkImport() {
+        return bulkImport;
+    }
+
+    BulkImport.Batch getBatch() {
+        return batch;
+    }
+
+    BulkImport.Search getSearch() {
+        return search;
+    }
+
+    /**
+     * Returns the API key the request was sent with.
+     *
+     * @return an API key (or null if the request has not been assigned one)
+     */
+    String getApiKey() {
+        return apiKey;
+    }
+
+    void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Records when the request was sent.
+     *
+     * @param nanoTime the value of System.nanoTime() when the request was sent
+     */
+    void markSent(long nanoTime) {
+        sentTime = nanoTime;
+        sent = true;
+    }
+
+    /**
+     * Returns the time elapsed since the request was sent.
+     *
+     * @param nanoTime the current value of System.nanoTime()
+     *
+     * @return the elapsed time in nanoseconds (or -1 if the request was never sent)
+     */
+    long getElapsedTime(long nanoTime) {
+        return sent ? nanoTime - sentTime : -1;
+    }
+
+    /**
+     * Marks the request as superseded by a newer one for its stations. A transport may drop a cancelled request
+     * that it has not sent yet; a response that still arrives is only used if it holds newer data.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    String getCityId() {
+        return cityIds.get(0);
+    }
+
+    /**
+     * Returns a key that identifies the resource being requested (independent of the API key in use).
+     *
+     * @return a String
+     */
+    String getCacheKey() {
+        return toString();
+    }
+
+    @Override
+    public String toString() {
+        return type + (search != null ? "[" + search + "]" : cityIds.toString());
+    }
+}
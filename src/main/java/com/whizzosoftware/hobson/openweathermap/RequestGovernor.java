@@ -0,0 +1,218 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Meters requests to OpenWeatherMap so the account's calls-per-minute quota is not exceeded.
+ *
+ * Stations waiting to be requested are queued (each at most once) and released by draining the governor. A token
+ * bucket refilled at the quota rate limits how many requests each drain may send. When the server responds with
+ * a 429 or 5xx, the governor stops sending for the Retry-After period (or an exponentially increasing backoff if
+ * none is given) and the affected stations are put back at the front of the queue.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class RequestGovernor {
+    static final long INITIAL_BACKOFF = 10000;
+    static final long MAX_BACKOFF = 600000;
+
+    /**
+     * Receives the stations to request each time the governor releases a request.
+     */
+    interface Sender {
+        void send(List<String> cityIds);
+    }
+
+    private final Deque<String> queue = new ArrayDeque<>();
+    private final Set<String> queued = new HashSet<>();
+    private double tokensPerMilli;
+    private double capacity;
+    private double tokens;
+    private long lastRefill = Long.MIN_VALUE;
+    private int consecutiveFailures;
+    private long backoffUntil;
+
+    /**
+     * Constructor.
+     *
+     * @param callsPerMinute the account quota
+     * @param burstMillis the number of milliseconds' worth of quota that can be sent at once
+     */
+    RequestGovernor(int callsPerMinute, long burstMillis) {
+        setQuota(callsPerMinute, burstMillis);
+        tokens = capacity;
+    }
+
+    void setQuota(int callsPerMinute, long burstMillis) {
+        this.tokensPerMilli = callsPerMinute / 60000.0;
+        this.capacity = Math.max(1.0, tokensPerMilli * burstMillis);
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    /**
+     * Queues a station for a request. A station that is already queued is not queued again.
+     *
+     * @param cityId the city ID
+     */
+    void submit(String cityId) {
+        if (queued.add(cityId)) {
+            queue.addLast(cityId);
+        }
+    }
+
+    /**
+     * Puts stations whose request could not be completed back at the front of the queue.
+     *
+     * @param cityIds the city IDs
+     */
+    void requeue(List<String> cityIds) {
+        for (int i = cityIds.size() - 1; i >= 0; i--) {
+            String cityId = cityIds.get(i);
+            if (queued.add(cityId)) {
+                queue.addFirst(cityId);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns every queued station (e.g. to move them to another governor).
+     *
+     * @return the city IDs in queue order
+     */
+    List<String> takeQueued() {
+        List<String> cityIds = new ArrayList<>(queue);
+        queue.clear();
+        queued.clear();
+        return cityIds;
+    }
+
+    void remove(String cityId) {
+        if (queued.remove(cityId)) {
+            queue.remove(cityId);
+        }
+    }
+
+    /**
+     * Sends as many queued stations as the token bucket and any backoff allow.
+     *
+     * @param now the current time in milliseconds
+     * @param maxPerRequest the maximum number of stations to include in each request
+     * @param sender the sender to use
+     *
+     * @return the number of requests sent
+     */
+    int drain(long now, int maxPerRequest, Sender sender) {
+        refill(now);
+        int count = 0;
+        while (!queue.isEmpty() && tokens >= 1.0 && !isBackingOff(now)) {
+            List<String> cityIds = new ArrayList<>(Math.min(maxPerRequest, queue.size()));
+            while (cityIds.size() < maxPerRequest && !queue.isEmpty()) {
+                String cityId = queue.pollFirst();
+                queued.remove(cityId);
+                cityIds.add(cityId);
+            }
+            tokens -= 1.0;
+            count++;
+            sender.send(cityIds);
+        }
+        return count;
+    }
+
+    /**
+     * Takes a token for a request made outside of the queue.
+     *
+     * @param now the current time in milliseconds
+     *
+     * @return true if a token was available (and the governor is not backing off)
+     */
+    boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1.0 && !isBackingOff(now)) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful response, clearing any backoff.
+     */
+    void onSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Records a throttled (429) or failed (5xx or network error) request.
+     *
+     * @param retryAfter the server's Retry-After delay in milliseconds (or -1 if not provided)
+     * @param now the current time in milliseconds
+     */
+    void onThrottled(long retryAfter, long now) {
+        consecutiveFailures++;
+        long delay = retryAfter > -1 ? retryAfter : Math.min(INITIAL_BACKOFF << Math.min(consecutiveFailures - 1, 20), MAX_BACKOFF);
+        backoffUntil = Math.max(backoffUntil, now + delay);
+        tokens = 0;
+    }
+
+    boolean isBackingOff(long now) {
+        return now < backoffUntil;
+    }
+
+    long getBackoffUntil() {
+        return backoffUntil;
+    }
+
+    int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Parses the value of a Retry-After header, which may be either a number of seconds or an HTTP date.
+     *
+     * @param value the header value (may be null)
+     * @param now the current time in milliseconds
+     *
+     * @return the delay in milliseconds or -1 if the value is missing or invalid
+     */
+    static long parseRetryAfter(String value, long now) {
+        if (value != null) {
+            value = value.trim();
+            try {
+                return Math.max(0, Long.parseLong(value) * 1000);
+            } catch (NumberFormatException ignored) {
+            }
+            try {
+                SimpleDateFormat sdf = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+                return Math.max(0, sdf.parse(value).getTime() - now);
+            } catch (ParseException ignored) {
+            }
+        }
+        return -1;
+    }
+
+    private void refill(long now) {
+        if (lastRefill != Long.MIN_VALUE && now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMilli);
+        }
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+/**
+ * The minimum, maximum and mean of the samples within a trailing time window, maintained in amortized O(1) per
+ * sample without allocation.
+ *
+ * Samples are kept in a fixed-size ring buffer alongside a running sum, and the minimum and maximum are tracked
+ * with monotonic deques (also ring buffers) of sample sequence numbers. A sample leaves the window once it is
+ * older than the window length relative to the newest sample or, if samples arrive faster than the capacity
+ * allows, once the buffer is full.
+ */
+class RollingWindow {
+    private final long length;
+    private final int capacity;
+    private final long[] times;
+    private final double[] values;
+    private final long[] minQueue;
+    private final long[] maxQueue;
+    private long head;
+    private long tail;
+    private long minHead;
+    private long minTail;
+    private long maxHead;
+    private long maxTail;
+    private double sum;
+
+    /**
+     * Constructor.
+     *
+     * @param length the window length in seconds
+     * @param capacity the maximum number of samples held
+     */
+    RollingWindow(long length, int capacity) {
+        this.length = length;
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.values = new double[capacity];
+        this.minQueue = new long[capacity];
+        this.maxQueue = new long[capacity];
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param time the sample time in seconds
+     * @param value the value
+     *
+     * @return false if the sample was ignored because it is older than the newest sample or is NaN
+     */
+    boolean add(long time, double value) {
+        if (Double.isNaN(value) || (tail > head && time < times[index(tail - 1)])) {
+            return false;
+        }
+
+        // evict expired samples (and the oldest sample if the buffer is full)
+        while (tail > head && (times[index(head)] <= time - length || tail - head == capacity)) {
+            sum -= values[index(head)];
+            if (minTail > minHead && minQueue[index(minHead)] == head) {
+                minHead++;
+            }
+            if (maxTail > maxHead && maxQueue[index(maxHead)] == head) {
+                maxHead++;
+            }
+            head++;
+        }
+        if (tail == head) {
+            // recompute from scratch whenever the window empties so rounding errors don't accumulate
+            sum = 0;
+        }
+
+        long seq = tail++;
+        times[index(seq)] = time;
+        values[index(seq)] = value;
+        sum += value;
+        while (minTail > minHead && values[index(minQueue[index(minTail - 1)])] >= value) {
+            minTail--;
+        }
+        minQueue[index(minTail++)] = seq;
+        while (maxTail > maxHead && values[index(maxQueue[index(maxTail - 1)])] <= value) {
+            maxTail--;
+        }
+        maxQueue[index(maxTail++)] = seq;
+        return true;
+    }
+
+    void clear() {
+        head = tail = minHead = minTail = maxHead = maxTail = 0;
+        sum = 0;
+    }
+
+    int size() {
+        return (int)(tail - head);
+    }
+
+    double getMin() {
+        return minTail > minHead ? values[index(minQueue[index(minHead)])] : Double.NaN;
+    }
+
+    double getMax() {
+        return maxTail > maxHead ? values[index(maxQueue[index(maxHead)])] : Double.NaN;
+    }
+
+    double getMean() {
+        return tail > head ? sum / (tail - head) : Double.NaN;
+    }
+
+    /**
+     * Returns the time of the oldest sample in the window.
+     *
+     * @return a time in seconds (or -1 if the window is empty)
+     */
+    long getOldestTime() {
+        return tail > head ? times[index(head)] : -1;
+    }
+
+    double getOldestValue() {
+        return tail > head ? values[index(head)] : Double.NaN;
+    }
+
+    long getNewestTime() {
+        return tail > head ? times[index(tail - 1)] : -1;
+    }
+
+    double getNewestValue() {
+        return tail > head ? values[index(tail - 1)] : Double.NaN;
+    }
+
+    private int index(long seq) {
+        return (int)(seq % capacity);
+    }
+}
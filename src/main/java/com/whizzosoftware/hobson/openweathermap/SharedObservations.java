@@ -0,0 +1,169 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A plugin instance's view of an ObservationBackend shared with other plugin instances.
+ *
+ * When one of the instance's stations comes due, it either holds (or can take) the station's lease, in which case
+ * it polls OpenWeatherMap and publishes what it receives, or another instance holds it, in which case the
+ * instance takes that instance's latest observation instead. The lease holder renews its lease every time the
+ * station comes due, so the lease only moves when the holder stops polling the station (or stops altogether and
+ * its lease expires). Backend failures fall back to polling.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class SharedObservations {
+    private static final Logger logger = LoggerFactory.getLogger(SharedObservations.class);
+
+    private final ObservationBackend backend;
+    private final String owner;
+    private final Set<String> leased = new HashSet<>();
+    private final Map<String,Long> received = new HashMap<>();
+    private long leaseDuration;
+
+    /**
+     * Constructor.
+     *
+     * @param backend the shared backend
+     * @param owner an ID unique to this plugin instance
+     * @param leaseDuration how long (in milliseconds) a lease lasts without being renewed; this should comfortably
+     *                      exceed the maximum refresh interval
+     */
+    SharedObservations(ObservationBackend backend, String owner, long leaseDuration) {
+        this.backend = backend;
+        this.owner = owner;
+        this.leaseDuration = leaseDuration;
+    }
+
+    ObservationBackend getBackend() {
+        return backend;
+    }
+
+    void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Determines whether this instance should poll a station that has come due, acquiring or renewing its lease.
+     *
+     * @param key the station key
+     * @param now the current time in milliseconds
+     *
+     * @return true if this instance should poll the station
+     */
+    boolean shouldPoll(String key, long now) {
+        try {
+            if (backend.acquireLease(key, owner, now, leaseDuration)) {
+                leased.add(key);
+                return true;
+            }
+            leased.remove(key);
+            return false;
+        } catch (IOException e) {
+            logger.error("Error acquiring shared observation lease for " + key + "; polling it directly", e);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the latest observation another instance has published for a station, provided it is newer than
+     * anything this instance has already received for the station.
+     *
+     * @param key the station key
+     *
+     * @return an Observation (or null if there is nothing new)
+     */
+    Observation takeShared(String key) {
+        try {
+            Observation obs = backend.get(key);
+            if (obs != null && obs.getTime() > getReceivedTime(key)) {
+                received.put(key, obs.getTime());
+                return obs;
+            }
+        } catch (IOException e) {
+            logger.error("Error reading shared observation for " + key, e);
+        }
+        return null;
+    }
+
+    /**
+     * Records an observation received for a station and, if this instance polls the station, publishes it to the
+     * other instances.
+     *
+     * @param key the station key
+     * @param obs the observation
+     */
+    void onObservation(String key, Observation obs) {
+        if (obs.getTime() > getReceivedTime(key)) {
+            received.put(key, obs.getTime());
+        }
+        if (leased.contains(key)) {
+            try {
+                backend.publish(key, obs);
+            } catch (IOException e) {
+                logger.error("Error publishing shared observation for " + key, e);
+            }
+        }
+    }
+
+    boolean isLeased(String key) {
+        return leased.contains(key);
+    }
+
+    /**
+     * Releases the leases of stations this instance no longer has devices for.
+     *
+     * @param keys the station keys in use
+     */
+    void retain(Collection<String> keys) {
+        Set<String> keySet = new HashSet<>(keys);
+        for (String key : new ArrayList<>(leased)) {
+            if (!keySet.contains(key)) {
+                release(key);
+            }
+        }
+        received.keySet().retainAll(keySet);
+    }
+
+    /**
+     * Releases every lease held so other instances take over immediately.
+     */
+    void close() {
+        for (String key : new ArrayList<>(leased)) {
+            release(key);
+        }
+    }
+
+    private void release(String key) {
+        leased.remove(key);
+        try {
+            backend.releaseLease(key, owner);
+        } catch (IOException e) {
+            logger.error("Error releasing shared observation lease for " + key, e);
+        }
+    }
+
+    private long getReceivedTime(String key) {
+        Long l = received.get(key);
+        return l != null ? l : -1;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps devices to the canonical station key that is actually fetched from OpenWeatherMap.
+ *
+ * Every device starts out as its own key. As observations arrive, each station's location is snapped to a grid
+ * cell; a station whose cell is already occupied by another station is merged into it. From then on only the
+ * first station is fetched and its observations are fanned out to every device mapped to it. Merging is disabled
+ * when the cell size is zero.
+ *
+ * This class is not thread-safe and is expected to be used from the plugin event loop.
+ */
+class StationResolver {
+    private double cellSize;
+    private final Map<String,String> aliases = new HashMap<>();
+    private final Map<String,List<String>> members = new HashMap<>();
+    private final Map<Long,String> cells = new HashMap<>();
+    private final Map<String,Long> locations = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param cellSize the grid cell size in degrees (or 0 to disable merging)
+     */
+    StationResolver(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Changes the grid cell size. All existing mappings are discarded and re-learned as observations arrive.
+     *
+     * @param cellSize the grid cell size in degrees (or 0 to disable merging)
+     */
+    void setCellSize(double cellSize) {
+        if (cellSize != this.cellSize) {
+            this.cellSize = cellSize;
+            aliases.clear();
+            members.clear();
+            cells.clear();
+            locations.clear();
+        }
+    }
+
+    /**
+     * Returns the station key a device is fetched under.
+     *
+     * @param deviceId the device ID
+     *
+     * @return a station key
+     */
+    String getKey(String deviceId) {
+        String key = aliases.get(deviceId);
+        return key != null ? key : deviceId;
+    }
+
+    /**
+     * Returns the distinct station keys for a set of devices. A device merged into another station contributes
+     * that station's key, even if the station's own device is not in the set.
+     *
+     * @param deviceIds the device IDs
+     *
+     * @return a list of station keys
+     */
+    List<String> getKeys(Collection<String> deviceIds) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String deviceId : deviceIds) {
+            keys.add(getKey(deviceId));
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Returns the devices that should receive a station's observations.
+     *
+     * @param key the station key
+     *
+     * @return a list of device IDs (the first of which is the key itself)
+     */
+    List<String> getDevices(String key) {
+        List<String> devices = members.get(key);
+        return devices != null ? devices : Collections.singletonList(key);
+    }
+
+    /**
+     * Records the location of a station, merging it into another station if one already occupies the same grid
+     * cell.
+     *
+     * @param key the station key
+     * @param latitude the station's latitude
+     * @param longitude the station's longitude
+     *
+     * @return true if the station was merged into another station
+     */
+    boolean onLocation(String key, double latitude, double longitude) {
+        if (cellSize <= 0 || Double.isNaN(latitude) || Double.isNaN(longitude) || aliases.containsKey(key)) {
+            return false;
+        }
+
+        long cell = getCell(latitude, longitude);
+        Long previous = locations.get(key);
+        if (previous != null) {
+            if (previous == cell) {
+                return false;
+            } else if (key.equals(cells.get(previous))) {
+                cells.remove(previous);
+            }
+        }
+
+        String owner = cells.get(cell);
+        if (owner == null || owner.equals(key)) {
+            cells.put(cell, key);
+            locations.put(key, cell);
+            return false;
+        }
+
+        // move the station and anything already merged into it over to the owner of the cell
+        List<String> ownerMembers = members.get(owner);
+        if (ownerMembers == null) {
+            ownerMembers = new ArrayList<>();
+            ownerMembers.add(owner);
+            members.put(owner, ownerMembers);
+        }
+        for (String deviceId : getDevices(key)) {
+            aliases.put(deviceId, owner);
+            ownerMembers.add(deviceId);
+        }
+        members.remove(key);
+        locations.remove(key);
+        return true;
+    }
+
+    /**
+     * Forgets devices that no longer exist. Devices merged into a removed station become their own stations again.
+     *
+     * @param deviceIds the IDs of all current devices
+     */
+    void sync(Collection<String> deviceIds) {
+        Set<String> present = new HashSet<>(deviceIds);
+        for (Iterator<Map.Entry<String,String>> it = aliases.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String,String> e = it.next();
+            if (!present.contains(e.getKey())) {
+                it.remove();
+                List<String> m = members.get(e.getValue());
+                if (m != null) {
+                    m.remove(e.getKey());
+                    if (m.size() == 1) {
+                        members.remove(e.getValue());
+                    }
+                }
+            }
+        }
+        for (Iterator<Map.Entry<String,List<String>>> it = members.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String,List<String>> e = it.next();
+            if (!present.contains(e.getKey())) {
+                it.remove();
+                for (String deviceId : e.getValue()) {
+                    aliases.remove(deviceId);
+                }
+            }
+        }
+        for (Iterator<Map.Entry<String,Long>> it = locations.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String,Long> e = it.next();
+            if (!present.contains(e.getKey())) {
+                it.remove();
+                if (e.getKey().equals(cells.get(e.getValue()))) {
+                    cells.remove(e.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of devices that are fetched under another station's key.
+     *
+     * @return an int
+     */
+    int getAliasCount() {
+        return aliases.size();
+    }
+
+    private long getCell(double latitude, double longitude) {
+        long row = (long)Math.floor((latitude + 90) / cellSize);
+        long col = (long)Math.floor((longitude + 180) / cellSize);
+        return row * ((long)Math.ceil(360 / cellSize) + 1) + col;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.variable.VariableConstants;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The variable changes produced by an observation, held in a fixed slot per published variable so a device can
+ * reuse one instance for every update.
+ *
+ * Values are stored as primitive doubles. The instance can be viewed as a Map of variable names to values; its
+ * entry set, iterator and entries are preallocated and each value is only boxed when it is read (and re-boxed only
+ * when it has changed since the last read), so an update that publishes nothing allocates nothing. Because of this
+ * the map view is only valid until the next call to clear() and only supports one iteration at a time, so it must
+ * be copied (e.g. into a HashMap) before being handed to anything that may keep it.
+ */
+class VariableUpdate extends AbstractMap<String,Object> {
+    static final int TEMP_C = 0;
+    static final int TEMP_F = 1;
+    static final int HUMIDITY = 2;
+    static final int WIND_SPEED = 3;
+    static final int WIND_DIRECTION = 4;
+    static final int DEW_POINT_C = 5;
+    static final int DEW_POINT_F = 6;
+    static final int FEELS_LIKE_C = 7;
+    static final int FEELS_LIKE_F = 8;
+    static final int TEMP_1H_MIN = 9;
+    static final int TEMP_1H_MAX = 10;
+    static final int TEMP_1H_MEAN = 11;
+    static final int TEMP_24H_MIN = 12;
+    static final int TEMP_24H_MAX = 13;
+    static final int TEMP_24H_MEAN = 14;
+    static final int PRESSURE = 15;
+    static final int PRESSURE_TREND = 16;
+    static final int SLOT_COUNT = 17;
+
+    /**
+     * The first slot holding a value derived by DerivedMetrics rather than reported by OpenWeatherMap.
+     */
+    static final int FIRST_DERIVED = DEW_POINT_C;
+
+    /**
+     * The variable name of each slot.
+     */
+    static final String[] NAMES = {
+        VariableConstants.OUTDOOR_TEMP_C,
+        VariableConstants.OUTDOOR_TEMP_F,
+        VariableConstants.OUTDOOR_RELATIVE_HUMIDITY,
+        VariableConstants.WIND_SPEED_MPH,
+        VariableConstants.WIND_DIRECTION_DEGREES,
+        OpenWeatherMapDevice.VAR_DEW_POINT_C,
+        OpenWeatherMapDevice.VAR_DEW_POINT_F,
+        OpenWeatherMapDevice.VAR_FEELS_LIKE_C,
+        OpenWeatherMapDevice.VAR_FEELS_LIKE_F,
+        OpenWeatherMapDevice.VAR_TEMP_1H_MIN,
+        OpenWeatherMapDevice.VAR_TEMP_1H_MAX,
+        OpenWeatherMapDevice.VAR_TEMP_1H_MEAN,
+        OpenWeatherMapDevice.VAR_TEMP_24H_MIN,
+        OpenWeatherMapDevice.VAR_TEMP_24H_MAX,
+        OpenWeatherMapDevice.VAR_TEMP_24H_MEAN,
+        OpenWeatherMapDevice.VAR_PRESSURE,
+        OpenWeatherMapDevice.VAR_PRESSURE_TREND
+    };
+
+    private final double[] values = new double[SLOT_COUNT];
+    private final Double[] boxed = new Double[SLOT_COUNT];
+    private final EntrySet entrySet = new EntrySet();
+    private final SlotIterator iterator = new SlotIterator();
+    private int mask;
+
+    /**
+     * Removes all values.
+     */
+    @Override
+    public void clear() {
+        mask = 0;
+    }
+
+    /**
+     * Sets the value of a slot.
+     *
+     * @param slot the slot index
+     * @param value the value
+     */
+    void set(int slot, double value) {
+        values[slot] = value;
+        mask |= 1 << slot;
+    }
+
+    boolean isSet(int slot) {
+        return (mask & (1 << slot)) != 0;
+    }
+
+    double getValue(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = getSlot(key);
+        return slot > -1 && isSet(slot);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = getSlot(key);
+        return slot > -1 && isSet(slot) ? box(slot) : null;
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet() {
+        return entrySet;
+    }
+
+    private static int getSlot(Object key) {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            // the names are constants so an identity match is the common case
+            if (NAMES[i] == key || NAMES[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Double box(int slot) {
+        Double d = boxed[slot];
+        if (d == null || Double.doubleToLongBits(d) != Double.doubleToLongBits(values[slot])) {
+            d = values[slot];
+            boxed[slot] = d;
+        }
+        return d;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String,Object>> {
+        @Override
+        public Iterator<Entry<String,Object>> iterator() {
+            iterator.reset();
+            return iterator;
+        }
+
+        @Override
+        public int size() {
+            return VariableUpdate.this.size();
+        }
+    }
+
+    /**
+     * An iterator over the set slots that returns itself as each entry.
+     */
+    private class SlotIterator implements Iterator<Entry<String,Object>>, Map.Entry<String,Object> {
+        private int slot;
+        private int next;
+
+        void reset() {
+            slot = -1;
+            next = advance(-1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < SLOT_COUNT;
+        }
+
+        @Override
+        public Entry<String,Object> next() {
+            if (next >= SLOT_COUNT) {
+                throw new NoSuchElementException();
+            }
+            slot = next;
+            next = advance(slot);
+            return this;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getKey() {
+            return NAMES[slot];
+        }
+
+        @Override
+        public Object getValue() {
+            return box(slot);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        private int advance(int from) {
+            int i = from + 1;
+            while (i < SLOT_COUNT && !isSet(i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap.action;
+
+import com.whizzosoftware.hobson.api.action.ActionLifecycleContext;
+import com.whizzosoftware.hobson.api.action.SingleAction;
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import com.whizzosoftware.hobson.api.plugin.PluginContext;
+import com.whizzosoftware.hobson.openweathermap.BulkImport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Action implementation that imports multiple OpenWeatherMap devices by city ID and/or geographic search.
+ */
+public class BulkAddDeviceAction extends SingleAction {
+    private static final Logger logger = LoggerFactory.getLogger(BulkAddDeviceAction.class);
+
+    private static final int DEFAULT_MAX_RESULTS = 10;
+
+    public BulkAddDeviceAction(PluginContext pctx, BulkDeviceActionExecutionContext ectx, EventLoopExecutor executor) {
+        super(pctx, ectx, executor);
+    }
+
+    @Override
+    public void onStart(final ActionLifecycleContext ctx) {
+        Map<String,Object> properties = getContext().getProperties();
+
+        List<String> cityIds = new ArrayList<>();
+        List<BulkImport.Search> searches = new ArrayList<>();
+        try {
+            cityIds.addAll(splitCityIds((String)properties.get(BulkAddDeviceActionProvider.PROP_CITY_IDS)));
+
+            String file = (String)properties.get(BulkAddDeviceActionProvider.PROP_FILE);
+            if (file != null && file.trim().length() > 0) {
+                cityIds.addAll(splitCityIds(new String(Files.readAllBytes(new File(file.trim()).toPath()), StandardCharsets.UTF_8)));
+            }
+
+            Object lat = properties.get(BulkAddDeviceActionProvider.PROP_LATITUDE);
+            Object lon = properties.get(BulkAddDeviceActionProvider.PROP_LONGITUDE);
+            if (lat != null && lon != null) {
+                Object max = properties.get(BulkAddDeviceActionProvider.PROP_MAX_RESULTS);
+                searches.add(BulkImport.Search.near(toDouble(lat), toDouble(lon), max != null ? (int)toDouble(max) : DEFAULT_MAX_RESULTS));
+            }
+
+            String bbox = (String)properties.get(BulkAddDeviceActionProvider.PROP_BOUNDING_BOX);
+            if (bbox != null && bbox.trim().length() > 0) {
+                searches.add(BulkImport.Search.within(bbox.trim()));
+            }
+        } catch (IOException e) {
+            logger.error("Error reading city ID file", e);
+            ctx.fail("Unable to read city ID file: " + e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            ctx.fail(e.getMessage());
+            return;
+        }
+
+        if (cityIds.isEmpty() && searches.isEmpty()) {
+            ctx.fail("No city IDs or search location were specified");
+            return;
+        }
+
+        ((BulkDeviceActionExecutionContext)getContext()).startBulkImport(new BulkImport(cityIds, searches, new BulkImport.Listener() {
+            @Override
+            public void onProgress(BulkImport bulkImport) {
+                logger.debug("Bulk import progress: {}", bulkImport);
+            }
+
+            @Override
+            public void onComplete(BulkImport bulkImport) {
+                for (Map.Entry<String,String> e : bulkImport.getFailures().entrySet()) {
+                    logger.warn("Unable to import OpenWeatherMap station {}: {}", e.getKey(), e.getValue());
+                }
+                if (bulkImport.getResolvedCount() == 0 && !bulkImport.getFailures().isEmpty()) {
+                    ctx.fail("Unable to import any stations (" + bulkImport.getFailures().size() + " failed)");
+                } else {
+                    ctx.complete();
+                }
+            }
+        }));
+    }
+
+    @Override
+    public void onStop(ActionLifecycleContext ctx) {
+    }
+
+    @Override
+    public void onMessage(ActionLifecycleContext ctx, String msgName, Object prop) {
+    }
+
+    static List<String> splitCityIds(String s) {
+        if (s == null || s.trim().length() == 0) {
+            return Collections.emptyList();
+        }
+        List<String> results = new ArrayList<>();
+        for (String id : s.trim().split("[\\s,;]+")) {
+            if (id.length() > 0) {
+                results.add(id);
+            }
+        }
+        return results;
+    }
+
+    private static double toDouble(Object o) {
+        if (o instanceof Number) {
+            return ((Number)o).doubleValue();
+        } else {
+            try {
+                return Double.parseDouble(o.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number: " + o);
+            }
+        }
+    }
+}
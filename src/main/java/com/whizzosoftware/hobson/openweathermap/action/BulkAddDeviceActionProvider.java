@@ -0,0 +1,61 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap.action;
+
+import com.whizzosoftware.hobson.api.action.Action;
+import com.whizzosoftware.hobson.api.action.ActionProvider;
+import com.whizzosoftware.hobson.api.property.PropertyContainerClassContext;
+import com.whizzosoftware.hobson.api.property.TypedProperty;
+import com.whizzosoftware.hobson.openweathermap.BulkImport;
+import com.whizzosoftware.hobson.openweathermap.OpenWeatherMapPlugin;
+
+import java.util.Map;
+
+/**
+ * Action provider implementation that allows adding many OpenWeatherMap devices at once.
+ */
+public class BulkAddDeviceActionProvider extends ActionProvider {
+    static final String PROP_CITY_IDS = "cityIds";
+    static final String PROP_FILE = "file";
+    static final String PROP_LATITUDE = "latitude";
+    static final String PROP_LONGITUDE = "longitude";
+    static final String PROP_MAX_RESULTS = "maxResults";
+    static final String PROP_BOUNDING_BOX = "boundingBox";
+
+    private final OpenWeatherMapPlugin plugin;
+
+    public BulkAddDeviceActionProvider(OpenWeatherMapPlugin plugin) {
+        super(PropertyContainerClassContext.create(plugin.getContext(), "bulkAddDevices"), "Add OpenWeatherMap stations", "Adds multiple OpenWeatherMap weather stations by city ID or location", false, 60000);
+
+        this.plugin = plugin;
+
+        addSupportedProperty(new TypedProperty.Builder(PROP_CITY_IDS, "City IDs", "A list of city IDs assigned by OpenWeatherMap, separated by commas or whitespace", TypedProperty.Type.STRING).build());
+        addSupportedProperty(new TypedProperty.Builder(PROP_FILE, "City ID file", "The path to a file containing city IDs, separated by commas or whitespace", TypedProperty.Type.STRING).build());
+        addSupportedProperty(new TypedProperty.Builder(PROP_LATITUDE, "Latitude", "The latitude to search for nearby stations", TypedProperty.Type.NUMBER).build());
+        addSupportedProperty(new TypedProperty.Builder(PROP_LONGITUDE, "Longitude", "The longitude to search for nearby stations", TypedProperty.Type.NUMBER).build());
+        addSupportedProperty(new TypedProperty.Builder(PROP_MAX_RESULTS, "Maximum results", "The maximum number of stations to add from a nearby search (default 10)", TypedProperty.Type.NUMBER).build());
+        addSupportedProperty(new TypedProperty.Builder(PROP_BOUNDING_BOX, "Bounding box", "A bounding box to search for stations in the form lonLeft,latBottom,lonRight,latTop", TypedProperty.Type.STRING).build());
+    }
+
+    @Override
+    public Action createAction(final Map<String, Object> properties) {
+        return new BulkAddDeviceAction(plugin.getContext(), new BulkDeviceActionExecutionContext() {
+            @Override
+            public void startBulkImport(BulkImport bulkImport) {
+                plugin.startBulkImport(bulkImport);
+            }
+
+            @Override
+            public Map<String, Object> getProperties() {
+                return properties;
+            }
+        }, plugin.getEventLoopExecutor());
+    }
+}
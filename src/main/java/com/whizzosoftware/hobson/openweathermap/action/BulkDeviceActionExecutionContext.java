@@ -0,0 +1,20 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap.action;
+
+import com.whizzosoftware.hobson.api.action.ActionExecutionContext;
+import com.whizzosoftware.hobson.openweathermap.BulkImport;
+
+/**
+ * ActionExecutionContext implementation that is used by the OpenWeatherMap bulk import action.
+ */
+public interface BulkDeviceActionExecutionContext extends ActionExecutionContext {
+    void startBulkImport(BulkImport bulkImport);
+}
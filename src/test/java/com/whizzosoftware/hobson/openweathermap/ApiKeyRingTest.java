@@ -0,0 +1,209 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ApiKeyRingTest {
+    private static final List<String> KEYS = Arrays.asList("key1", "key2", "key3");
+
+    @Test
+    public void testParseKeys() {
+        assertEquals(Collections.<String>emptyList(), ApiKeyRing.parseKeys(null));
+        assertEquals(Collections.<String>emptyList(), ApiKeyRing.parseKeys(" "));
+        assertEquals(Collections.singletonList("abcd"), ApiKeyRing.parseKeys("abcd"));
+        assertEquals(Arrays.asList("a", "b", "c"), ApiKeyRing.parseKeys("a, b,c\nb a"));
+    }
+
+    @Test
+    public void testMask() {
+        assertEquals("...6789", ApiKeyRing.mask("0123456789"));
+        assertEquals("...", ApiKeyRing.mask("abc"));
+        assertEquals("...", ApiKeyRing.mask(null));
+    }
+
+    @Test
+    public void testStationsAreSpreadAcrossKeys() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 60, 10000);
+
+        Map<String,Integer> counts = countByKey(ring, 3000, 0);
+        assertEquals(3, counts.size());
+        for (String key : KEYS) {
+            assertTrue(key + " owns " + counts.get(key), counts.get(key) > 700 && counts.get(key) < 1300);
+        }
+    }
+
+    @Test
+    public void testAddingKeyOnlyMovesStationsToIt() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 60, 10000);
+        Map<String,String> before = assignments(ring, 3000, 0);
+
+        ring.setKeys(Arrays.asList("key1", "key2", "key3", "key4"), 60, 10000);
+        Map<String,String> after = assignments(ring, 3000, 0);
+
+        int moved = 0;
+        for (String cityId : before.keySet()) {
+            if (!before.get(cityId).equals(after.get(cityId))) {
+                assertEquals("key4", after.get(cityId));
+                moved++;
+            }
+        }
+        assertTrue(moved > 400 && moved < 1100);
+    }
+
+    @Test
+    public void testEachKeyHasItsOwnBudget() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 60, 10000);
+        RecordingSender sender = new RecordingSender();
+        for (int i = 0; i < 300; i++) {
+            ring.submit(Integer.toString(i), 0);
+        }
+
+        // each key releases its own 10 second burst
+        assertEquals(30, ring.drain(0, 1, sender));
+        for (String key : KEYS) {
+            assertEquals(10, (int)sender.counts.get(key));
+        }
+        assertEquals(270, ring.getQueueSize());
+    }
+
+    @Test
+    public void testThrottledKeyRebalances() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 6000, 10000);
+        RecordingSender sender = new RecordingSender();
+        for (int i = 0; i < 300; i++) {
+            ring.submit(Integer.toString(i), 0);
+        }
+
+        // while key2 backs off its queued stations are moved to, and sent with, the other keys
+        ring.onThrottled("key2", 60000, 0);
+        assertEquals(300, ring.drain(1000, 1, sender));
+        assertNull(sender.counts.get("key2"));
+        assertEquals(300, sender.counts.get("key1") + sender.counts.get("key3"));
+        assertEquals(0, ring.getQueueSize());
+
+        // once the backoff expires the key gets its stations back
+        ring.onSuccess("key2");
+        Map<String,Integer> counts = countByKey(ring, 300, 61000);
+        assertEquals(3, counts.size());
+    }
+
+    @Test
+    public void testUnauthorizedKeyIsTakenOutOfRotation() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 6000, 10000);
+        ring.onUnauthorized("key1", 0);
+        assertEquals(2, ring.getAvailableCount(0));
+        assertEquals(ApiKeyRing.UNAUTHORIZED_RETRY, ring.getBackoffUntil("key1"));
+
+        RecordingSender sender = new RecordingSender();
+        for (int i = 0; i < 100; i++) {
+            ring.submit(Integer.toString(i), 0);
+        }
+        ring.requeue(Arrays.asList("100", "101"), 0);
+        ring.drain(0, 1, sender);
+        assertNull(sender.counts.get("key1"));
+        assertEquals(102, sender.counts.get("key2") + sender.counts.get("key3"));
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse("key1".equals(ring.tryAcquire(Integer.toString(i), 0)));
+        }
+        assertEquals(3, ring.getAvailableCount(ApiKeyRing.UNAUTHORIZED_RETRY));
+    }
+
+    @Test
+    public void testAllKeysUnavailableKeepsStationsQueued() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(Arrays.asList("key1", "key2"), 6000, 10000);
+        ring.onUnauthorized("key1", 0);
+        ring.onThrottled("key2", 30000, 0);
+        RecordingSender sender = new RecordingSender();
+        for (int i = 0; i < 10; i++) {
+            ring.submit(Integer.toString(i), 0);
+        }
+        ring.submit("0", 0);
+        assertEquals(0, ring.drain(1000, 1, sender));
+        assertEquals(10, ring.getQueueSize());
+        assertNull(ring.tryAcquire(null, 1000));
+
+        assertEquals(10, ring.drain(30000, 1, sender));
+        assertEquals(10, (int)sender.counts.get("key2"));
+    }
+
+    @Test
+    public void testRemovedKeyStationsAreRequeued() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 60, 10000);
+        for (int i = 0; i < 100; i++) {
+            ring.submit(Integer.toString(i), 0);
+        }
+        ring.setKeys(Collections.singletonList("key3"), 60, 10000);
+        assertEquals(100, ring.getQueueSize());
+
+        RecordingSender sender = new RecordingSender();
+        ring.drain(0, 20, sender);
+        assertEquals(100, (int)sender.counts.get("key3"));
+        assertEquals(0, ring.getQueueSize());
+
+        ring.setKeys(Collections.<String>emptyList(), 60, 10000);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.getKey("1", 0));
+    }
+
+    @Test
+    public void testAcquireWithoutStationRotatesKeys() {
+        ApiKeyRing ring = new ApiKeyRing();
+        ring.setKeys(KEYS, 60, 10000);
+        assertEquals("key1", ring.tryAcquire(null, 0));
+        assertEquals("key2", ring.tryAcquire(null, 0));
+        assertEquals("key3", ring.tryAcquire(null, 0));
+        assertEquals("key1", ring.tryAcquire(null, 0));
+    }
+
+    private Map<String,String> assignments(ApiKeyRing ring, int count, long now) {
+        Map<String,String> map = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String cityId = Integer.toString(5000000 + i);
+            map.put(cityId, ring.getKey(cityId, now));
+        }
+        return map;
+    }
+
+    private Map<String,Integer> countByKey(ApiKeyRing ring, int count, long now) {
+        Map<String,Integer> counts = new HashMap<>();
+        for (String key : assignments(ring, count, now).values()) {
+            Integer c = counts.get(key);
+            counts.put(key, c != null ? c + 1 : 1);
+        }
+        return counts;
+    }
+
+    private static class RecordingSender implements ApiKeyRing.Sender {
+        final Map<String,Integer> counts = new HashMap<>();
+
+        @Override
+        public void send(String apiKey, List<String> cityIds) {
+            Integer c = counts.get(apiKey);
+            counts.put(apiKey, (c != null ? c : 0) + cityIds.size());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncResponseProcessorTest {
+    private ExecutorService loop;
+    private EventLoopExecutor eventLoop;
+    private volatile Thread loopThread;
+
+    @Before
+    public void setUp() {
+        loop = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                loopThread = new Thread(r, "event loop");
+                return loopThread;
+            }
+        });
+        eventLoop = new EventLoopExecutor() {
+            @Override
+            public void executeInEventLoop(Runnable r) {
+                loop.execute(r);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        loop.shutdownNow();
+    }
+
+    @Test
+    public void testParseDeliversOnEventLoop() throws Exception {
+        RecordingHandler handler = new RecordingHandler(50);
+        AsyncResponseProcessor p = new AsyncResponseProcessor(handler, eventLoop, 4);
+        try {
+            for (int i = 0; i < 50; i++) {
+                String cityId = Integer.toString(1000 + i);
+                p.parse(new ByteArrayInputStream(createStation(cityId).getBytes("UTF8")), RequestContext.current(cityId));
+            }
+            assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            p.close();
+        }
+
+        assertTrue(handler.failures.isEmpty());
+        assertEquals(50, handler.observations.size());
+        assertFalse(handler.offLoop);
+        List<Long> ids = new ArrayList<>();
+        for (Observation obs : handler.observations) {
+            ids.add(obs.getCityId());
+        }
+        Collections.sort(ids);
+        assertEquals(1000L, (long)ids.get(0));
+        assertEquals(1049L, (long)ids.get(49));
+        awaitIdle(p);
+    }
+
+    @Test
+    public void testParseGroup() throws Exception {
+        RecordingHandler handler = new RecordingHandler(1);
+        AsyncResponseProcessor p = new AsyncResponseProcessor(handler, eventLoop, 1);
+        String json = "{\"cnt\":2,\"list\":[" + createStation("1000") + "," + createStation("1001") + "]}";
+        try {
+            p.parse(new ByteArrayInputStream(json.getBytes("UTF8")), RequestContext.group(Arrays.asList("1000", "1001")));
+            assertTrue(handler.latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            p.close();
+        }
+        assertEquals(2, handler.observations.size());
+        assertEquals(1000, handler.observations.get(0).getCityId());
+        assertEquals(1001, handler.observations.get(1).getCityId());
+        assertEquals(json.length(), handler.bytes);
+        assertTrue(handler.parseNanos > 0);
+    }
+
+    @Test
+    public void testParseAfterCloseIsDiscarded() throws Exception {
+        RecordingHandler handler = new RecordingHandler(1);
+        AsyncResponseProcessor p = new AsyncResponseProcessor(handler, eventLoop, 1);
+        p.close();
+        p.parse(new ByteArrayInputStream(createStation("1000").getBytes("UTF8")), RequestContext.current("1000"));
+        assertEquals(0, p.getPendingCount());
+        assertFalse(handler.latch.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    private void awaitIdle(AsyncResponseProcessor p) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (p.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, p.getPendingCount());
+    }
+
+    private static String createStation(String cityId) {
+        return "{\"weather\":[{\"id\":800}],\"main\":{\"temp\":280.15,\"humidity\":81},\"wind\":{\"speed\":4.1,\"deg\":240},\"dt\":1485789600,\"id\":" + cityId + ",\"name\":\"Station " + cityId + "\"}";
+    }
+
+    private class RecordingHandler implements AsyncResponseProcessor.Handler {
+        final CountDownLatch latch;
+        final List<Observation> observations = new ArrayList<>();
+        final List<Exception> failures = new ArrayList<>();
+        boolean offLoop;
+        long bytes;
+        long parseNanos;
+
+        RecordingHandler(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onParsed(RequestContext ctx, List<Observation> obs, long bytes, long parseNanos) {
+            offLoop |= Thread.currentThread() != loopThread;
+            observations.addAll(obs);
+            this.bytes += bytes;
+            this.parseNanos += parseNanos;
+            latch.countDown();
+        }
+
+        @Override
+        public void onParseFailure(RequestContext ctx, Exception e) {
+            offLoop |= Thread.currentThread() != loopThread;
+            failures.add(e);
+            latch.countDown();
+        }
+    }
+}
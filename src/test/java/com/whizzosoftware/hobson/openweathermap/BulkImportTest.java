@@ -0,0 +1,110 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkImportTest {
+    private static final BulkImport.Listener NOOP_LISTENER = new BulkImport.Listener() {
+        @Override
+        public void onProgress(BulkImport bulkImport) {
+        }
+
+        @Override
+        public void onComplete(BulkImport bulkImport) {
+        }
+    };
+
+    @Test
+    public void testBatchesAndNormalization() {
+        BulkImport bi = new BulkImport(createIds(45, "007", "7", "x"), Collections.<BulkImport.Search>emptyList(), NOOP_LISTENER);
+        assertEquals(46, bi.getRequestedCount());
+        assertEquals("Invalid city ID", bi.getFailures().get("x"));
+
+        List<RequestContext> requests = new ArrayList<>();
+        while (bi.hasNextRequest()) {
+            requests.add(bi.nextRequest());
+        }
+        assertEquals(3, requests.size());
+        assertEquals(OpenWeatherMapPlugin.MAX_GROUP_SIZE, requests.get(0).getCityIds().size());
+        assertEquals(6, requests.get(2).getCityIds().size());
+        assertTrue(requests.get(2).getCityIds().contains("7"));
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        BulkImport bi = new BulkImport(createIds(500), Collections.<BulkImport.Search>emptyList(), NOOP_LISTENER);
+        for (int i = 0; i < BulkImport.MAX_CONCURRENT_REQUESTS; i++) {
+            assertTrue(bi.hasNextRequest());
+            bi.nextRequest();
+        }
+        assertFalse(bi.hasNextRequest());
+    }
+
+    @Test
+    public void testRetryAndFailure() {
+        BulkImport bi = new BulkImport(Arrays.asList("1", "2"), Collections.<BulkImport.Search>emptyList(), NOOP_LISTENER);
+        for (int i = 0; i < BulkImport.MAX_ATTEMPTS; i++) {
+            assertTrue(bi.hasNextRequest());
+            bi.onFailure(bi.nextRequest(), "HTTP 503", true);
+        }
+        assertTrue(bi.isFinished());
+        assertEquals("HTTP 503", bi.getFailures().get("1"));
+        assertEquals("HTTP 503", bi.getFailures().get("2"));
+    }
+
+    @Test
+    public void testResponse() {
+        BulkImport bi = new BulkImport(Arrays.asList("1", "2"), Collections.singletonList(BulkImport.Search.within("-105,39,-104,40")), NOOP_LISTENER);
+
+        RequestContext search = bi.nextRequest();
+        assertEquals(RequestContext.Type.SEARCH, search.getType());
+        assertEquals("-105.0,39.0,-104.0,40.0,10", search.getSearch().getBoundingBox());
+        bi.onResponse(search, Collections.singletonList(createObservation(3)));
+
+        RequestContext group = bi.nextRequest();
+        bi.onResponse(group, Collections.singletonList(createObservation(1)));
+        assertTrue(bi.isFinished());
+        assertEquals(2, bi.getResolvedCount());
+        assertEquals("Not found", bi.getFailures().get("2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBoundingBox() {
+        BulkImport.Search.within("1,2,3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCoordinates() {
+        BulkImport.Search.near(91, 0, 10);
+    }
+
+    private Observation createObservation(long cityId) {
+        Observation obs = new Observation();
+        obs.cityId = cityId;
+        return obs;
+    }
+
+    private List<String> createIds(int count, String... extra) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(Integer.toString(1000 + i));
+        }
+        ids.addAll(Arrays.asList(extra));
+        return ids;
+    }
+}
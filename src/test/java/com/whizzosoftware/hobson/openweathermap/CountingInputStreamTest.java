@@ -0,0 +1,41 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+public class CountingInputStreamTest {
+    @Test
+    public void testCount() throws Exception {
+        CountingInputStream is = new CountingInputStream(new ByteArrayInputStream(new byte[100]));
+        assertEquals(0, is.read());
+        assertEquals(10, is.read(new byte[10], 0, 10));
+        assertEquals(11, is.getCount());
+        while (is.read(new byte[32], 0, 32) != -1) {
+            // drain
+        }
+        assertEquals(100, is.getCount());
+    }
+
+    @Test
+    public void testResetDoesNotDoubleCount() throws Exception {
+        CountingInputStream is = new CountingInputStream(new ByteArrayInputStream(new byte[100]));
+        assertTrue(is.markSupported());
+        is.mark(100);
+        assertEquals(60, is.read(new byte[60], 0, 60));
+        is.reset();
+        assertEquals(80, is.read(new byte[80], 0, 80));
+        assertEquals(80, is.getCount());
+    }
+}
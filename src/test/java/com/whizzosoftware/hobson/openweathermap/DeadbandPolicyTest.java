@@ -0,0 +1,47 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DeadbandPolicyTest {
+    @Test
+    public void testDefaultPublishesAnyChange() {
+        DeadbandPolicy p = new DeadbandPolicy();
+        assertTrue(p.isTemperatureChange(Double.NaN, 20.0));
+        assertTrue(p.isTemperatureChange(20.0, 20.01));
+        assertFalse(p.isTemperatureChange(20.0, 20.0));
+        assertFalse(p.isHumidityChange(Double.NaN, Double.NaN));
+    }
+
+    @Test
+    public void testDeadbands() {
+        DeadbandPolicy p = new DeadbandPolicy();
+        p.setDeadbands(0.1, 1.0, 0.5, 5.0);
+        assertFalse(p.isTemperatureChange(20.0, 20.05));
+        assertTrue(p.isTemperatureChange(20.0, 19.85));
+        assertFalse(p.isHumidityChange(50.0, 51.0));
+        assertTrue(p.isHumidityChange(50.0, 52.0));
+        assertFalse(p.isWindSpeedChange(3.0, 3.4));
+        assertTrue(p.isWindSpeedChange(3.0, 3.6));
+    }
+
+    @Test
+    public void testWindDirectionWrapsAround() {
+        DeadbandPolicy p = new DeadbandPolicy();
+        p.setDeadbands(0, 0, 0, 5.0);
+        assertFalse(p.isWindDirectionChange(358.0, 2.0));
+        assertTrue(p.isWindDirectionChange(355.0, 5.0));
+        assertFalse(p.isWindDirectionChange(90.0, 94.0));
+        assertTrue(p.isWindDirectionChange(90.0, 96.0));
+    }
+}
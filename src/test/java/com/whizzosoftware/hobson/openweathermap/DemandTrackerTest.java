@@ -0,0 +1,58 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DemandTrackerTest {
+    @Test
+    public void testReadsAreCollapsedUntilPolled() {
+        DemandTracker t = new DemandTracker(300000);
+        t.onDemand("1000");
+        t.onDemand("1000");
+        t.onDemand("1001");
+        assertEquals(2, t.pollDemanded().size());
+        assertTrue(t.pollDemanded().isEmpty());
+    }
+
+    @Test
+    public void testStaleness() {
+        DemandTracker t = new DemandTracker(300000);
+        assertTrue(t.isStale("1000", 0));
+        t.onRefreshed("1000", 1000);
+        assertFalse(t.isStale("1000", 1000));
+        assertFalse(t.isStale("1000", 300999));
+        assertTrue(t.isStale("1000", 301000));
+
+        t.setTtl(60000);
+        assertTrue(t.isStale("1000", 61000));
+
+        t.retain(Collections.singletonList("1001"));
+        assertTrue(t.isStale("1000", 1000));
+    }
+
+    @Test
+    public void testSubscriptionsAreCounted() {
+        DemandTracker t = new DemandTracker(300000);
+        assertFalse(t.isSubscribed("1000"));
+        t.subscribe("1000");
+        t.subscribe("1000");
+        t.unsubscribe("1000");
+        assertTrue(t.isSubscribed("1000"));
+        t.unsubscribe("1000");
+        assertFalse(t.isSubscribed("1000"));
+        t.unsubscribe("1000");
+        assertFalse(t.isSubscribed("1000"));
+    }
+}
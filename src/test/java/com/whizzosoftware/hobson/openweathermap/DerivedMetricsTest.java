@@ -0,0 +1,61 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DerivedMetricsTest {
+    @Test
+    public void testDewPoint() {
+        assertEquals(12.0, DerivedMetrics.calculateDewPoint(20, 60), 0.1);
+        assertEquals(25.0, DerivedMetrics.calculateDewPoint(25, 100), 0.01);
+        assertTrue(Double.isNaN(DerivedMetrics.calculateDewPoint(20, Double.NaN)));
+        assertTrue(Double.isNaN(DerivedMetrics.calculateDewPoint(20, 0)));
+    }
+
+    @Test
+    public void testFeelsLike() {
+        // wind chill: -10C with a 20 km/h wind
+        assertEquals(-17.9, DerivedMetrics.calculateFeelsLike(-10, 50, 20 / 3.6), 0.1);
+        // heat index: 90F at 70% humidity is about 106F
+        assertEquals((106 - 32) / 1.8, DerivedMetrics.calculateFeelsLike((90 - 32) / 1.8, 70, 1), 0.5);
+        // mild conditions are unchanged
+        assertEquals(18.0, DerivedMetrics.calculateFeelsLike(18, 50, 3), 0.0);
+        assertEquals(5.0, DerivedMetrics.calculateFeelsLike(5, 50, Double.NaN), 0.0);
+    }
+
+    @Test
+    public void testRollingTemperaturesAndPressureTrend() {
+        DerivedMetrics m = new DerivedMetrics();
+        Observation obs = new Observation();
+        obs.hasMain = true;
+        obs.humidity = 50;
+        for (int i = 0; i <= 24; i++) {
+            // a reading every 10 minutes, warming a degree and dropping 0.5 hPa each time
+            obs.time = 1485789600 + i * 600;
+            obs.temperature = 273.15 + i;
+            obs.pressure = 1020 - i * 0.5;
+            m.onObservation(obs);
+            if (i == 3) {
+                // only 30 minutes of pressure readings
+                assertTrue(Double.isNaN(m.getPressureTrend()));
+            }
+        }
+        assertEquals(24.0, m.getHourTemperatures().getMax(), 1e-9);
+        assertEquals(19.0, m.getHourTemperatures().getMin(), 1e-9);
+        assertEquals(21.5, m.getHourTemperatures().getMean(), 1e-9);
+        assertEquals(0.0, m.getDayTemperatures().getMin(), 1e-9);
+        assertEquals(12.0, m.getDayTemperatures().getMean(), 1e-9);
+        assertEquals(1008.0, m.getPressure(), 0.0);
+        assertEquals(-9.0, m.getPressureTrend(), 1e-9);
+    }
+}
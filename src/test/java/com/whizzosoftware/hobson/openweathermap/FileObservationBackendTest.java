@@ -0,0 +1,112 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class FileObservationBackendTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("shared", "");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testObservationRoundTrip() throws Exception {
+        FileObservationBackend backend = new FileObservationBackend(dir);
+        assertNull(backend.get("1000"));
+
+        Observation obs = new Observation();
+        obs.cityId = 1000;
+        obs.name = "Station 1000";
+        obs.time = 100;
+        obs.hasMain = true;
+        obs.temperature = 280.5;
+        obs.humidity = 55;
+        obs.pressure = 1013.2;
+        obs.windSpeed = 3.5;
+        obs.latitude = 39.74;
+        obs.longitude = -104.98;
+        backend.publish("1000", obs);
+
+        // read through another instance as another process would
+        Observation o = new FileObservationBackend(dir).get("1000");
+        assertEquals(1000, o.getCityId());
+        assertEquals("Station 1000", o.getName());
+        assertEquals(100, o.getTime());
+        assertTrue(o.hasMain());
+        assertEquals(280.5, o.getTemperature(), 0.0);
+        assertEquals(55, o.getHumidity(), 0.0);
+        assertEquals(1013.2, o.getPressure(), 0.0);
+        assertEquals(3.5, o.getWindSpeed(), 0.0);
+        assertTrue(Double.isNaN(o.getWindDirection()));
+        assertEquals(39.74, o.getLatitude(), 0.0);
+        assertEquals(-104.98, o.getLongitude(), 0.0);
+
+        // a shorter record replaces a longer one cleanly
+        obs.name = null;
+        backend.publish("1000", obs);
+        assertNull(backend.get("1000").getName());
+    }
+
+    @Test
+    public void testLeases() throws Exception {
+        FileObservationBackend a = new FileObservationBackend(dir);
+        FileObservationBackend b = new FileObservationBackend(dir);
+        assertTrue(a.acquireLease("1000", "a", 0, 60000));
+        assertFalse(b.acquireLease("1000", "b", 1000, 60000));
+        assertTrue(a.acquireLease("1000", "a", 30000, 60000));
+        assertFalse(b.acquireLease("1000", "b", 89999, 60000));
+        assertTrue(b.acquireLease("1000", "b", 90000, 60000));
+
+        // a lease held by someone else isn't released
+        a.releaseLease("1000", "a");
+        assertFalse(a.acquireLease("1000", "a", 91000, 60000));
+        b.releaseLease("1000", "b");
+        assertTrue(a.acquireLease("1000", "a", 91000, 60000));
+    }
+
+    @Test
+    public void testLeaseDoesNotDisturbObservation() throws Exception {
+        FileObservationBackend backend = new FileObservationBackend(dir);
+        Observation obs = new Observation();
+        obs.time = 100;
+        backend.publish("1000", obs);
+        backend.acquireLease("1000", "a", 0, 60000);
+        backend.releaseLease("1000", "a");
+        assertEquals(100, backend.get("1000").getTime());
+    }
+
+    @Test
+    public void testKeysCannotEscapeDirectory() {
+        FileObservationBackend backend = new FileObservationBackend(dir);
+        assertEquals(dir, backend.getFile("../1000").getParentFile());
+        assertEquals("___1000.obs", backend.getFile("../1000").getName());
+    }
+}
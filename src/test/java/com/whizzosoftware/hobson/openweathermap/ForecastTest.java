@@ -0,0 +1,78 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ForecastTest {
+    @Test
+    public void testCapacity() {
+        Forecast f = new Forecast(2);
+        for (int i = 0; i < 5; i++) {
+            f.onObservation(createObservation(i * 10800, 280 + i));
+        }
+        assertEquals(2, f.size());
+        assertEquals(10800, f.getTime(1));
+    }
+
+    @Test
+    public void testSlotComparison() {
+        Forecast a = new Forecast();
+        Forecast b = new Forecast();
+        for (int i = 0; i < 3; i++) {
+            a.onObservation(createObservation(i * 10800, 280 + i));
+            b.onObservation(createObservation(i * 10800, i == 1 ? 290 : 280 + i));
+        }
+        assertTrue(a.isSlotEqual(0, b));
+        assertFalse(a.isSlotEqual(1, b));
+        assertTrue(a.isSlotEqual(2, b));
+
+        // slots missing from either forecast are never equal
+        assertFalse(a.isSlotEqual(0, new Forecast()));
+        assertFalse(a.isSlotEqual(3, b));
+    }
+
+    @Test
+    public void testMissingValuesCompareEqual() {
+        Forecast a = new Forecast();
+        Forecast b = new Forecast();
+        Observation obs = createObservation(0, 280);
+        obs.humidity = Double.NaN;
+        a.onObservation(obs);
+        b.onObservation(obs);
+        assertTrue(a.isSlotEqual(0, b));
+    }
+
+    @Test
+    public void testCopyFrom() {
+        Forecast a = new Forecast();
+        for (int i = 0; i < 10; i++) {
+            a.onObservation(createObservation(i * 10800, 280 + i));
+        }
+        Forecast b = new Forecast(8);
+        b.copyFrom(a);
+        assertEquals(8, b.size());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(a.isSlotEqual(i, b));
+        }
+    }
+
+    private Observation createObservation(long time, double temp) {
+        Observation obs = new Observation();
+        obs.time = time;
+        obs.temperature = temp;
+        obs.humidity = 50;
+        obs.windSpeed = 3;
+        obs.windDirection = 90;
+        return obs;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void testEmpty() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(50));
+        assertEquals(0.0, h.getMean(), 0);
+    }
+
+    @Test
+    public void testBucketBoundsContainValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 100, 1000, 123456789, Long.MAX_VALUE};
+        for (long v : values) {
+            int i = Histogram.bucketIndex(v);
+            assertTrue(v <= Histogram.bucketUpperBound(i));
+            if (i > 0) {
+                assertTrue(v > Histogram.bucketUpperBound(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMax());
+        assertEquals(500.5, h.getMean(), 0.001);
+
+        // log-linear buckets are accurate to within 12.5%
+        assertEquals(500, h.getPercentile(50), 500 * 0.125);
+        assertEquals(950, h.getPercentile(95), 950 * 0.125);
+        assertEquals(1000, h.getPercentile(100));
+    }
+
+    @Test
+    public void testNegativeValuesRecordedAsZero() {
+        Histogram h = new Histogram();
+        h.record(-5);
+        assertEquals(1, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final Histogram h = new Histogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        h.record(i);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, h.getCount());
+        assertEquals(9999, h.getMax());
+    }
+}
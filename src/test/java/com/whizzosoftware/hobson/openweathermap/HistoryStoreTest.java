@@ -0,0 +1,209 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HistoryStoreTest {
+    private static final long START = 1500000000 - 1500000000 % HistoryStore.SEGMENT_SPAN;
+    private static final long YEAR = 365 * 86400;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("history", "");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        HistoryStore store = new HistoryStore(dir, YEAR);
+        assertTrue(store.append("1000", createObservation(START + 300, 293.15, 55, 1013.2, 3.57, 270)));
+        Observation obs = createObservation(START + 600, 293.66, 56, Double.NaN, 3.2, 265);
+        assertTrue(store.append("1000", obs));
+        assertFalse(store.append("1000", obs));
+        assertFalse(store.append("1000", createObservation(START + 450, 290, 50, 1000, 1, 1)));
+
+        // unflushed rows are visible to queries
+        List<Long> times = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        query(new HistoryStore(dir, YEAR), "1000", 0, Long.MAX_VALUE, times, rows);
+        assertTrue(times.isEmpty());
+        query(store, "1000", 0, Long.MAX_VALUE, times, rows);
+        assertEquals(2, times.size());
+        assertEquals(START + 300, (long)times.get(0));
+        assertEquals(20.0, rows.get(0)[HistoryStore.TEMPERATURE], 0.005);
+        assertEquals(55, rows.get(0)[HistoryStore.HUMIDITY], 0.5);
+        assertEquals(1013.2, rows.get(0)[HistoryStore.PRESSURE], 0.05);
+        assertEquals(3.57, rows.get(0)[HistoryStore.WIND_SPEED], 0.005);
+        assertEquals(270, rows.get(0)[HistoryStore.WIND_DIRECTION], 0.5);
+        assertEquals(20.51, rows.get(1)[HistoryStore.TEMPERATURE], 0.005);
+        assertTrue(Double.isNaN(rows.get(1)[HistoryStore.PRESSURE]));
+        assertEquals(265, rows.get(1)[HistoryStore.WIND_DIRECTION], 0.5);
+
+        // and once flushed, to another store
+        store.flush();
+        times.clear();
+        rows.clear();
+        query(new HistoryStore(dir, YEAR), "1000", START + 301, START + 601, times, rows);
+        assertEquals(1, times.size());
+        assertEquals(START + 600, (long)times.get(0));
+    }
+
+    @Test
+    public void testSegmentsAreSealedAndQueriedAcrossBoundaries() throws Exception {
+        HistoryStore store = new HistoryStore(dir, 10 * YEAR);
+        long count = 3 * HistoryStore.SEGMENT_SPAN / 300;
+        for (long i = 0; i < count; i++) {
+            store.append("1000", createObservation(START + i * 300, 273.15 + i % 100 / 10.0, 50 + i % 7, 1000 + i % 13, i % 5, i % 360));
+            if (i % 12 == 0) {
+                store.flush();
+            }
+        }
+        store.flush();
+
+        // two sealed segments and the current log
+        String[] names = store.getStationDir("1000").list();
+        assertEquals(3, names.length);
+        assertTrue(new File(store.getStationDir("1000"), (START + HistoryStore.SEGMENT_SPAN) + ".seg").exists());
+        assertTrue(new File(store.getStationDir("1000"), (START + 2 * HistoryStore.SEGMENT_SPAN) + ".log").exists());
+
+        // 5 minute observations take well under 10 bytes each
+        assertTrue(store.getSize("1000") < count * 10);
+
+        final long[] n = {0};
+        final long from = START + HistoryStore.SEGMENT_SPAN - 3000;
+        final long to = START + 2 * HistoryStore.SEGMENT_SPAN + 3000;
+        new HistoryStore(dir, 10 * YEAR).query("1000", from, to, new HistoryStore.Visitor() {
+            @Override
+            public void onRow(long time, double[] values) {
+                long i = (time - START) / 300;
+                assertEquals(from + n[0] * 300, time);
+                assertEquals(i % 100 / 10.0, values[HistoryStore.TEMPERATURE], 0.005);
+                assertEquals(50 + i % 7, values[HistoryStore.HUMIDITY], 0.5);
+                assertEquals(1000 + i % 13, values[HistoryStore.PRESSURE], 0.05);
+                assertEquals(i % 5, values[HistoryStore.WIND_SPEED], 0.005);
+                assertEquals(i % 360, values[HistoryStore.WIND_DIRECTION], 0.5);
+                n[0]++;
+            }
+        });
+        assertEquals((to - from) / 300, n[0]);
+    }
+
+    @Test
+    public void testDownsample() throws Exception {
+        HistoryStore store = new HistoryStore(dir, YEAR);
+        for (int i = 0; i < 24; i++) {
+            store.append("1000", createObservation(START + i * 300, 273.15 + i, 50, 1000, 1, 0));
+        }
+        List<HistoryStore.Bucket> buckets = store.downsample("1000", HistoryStore.TEMPERATURE, START, START + 86400, 3600);
+        assertEquals(2, buckets.size());
+        assertEquals(START, buckets.get(0).getStart());
+        assertEquals(12, buckets.get(0).getCount());
+        assertEquals(0, buckets.get(0).getMin(), 0.005);
+        assertEquals(11, buckets.get(0).getMax(), 0.005);
+        assertEquals(5.5, buckets.get(0).getMean(), 0.005);
+        assertEquals(START + 3600, buckets.get(1).getStart());
+        assertEquals(17.5, buckets.get(1).getMean(), 0.005);
+
+        assertTrue(store.downsample("2000", HistoryStore.TEMPERATURE, START, START + 86400, 3600).isEmpty());
+    }
+
+    @Test
+    public void testRecoveryTruncatesPartialRow() throws Exception {
+        HistoryStore store = new HistoryStore(dir, YEAR);
+        store.append("1000", createObservation(START + 300, 280, 50, 1000, 1, 0));
+        store.append("1000", createObservation(START + 600, 281, 51, 1001, 2, 10));
+        store.flush();
+
+        // simulate a crash part way through writing the second row
+        File log = new File(store.getStationDir("1000"), START + ".log");
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        store = new HistoryStore(dir, YEAR);
+        assertTrue(store.append("1000", createObservation(START + 900, 282, 52, 1002, 3, 20)));
+        store.flush();
+        List<Long> times = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        query(new HistoryStore(dir, YEAR), "1000", 0, Long.MAX_VALUE, times, rows);
+        assertEquals(2, times.size());
+        assertEquals(START + 900, (long)times.get(1));
+        assertEquals(282 - 273.15, rows.get(1)[HistoryStore.TEMPERATURE], 0.005);
+        assertEquals(1002, rows.get(1)[HistoryStore.PRESSURE], 0.05);
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        HistoryStore store = new HistoryStore(dir, HistoryStore.SEGMENT_SPAN);
+        for (int i = 0; i < 3; i++) {
+            store.append("1000", createObservation(START + i * HistoryStore.SEGMENT_SPAN, 280, 50, 1000, 1, 0));
+        }
+        store.append("2000", createObservation(START, 280, 50, 1000, 1, 0));
+        store.flush();
+
+        assertEquals(0, store.applyRetention(START + 2 * HistoryStore.SEGMENT_SPAN - 1));
+        assertEquals(2, store.applyRetention(START + 2 * HistoryStore.SEGMENT_SPAN));
+        assertFalse(store.getStationDir("2000").exists());
+        assertEquals(2, store.getStationDir("1000").list().length);
+
+        // a station whose history was deleted starts afresh
+        assertTrue(store.append("2000", createObservation(START + 3 * HistoryStore.SEGMENT_SPAN, 280, 50, 1000, 1, 0)));
+    }
+
+    private void query(HistoryStore store, String key, long from, long to, final List<Long> times, final List<double[]> rows) throws Exception {
+        store.query(key, from, to, new HistoryStore.Visitor() {
+            @Override
+            public void onRow(long time, double[] values) {
+                times.add(time);
+                rows.add(values.clone());
+            }
+        });
+    }
+
+    private Observation createObservation(long time, double temperature, double humidity, double pressure, double windSpeed, double windDirection) {
+        Observation obs = new Observation();
+        obs.cityId = 1000;
+        obs.time = time;
+        obs.hasMain = true;
+        obs.temperature = temperature;
+        obs.humidity = humidity;
+        obs.pressure = pressure;
+        obs.windSpeed = windSpeed;
+        obs.windDirection = windDirection;
+        return obs;
+    }
+
+    private void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) {
+            for (File c : files) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
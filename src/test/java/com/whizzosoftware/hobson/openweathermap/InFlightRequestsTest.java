@@ -0,0 +1,70 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InFlightRequestsTest {
+    @Test
+    public void testBeginAndComplete() {
+        InFlightRequests r = new InFlightRequests();
+        RequestContext ctx = RequestContext.group(Arrays.asList("1", "2"));
+        r.begin("1", ctx, 0);
+        r.begin("2", ctx, 0);
+        assertTrue(r.contains("1"));
+        assertTrue(r.contains("2"));
+        r.complete(ctx);
+        assertFalse(r.contains("1"));
+        assertEquals(0, r.size());
+    }
+
+    @Test
+    public void testCompleteIgnoresNewerRequest() {
+        InFlightRequests r = new InFlightRequests();
+        RequestContext ctx1 = RequestContext.current("1");
+        RequestContext ctx2 = RequestContext.current("1");
+        r.begin("1", ctx1, 0);
+        r.begin("1", ctx2, 0);
+        r.complete(ctx1);
+        assertTrue(r.contains("1"));
+        r.complete(ctx2);
+        assertFalse(r.contains("1"));
+    }
+
+    @Test
+    public void testSupersede() {
+        InFlightRequests r = new InFlightRequests();
+        RequestContext group = RequestContext.group(Arrays.asList("1", "2"));
+        RequestContext current = RequestContext.current("3");
+        RequestContext recent = RequestContext.current("4");
+        r.begin("1", group, 0);
+        r.begin("2", group, 0);
+        r.begin("3", current, 0);
+        r.begin("4", recent, 1000);
+
+        List<RequestContext> superseded = r.supersede(1500, 1000);
+        assertEquals(Arrays.asList(group, current), superseded);
+        assertTrue(group.isCancelled());
+        assertTrue(current.isCancelled());
+        assertFalse(recent.isCancelled());
+        assertEquals(1, r.size());
+
+        // a late completion of a superseded request leaves the newer one alone
+        RequestContext replacement = RequestContext.current("3");
+        r.begin("3", replacement, 1500);
+        r.complete(current);
+        assertTrue(r.contains("3"));
+    }
+}
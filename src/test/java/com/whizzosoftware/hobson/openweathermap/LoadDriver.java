@@ -0,0 +1,400 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.device.MockDeviceManager;
+import com.whizzosoftware.hobson.api.event.MockEventManager;
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import com.whizzosoftware.hobson.api.property.PropertyContainer;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the plugin's real refresh path (onRefresh through the pooled HTTP transport, response processing and device
+ * updates) for a large number of stations against a StubOpenWeatherMapServer and reports the end-to-end time of
+ * each refresh cycle, the request rate and heap usage.
+ *
+ * A single-threaded executor stands in for the Hobson event loop. The plugin's clock is advanced by the maximum
+ * refresh interval at the start of each cycle so every station is due, and by a tick whenever stations are left
+ * waiting on the request governor (e.g. after injected 429s or server errors) so a cycle only ends once every
+ * station has been fetched.
+ *
+ * Options are passed as name=value arguments; see Options for the supported names.
+ */
+public class LoadDriver {
+    private static final long CYCLE_TIMEOUT = 600000;
+
+    private final Options options;
+    private final AtomicLong clock = new AtomicLong();
+    private ExecutorService loop;
+    private StubOpenWeatherMapServer server;
+    private MockDeviceManager deviceManager;
+    private MockEventManager eventManager;
+    private OpenWeatherMapPlugin plugin;
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(1);
+            return;
+        }
+        List<CycleResult> results = new LoadDriver(options).run();
+
+        long totalNanos = 0;
+        long maxNanos = 0;
+        long peakHeap = 0;
+        for (CycleResult r : results) {
+            totalNanos += r.elapsedNanos;
+            maxNanos = Math.max(maxNanos, r.elapsedNanos);
+            peakHeap = Math.max(peakHeap, r.heapUsed);
+        }
+        System.out.println(String.format(Locale.US, "%d cycle(s): mean %.1f ms, max %.1f ms, peak heap %.1f MB",
+            results.size(), totalNanos / 1e6 / results.size(), maxNanos / 1e6, peakHeap / 1048576.0));
+    }
+
+    public LoadDriver(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Starts the stub server and plugin, publishes the stations and runs the configured number of refresh cycles.
+     *
+     * @return the result of each cycle
+     *
+     * @throws Exception on failure
+     */
+    public List<CycleResult> run() throws Exception {
+        start();
+        try {
+            List<CycleResult> results = new ArrayList<>();
+            for (int i = 1; i <= options.cycles; i++) {
+                CycleResult r = runCycle();
+                results.add(r);
+                System.out.println("cycle " + i + ": " + r);
+            }
+            System.out.println("plugin metrics: " + plugin.getMetrics());
+            return results;
+        } finally {
+            stop();
+        }
+    }
+
+    public int getPublishedDeviceCount() {
+        return deviceManager.getPublishedDeviceCount(plugin.getContext());
+    }
+
+    private void start() throws Exception {
+        server = new StubOpenWeatherMapServer();
+        if (options.recordings != null) {
+            System.out.println("Loaded " + server.loadRecordings(options.recordings) + " recording(s)");
+        }
+        server.setLatency(options.minLatency, options.maxLatency);
+        server.setErrorRate(options.errorRate);
+        server.setThrottleRate(options.throttleRate);
+        server.setRequestLimit(Integer.MAX_VALUE, options.retryAfter);
+        server.setPayloadPadding(options.padding);
+        server.setSeed(options.seed);
+        server.start();
+
+        loop = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "OpenWeatherMap event loop");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        final EventLoopExecutor eventLoop = new EventLoopExecutor() {
+            @Override
+            public void executeInEventLoop(Runnable r) {
+                loop.execute(r);
+            }
+        };
+        plugin = new OpenWeatherMapPlugin("id", "version", "description") {
+            @Override
+            long now() {
+                return clock.get();
+            }
+
+            @Override
+            EventLoopExecutor getResponseEventLoop() {
+                return eventLoop;
+            }
+        };
+        plugin.setApiEndpoint("http", "127.0.0.1", server.getPort());
+        deviceManager = new MockDeviceManager();
+        eventManager = new MockEventManager();
+        plugin.setDeviceManager(deviceManager);
+        plugin.setEventManager(eventManager);
+
+        final PropertyContainer config = new PropertyContainer();
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_API_KEY, "abcd");
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_BATCH_REFRESH, options.batch);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_CALLS_PER_MINUTE, options.callsPerMinute);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_POOLED_CONNECTIONS, true);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_MAX_IN_FLIGHT, options.maxInFlight);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_ASYNC_PROCESSING, options.async);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_WORKER_THREADS, options.workers);
+        clock.set(System.currentTimeMillis());
+        runInLoop(new Runnable() {
+            @Override
+            public void run() {
+                plugin.onStartup(config);
+                for (int i = 0; i < options.stations; i++) {
+                    plugin.addCityId(Integer.toString(options.firstCityId + i));
+                }
+            }
+        });
+        long start = System.nanoTime();
+        awaitIdle();
+        System.out.println(String.format(Locale.US, "Published %d station(s) in %.1f ms", getPublishedDeviceCount(), (System.nanoTime() - start) / 1e6));
+    }
+
+    private void stop() throws Exception {
+        if (plugin != null) {
+            runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    plugin.onShutdown();
+                }
+            });
+        }
+        if (loop != null) {
+            loop.shutdown();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private CycleResult runCycle() throws Exception {
+        eventManager.clearEvents();
+        clock.addAndGet(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+        server.resetRequestCount();
+        long start = System.nanoTime();
+        runInLoop(new Runnable() {
+            @Override
+            public void run() {
+                plugin.onRefresh();
+            }
+        });
+        int retries = awaitIdle();
+        long elapsed = System.nanoTime() - start;
+        return new CycleResult(
+            elapsed,
+            server.getRequestCount(),
+            server.getThrottledCount(),
+            server.getErrorCount(),
+            retries,
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()
+        );
+    }
+
+    /**
+     * Waits until no requests are queued, in flight or being processed, ticking the plugin whenever the only
+     * remaining work is waiting on the request governor.
+     *
+     * @return the number of ticks needed
+     *
+     * @throws Exception on failure or if the plugin doesn't become idle within the timeout
+     */
+    private int awaitIdle() throws Exception {
+        long deadline = System.currentTimeMillis() + CYCLE_TIMEOUT;
+        int ticks = 0;
+        while (System.currentTimeMillis() < deadline) {
+            int[] state = callInLoop(new Callable<int[]>() {
+                @Override
+                public int[] call() {
+                    AsyncResponseProcessor p = plugin.getAsyncProcessor();
+                    return new int[] {plugin.getQueuedCount(), plugin.getInFlightCount(), p != null ? p.getPendingCount() : 0};
+                }
+            });
+            if (state[1] == 0 && state[2] == 0) {
+                if (state[0] == 0) {
+                    return ticks;
+                }
+                // only governed requests remain so move time along to let them through
+                clock.addAndGet(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+                runInLoop(new Runnable() {
+                    @Override
+                    public void run() {
+                        plugin.onRefresh();
+                    }
+                });
+                ticks++;
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        throw new IllegalStateException("Plugin did not become idle within " + TimeUnit.MILLISECONDS.toSeconds(CYCLE_TIMEOUT) + " seconds");
+    }
+
+    private void runInLoop(Runnable r) throws Exception {
+        try {
+            loop.submit(r).get();
+        } catch (ExecutionException e) {
+            throw (Exception)e.getCause();
+        }
+    }
+
+    private <T> T callInLoop(Callable<T> c) throws Exception {
+        try {
+            return loop.submit(c).get();
+        } catch (ExecutionException e) {
+            throw (Exception)e.getCause();
+        }
+    }
+
+    /**
+     * The result of a single refresh cycle.
+     */
+    public static class CycleResult {
+        public final long elapsedNanos;
+        public final int requests;
+        public final int throttled;
+        public final int errors;
+        public final int ticks;
+        public final long heapUsed;
+
+        CycleResult(long elapsedNanos, int requests, int throttled, int errors, int ticks, long heapUsed) {
+            this.elapsedNanos = elapsedNanos;
+            this.requests = requests;
+            this.throttled = throttled;
+            this.errors = errors;
+            this.ticks = ticks;
+            this.heapUsed = heapUsed;
+        }
+
+        public double getRequestsPerSecond() {
+            return elapsedNanos > 0 ? requests * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f ms, %d request(s) (%.1f/s), %d throttled, %d error(s), %d tick(s), heap %.1f MB",
+                elapsedNanos / 1e6, requests, getRequestsPerSecond(), throttled, errors, ticks, heapUsed / 1048576.0);
+        }
+    }
+
+    /**
+     * The load driver options.
+     */
+    public static class Options {
+        static final String USAGE = "usage: LoadDriver [stations=1000] [cycles=5] [batch=true] [latency=min-max] " +
+            "[errorRate=0.0] [throttleRate=0.0] [retryAfter=-1] [padding=0] [recordings=dir] [callsPerMinute=1000000] " +
+            "[maxInFlight=8] [async=false] [workers=2] [seed=0]";
+
+        public int stations = 1000;
+        public int firstCityId = 1000;
+        public int cycles = 5;
+        public boolean batch = true;
+        public long minLatency;
+        public long maxLatency;
+        public double errorRate;
+        public double throttleRate;
+        public int retryAfter = -1;
+        public int padding;
+        public File recordings;
+        public int callsPerMinute = 1000000;
+        public int maxInFlight = 8;
+        public boolean async;
+        public int workers = OpenWeatherMapPlugin.DEFAULT_WORKER_THREADS;
+        public long seed;
+
+        /**
+         * Parses name=value arguments.
+         *
+         * @param args the arguments
+         *
+         * @return an Options instance
+         *
+         * @throws IllegalArgumentException if an argument is not recognized or is malformed
+         */
+        public static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                int ix = arg.indexOf('=');
+                if (ix < 1) {
+                    throw new IllegalArgumentException("Invalid argument: " + arg);
+                }
+                String name = arg.substring(0, ix);
+                String value = arg.substring(ix + 1);
+                try {
+                    switch (name) {
+                        case "stations":
+                            o.stations = Integer.parseInt(value);
+                            break;
+                        case "cycles":
+                            o.cycles = Integer.parseInt(value);
+                            break;
+                        case "batch":
+                            o.batch = Boolean.parseBoolean(value);
+                            break;
+                        case "latency":
+                            int dash = value.indexOf('-');
+                            o.minLatency = Long.parseLong(dash > -1 ? value.substring(0, dash) : value);
+                            o.maxLatency = dash > -1 ? Long.parseLong(value.substring(dash + 1)) : o.minLatency;
+                            break;
+                        case "errorRate":
+                            o.errorRate = Double.parseDouble(value);
+                            break;
+                        case "throttleRate":
+                            o.throttleRate = Double.parseDouble(value);
+                            break;
+                        case "retryAfter":
+                            o.retryAfter = Integer.parseInt(value);
+                            break;
+                        case "padding":
+                            o.padding = Integer.parseInt(value);
+                            break;
+                        case "recordings":
+                            o.recordings = new File(value);
+                            break;
+                        case "callsPerMinute":
+                            o.callsPerMinute = Integer.parseInt(value);
+                            break;
+                        case "maxInFlight":
+                            o.maxInFlight = Integer.parseInt(value);
+                            break;
+                        case "async":
+                            o.async = Boolean.parseBoolean(value);
+                            break;
+                        case "workers":
+                            o.workers = Integer.parseInt(value);
+                            break;
+                        case "seed":
+                            o.seed = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown option: " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoadDriverTest {
+    @Test
+    public void testCyclesCompleteWithFaults() throws Exception {
+        LoadDriver.Options options = LoadDriver.Options.parse(new String[] {
+            "stations=100", "cycles=2", "batch=true", "errorRate=0.2", "throttleRate=0.1", "retryAfter=1", "seed=1"
+        });
+        LoadDriver driver = new LoadDriver(options);
+        List<LoadDriver.CycleResult> results = driver.run();
+        assertEquals(2, results.size());
+        assertEquals(100, driver.getPublishedDeviceCount());
+        for (LoadDriver.CycleResult r : results) {
+            // every station is fetched in at least 5 groups, with failed groups retried
+            assertTrue(r.requests >= 5);
+            assertEquals(r.requests - 5, r.throttled + r.errors);
+            assertTrue(r.heapUsed > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownOption() {
+        LoadDriver.Options.parse(new String[] {"foo=1"});
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ObservationParserTest {
+    static final String CURRENT_JSON = "{\"coord\":{\"lon\":-104.98,\"lat\":39.74},\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\",\"icon\":\"01d\"}],\"base\":\"stations\",\"main\":{\"temp\":280.32,\"pressure\":1012,\"humidity\":81,\"temp_min\":279.15,\"temp_max\":281.15},\"visibility\":10000,\"wind\":{\"speed\":4.1,\"deg\":80},\"clouds\":{\"all\":0},\"dt\":1485789600,\"sys\":{\"type\":1,\"id\":5091,\"message\":0.0103,\"country\":\"US\",\"sunrise\":1485762037,\"sunset\":1485794875},\"id\":5419384,\"name\":\"Denver\",\"cod\":200}";
+
+    @Test
+    public void testParseCurrent() throws Exception {
+        Observation obs = new Observation();
+        new ObservationParser().parse(toStream(CURRENT_JSON), obs);
+        assertEquals(5419384, obs.getCityId());
+        assertEquals("Denver", obs.getName());
+        assertEquals(1485789600, obs.getTime());
+        assertEquals(280.32, obs.getTemperature(), 0.0);
+        assertEquals(81.0, obs.getHumidity(), 0.0);
+        assertEquals(1012.0, obs.getPressure(), 0.0);
+        assertEquals(4.1, obs.getWindSpeed(), 0.0);
+        assertEquals(80.0, obs.getWindDirection(), 0.0);
+        assertEquals(39.74, obs.getLatitude(), 0.0);
+        assertEquals(-104.98, obs.getLongitude(), 0.0);
+        assertTrue(obs.hasMain());
+    }
+
+    @Test
+    public void testParseMissingValues() throws Exception {
+        Observation obs = new Observation();
+        new ObservationParser().parse(toStream("{\"main\":{\"temp\":-1.5e2},\"wind\":{\"deg\":null},\"name\":\"Caf\\u00e9 \\\"Station\\\"\"}"), obs);
+        assertEquals(-1, obs.getCityId());
+        assertEquals(-1, obs.getTime());
+        assertEquals(-150.0, obs.getTemperature(), 0.0);
+        assertTrue(Double.isNaN(obs.getHumidity()));
+        assertTrue(Double.isNaN(obs.getPressure()));
+        assertTrue(Double.isNaN(obs.getWindSpeed()));
+        assertTrue(Double.isNaN(obs.getWindDirection()));
+        assertEquals("Caf\u00e9 \"Station\"", obs.getName());
+    }
+
+    @Test
+    public void testParseError() throws Exception {
+        Observation obs = new Observation();
+        new ObservationParser().parse(toStream("{\"cod\":\"404\",\"message\":\"city not found\"}"), obs);
+        assertFalse(obs.hasMain());
+    }
+
+    @Test
+    public void testParseMatchesJSONObject() throws Exception {
+        Observation obs = new Observation();
+        new ObservationParser().parse(toStream(CURRENT_JSON), obs);
+        Observation json = Observation.fromJson(new org.json.JSONObject(new org.json.JSONTokener(CURRENT_JSON)));
+        assertEquals(json.toString(), obs.toString());
+    }
+
+    @Test
+    public void testParseGroup() throws Exception {
+        final List<Observation> results = new ArrayList<>();
+        int count = new ObservationParser().parseGroup(toStream("{\"cnt\":2,\"list\":[" + CURRENT_JSON + ",{\"id\":1,\"main\":{\"temp\":300}}]}"), new ObservationParser.Listener() {
+            @Override
+            public void onObservation(Observation obs) {
+                results.add(obs.copy());
+            }
+        });
+        assertEquals(2, count);
+        assertEquals(5419384, results.get(0).getCityId());
+        assertEquals(1, results.get(1).getCityId());
+        assertEquals(300.0, results.get(1).getTemperature(), 0.0);
+        assertNull(results.get(1).getName());
+    }
+
+    @Test
+    public void testParseEmptyGroup() throws Exception {
+        assertEquals(0, new ObservationParser().parseGroup(toStream("{\"cnt\":0,\"list\":[]}"), null));
+    }
+
+    @Test
+    public void testParseForecast() throws Exception {
+        Forecast f = new Forecast();
+        String json = StubOpenWeatherMapServer.createForecastJson("5419384", StubOpenWeatherMapServer.FORECAST_START, 40);
+        assertEquals(40, new ObservationParser().parseForecast(toStream(json), f));
+        assertEquals(40, f.size());
+        assertEquals(StubOpenWeatherMapServer.FORECAST_START, f.getTime(0));
+        assertEquals(StubOpenWeatherMapServer.FORECAST_START + 39 * StubOpenWeatherMapServer.FORECAST_PERIOD, f.getTime(39));
+        assertEquals(274.15, f.getTemperature(0), 0.0);
+        assertEquals(64.0, f.getHumidity(0), 0.0);
+        assertEquals(4.5, f.getWindSpeed(0), 0.0);
+        assertEquals(120.0, f.getWindDirection(0), 0.0);
+
+        // parsing again replaces rather than appends
+        assertEquals(2, new ObservationParser().parseForecast(toStream(StubOpenWeatherMapServer.createForecastJson("1", 0, 2)), f));
+        assertEquals(2, f.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseTruncated() throws Exception {
+        new ObservationParser().parse(toStream("{\"main\":{\"temp\":2"), new Observation());
+    }
+
+    @Test
+    public void testGroupFallbackSkipsDispatchedEntries() throws Exception {
+        // the streaming parser rejects the second entry's single-quoted key after dispatching the first
+        String json = "{\"cnt\":3,\"list\":[{\"id\":1,\"main\":{\"temp\":280.1}},{\"id\":2,\"main\":{'temp':280.2}},{\"id\":3,\"main\":{\"temp\":280.3}}]}";
+        final List<Long> ids = new ArrayList<>();
+        int count = new ObservationParser().parseGroupWithFallback(toStream(json), new ObservationParser.Listener() {
+            @Override
+            public void onObservation(Observation obs) {
+                ids.add(obs.getCityId());
+            }
+        });
+        assertEquals(3, count);
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids);
+    }
+
+    @Test
+    public void testFallbackWithoutMarkSupport() throws Exception {
+        Observation obs = new Observation();
+        new ObservationParser().parseWithFallback(new UnmarkableInputStream(toStream(CURRENT_JSON)), obs);
+        assertEquals(5419384, obs.getCityId());
+
+        // a response that fails beyond what is buffered for a re-parse can't fall back
+        StringBuilder sb = new StringBuilder("{\"name\":\"");
+        while (sb.length() <= ObservationParser.FALLBACK_BUFFER_SIZE) {
+            sb.append("padding ");
+        }
+        sb.append("\",\"main\":{\"temp\":\"n/a\"}}");
+        try {
+            new ObservationParser().parseWithFallback(new UnmarkableInputStream(toStream(sb.toString())), obs);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("too large"));
+        }
+    }
+
+    static ByteArrayInputStream toStream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hides the mark support of the stream it wraps, like a network stream.
+     */
+    private static class UnmarkableInputStream extends FilterInputStream {
+        UnmarkableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ObservationStoreTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("observations", ".dat");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ObservationStore store = new ObservationStore(file);
+        assertTrue(store.load().isEmpty());
+        store.append("1", createObservation(1, 100, 280.0, "Station 1"));
+        store.append("2", createObservation(2, 100, 290.0, null));
+        store.append("1", createObservation(1, 200, 281.0, "Station 1"));
+        store.close();
+
+        Map<String,Observation> map = new ObservationStore(file).load();
+        assertEquals(2, map.size());
+        assertEquals(200, map.get("1").getTime());
+        assertEquals(281.0, map.get("1").getTemperature(), 0.0);
+        assertEquals("Station 1", map.get("1").getName());
+        assertTrue(map.get("1").hasMain());
+        assertNull(map.get("2").getName());
+        assertTrue(Double.isNaN(map.get("2").getWindSpeed()));
+    }
+
+    @Test
+    public void testTruncatedRecordIsIgnored() throws Exception {
+        ObservationStore store = new ObservationStore(file);
+        store.load();
+        store.append("1", createObservation(1, 100, 280.0, "Station 1"));
+        store.append("2", createObservation(2, 100, 290.0, "Station 2"));
+        store.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        store = new ObservationStore(file);
+        Map<String,Observation> map = store.load();
+        assertEquals(1, map.size());
+        assertNotNull(map.get("1"));
+
+        // appending after a truncated record must still produce a readable file
+        store.append("3", createObservation(3, 100, 270.0, "Station 3"));
+        store.close();
+        assertEquals(2, new ObservationStore(file).load().size());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        ObservationStore store = new ObservationStore(file);
+        store.load();
+        for (int i = 0; i < 1000; i++) {
+            store.append(Integer.toString(i % 10), createObservation(i % 10, i, 280.0, null));
+        }
+        store.close();
+        assertTrue(store.getRecordCount() <= 64);
+
+        Map<String,Observation> map = new ObservationStore(file).load();
+        assertEquals(10, map.size());
+        assertEquals(999, map.get("9").getTime());
+    }
+
+    private Observation createObservation(long cityId, long time, double temp, String name) {
+        Observation obs = new Observation();
+        obs.cityId = cityId;
+        obs.time = time;
+        obs.temperature = temp;
+        obs.name = name;
+        obs.hasMain = true;
+        return obs;
+    }
+}
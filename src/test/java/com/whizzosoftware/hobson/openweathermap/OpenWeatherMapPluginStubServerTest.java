@@ -0,0 +1,533 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.device.MockDeviceManager;
+import com.whizzosoftware.hobson.api.event.MockEventManager;
+import com.whizzosoftware.hobson.api.property.PropertyContainer;
+import com.whizzosoftware.hobson.api.variable.DeviceVariableContext;
+import com.whizzosoftware.hobson.api.variable.DeviceVariableState;
+import com.whizzosoftware.hobson.api.variable.VariableConstants;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OpenWeatherMapPluginStubServerTest {
+    private StubOpenWeatherMapServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubOpenWeatherMapServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testBatchedRefresh() {
+        MockDeviceManager dm = new MockDeviceManager();
+        OpenWeatherMapPlugin plugin = createPlugin(dm, true);
+
+        for (int i = 0; i < 45; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+        assertEquals(45, server.getRequestCount());
+        assertEquals(45, dm.getPublishedDeviceCount(plugin.getContext()));
+
+        server.resetRequestCount();
+        plugin.onRefresh();
+        assertEquals(3, server.getRequestCount());
+
+        DeviceVariableState v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1044", VariableConstants.OUTDOOR_RELATIVE_HUMIDITY));
+        assertNotNull(v);
+        assertEquals(81.0, v.getValue());
+    }
+
+    @Test
+    public void testUnbatchedRefresh() {
+        MockDeviceManager dm = new MockDeviceManager();
+        OpenWeatherMapPlugin plugin = createPlugin(dm, false);
+
+        for (int i = 0; i < 25; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+
+        server.resetRequestCount();
+        plugin.onRefresh();
+        assertEquals(25, server.getRequestCount());
+    }
+
+    @Test
+    public void testConditionalRefresh() {
+        server.setEtagsEnabled(true);
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, true);
+
+        for (int i = 0; i < 10; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+
+        // the first refresh obtains validators for the group, the next is answered with a 304
+        plugin.onRefresh();
+        assertEquals(0, server.getNotModifiedCount());
+        plugin.advanceTime(2 * OpenWeatherMapPlugin.DEFAULT_MIN_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(1, server.getNotModifiedCount());
+        assertEquals(1, plugin.getMetrics().getNotModifiedCount());
+        assertTrue(plugin.getMetrics().responseSize.getCount() > 0);
+    }
+
+    @Test
+    public void testThrottledByQuota() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false, 60);
+
+        // 60 calls per minute allows 10 calls per 10 second tick
+        for (int i = 0; i < 25; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+        assertEquals(10, server.getRequestCount());
+
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(20, server.getRequestCount());
+
+        // the deferred stations are sent ahead of the published stations that have since come due
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(30, server.getRequestCount());
+        assertEquals(25, dm.getPublishedDeviceCount(plugin.getContext()));
+    }
+
+    @Test
+    public void testBackoffOn429() {
+        server.setRequestLimit(5, 60);
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false, 6000);
+
+        for (int i = 0; i < 20; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+
+        // the first 429 stops all further requests
+        assertEquals(6, server.getRequestCount());
+        assertEquals(1, server.getThrottledCount());
+        assertEquals(5, plugin.getMetrics().getSuccessCount());
+        assertEquals(1, plugin.getMetrics().getThrottledCount());
+        assertEquals(6, plugin.getMetrics().httpLatency.getCount());
+
+        // nothing is sent while the Retry-After period is in effect
+        plugin.advanceTime(30000);
+        plugin.onRefresh();
+        assertEquals(6, server.getRequestCount());
+
+        // once it expires, the deferred stations (including the throttled one) are sent along with the five
+        // published stations that came due during the backoff
+        server.setRequestLimit(Integer.MAX_VALUE, -1);
+        plugin.advanceTime(30000);
+        plugin.onRefresh();
+        assertEquals(27, server.getRequestCount());
+        assertEquals(20, dm.getPublishedDeviceCount(plugin.getContext()));
+    }
+
+    @Test
+    public void testStationsMoveOffRejectedKey() {
+        server.rejectKey("key2");
+        MockDeviceManager dm = new MockDeviceManager();
+        PropertyContainer config = createConfig(false, 6000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_API_KEY, "key1, key2");
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, config);
+
+        for (int i = 0; i < 20; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+
+        // the stations that were sent with the rejected key are retried with the remaining one
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        int rejected = server.getRequestCount("key2");
+        assertTrue(rejected > 0);
+        assertEquals(20, server.getRequestCount("key1"));
+        assertEquals(20, dm.getPublishedDeviceCount(plugin.getContext()));
+
+        // and stay there
+        plugin.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(rejected, server.getRequestCount("key2"));
+        assertEquals(40, server.getRequestCount("key1"));
+    }
+
+    @Test
+    public void testOnDemandStationsAreOnlyRefreshedWhenRead() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, true);
+        for (int i = 0; i < 3; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+        Map<String,Object> config = new HashMap<>();
+        config.put(OpenWeatherMapDevice.PROP_ON_DEMAND, true);
+        plugin.getDevice("1001").onDeviceConfigurationUpdate(config);
+        plugin.getDevice("1002").onDeviceConfigurationUpdate(config);
+
+        // only the scheduled station is polled
+        server.resetRequestCount();
+        plugin.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(1, server.getRequestCount());
+
+        // reading the expired on-demand stations fetches them in a single group request on the next tick
+        plugin.requestRefresh("1001");
+        plugin.requestRefresh("1002");
+        plugin.requestRefresh("1002");
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(2, server.getRequestCount());
+
+        // reading them again within the TTL does not
+        plugin.requestRefresh("1001");
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(2, server.getRequestCount());
+
+        // a subscribed on-demand station goes back on the schedule
+        plugin.subscribe("1001");
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void testUnreadOnDemandStationsAreRefreshedAtMaxInterval() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false);
+        plugin.addCityId("1000");
+        Map<String,Object> config = new HashMap<>();
+        config.put(OpenWeatherMapDevice.PROP_ON_DEMAND, true);
+        plugin.getDevice("1000").onDeviceConfigurationUpdate(config);
+
+        server.resetRequestCount();
+        plugin.onRefresh();
+        plugin.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000 - OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(0, server.getRequestCount());
+
+        // nothing reads the station, but it is still refreshed once the maximum interval has passed
+        plugin.advanceTime(OpenWeatherMapPlugin.TICK_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testInstancesShareObservations() {
+        PropertyContainer config = createConfig(true, 100000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_SHARE_OBSERVATIONS, true);
+        MockDeviceManager dm1 = new MockDeviceManager();
+        MockDeviceManager dm2 = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin1 = createPlugin(dm1, config);
+        StubHttpOpenWeatherMapPlugin plugin2 = createPlugin(dm2, config);
+        try {
+            for (int i = 0; i < 5; i++) {
+                plugin1.addCityId(Integer.toString(3000 + i));
+                plugin2.addCityId(Integer.toString(3000 + i));
+            }
+
+            // the first instance to come due polls for both
+            server.resetRequestCount();
+            plugin1.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+            plugin2.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+            plugin1.onRefresh();
+            plugin2.onRefresh();
+            assertEquals(1, server.getRequestCount());
+            assertEquals(5, dm2.getPublishedDeviceCount(plugin2.getContext()));
+
+            // the second takes over once the first shuts down
+            plugin1.onShutdown();
+            plugin2.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+            plugin2.onRefresh();
+            assertEquals(2, server.getRequestCount());
+        } finally {
+            plugin1.onShutdown();
+            plugin2.onShutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCoalesced() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false);
+        plugin.setDeferRequests(true);
+
+        plugin.addCityId("1000");
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+        assertEquals(2, plugin.getDeferredRequestCount());
+
+        plugin.completeDeferredRequests();
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, dm.getPublishedDeviceCount(plugin.getContext()));
+
+        // a refresh while the station is still in flight shares the outstanding request
+        plugin.advanceTime(2 * OpenWeatherMapPlugin.DEFAULT_MIN_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+        assertEquals(2, plugin.getDeferredRequestCount());
+        plugin.completeDeferredRequests();
+        assertEquals(4, server.getRequestCount());
+        assertEquals(2, dm.getPublishedDeviceCount(plugin.getContext()));
+    }
+
+    @Test
+    public void testSupersededRequestsBackOffOnce() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false);
+        plugin.setDeferRequests(true);
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+        plugin.addCityId("1002");
+        assertEquals(3, plugin.getDeferredRequestCount());
+
+        // all three requests are superseded in the same cycle but their key only backs off once
+        plugin.advanceTime((OpenWeatherMapPlugin.DEFAULT_REQUEST_DEADLINE + OpenWeatherMapPlugin.TICK_INTERVAL) * 1000);
+        plugin.onRefresh();
+        assertEquals(3, plugin.getMetrics().getSupersededCount());
+        long backoffUntil = plugin.getBackoffUntil("abcd");
+        assertEquals(plugin.now() + RequestGovernor.INITIAL_BACKOFF, backoffUntil);
+
+        // and late failures of the superseded requests don't back it off again
+        plugin.failDeferredRequests(new IOException("Connection reset"));
+        assertEquals(backoffUntil, plugin.getBackoffUntil("abcd"));
+        assertEquals(0, plugin.getInFlightCount());
+    }
+
+    @Test
+    public void testBulkImport() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false);
+        plugin.setDeferRequests(true);
+
+        List<String> cityIds = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            cityIds.add(Integer.toString(1000 + i));
+        }
+        cityIds.add("abc");
+        cityIds.add(Long.toString(StubOpenWeatherMapServer.UNKNOWN_CITY_ID));
+
+        final BulkImport[] completed = new BulkImport[1];
+        plugin.startBulkImport(new BulkImport(cityIds, Collections.singletonList(BulkImport.Search.near(39.74, -104.98, 5)), new BulkImport.Listener() {
+            @Override
+            public void onProgress(BulkImport bulkImport) {
+            }
+
+            @Override
+            public void onComplete(BulkImport bulkImport) {
+                completed[0] = bulkImport;
+            }
+        }));
+
+        // requests are made in groups with bounded concurrency
+        while (plugin.getDeferredRequestCount() > 0) {
+            assertTrue(plugin.getDeferredRequestCount() <= BulkImport.MAX_CONCURRENT_REQUESTS);
+            assertEquals(0, dm.getPublishedDeviceCount(plugin.getContext()));
+            plugin.completeDeferredRequests();
+        }
+
+        // 1 search + 11 groups
+        assertEquals(12, server.getRequestCount());
+        assertNotNull(completed[0]);
+        assertEquals(205, completed[0].getResolvedCount());
+        assertEquals(2, completed[0].getFailures().size());
+        assertEquals("Invalid city ID", completed[0].getFailures().get("abc"));
+        assertEquals("Not found", completed[0].getFailures().get(Long.toString(StubOpenWeatherMapServer.UNKNOWN_CITY_ID)));
+        assertEquals(205, dm.getPublishedDeviceCount(plugin.getContext()));
+    }
+
+    @Test
+    public void testForecast() {
+        MockDeviceManager dm = new MockDeviceManager();
+        PropertyContainer config = createConfig(true, 100000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_FORECAST, true);
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, config);
+
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+
+        // one group request for current conditions plus a forecast request per station
+        server.resetRequestCount();
+        plugin.onRefresh();
+        assertEquals(3, server.getRequestCount());
+        DeviceVariableState v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1000", OpenWeatherMapDevice.getForecastVariableName(0, "Humidity")));
+        assertNotNull(v);
+        assertEquals(64.0, v.getValue());
+
+        // forecasts are on their own, longer schedule
+        server.resetRequestCount();
+        plugin.advanceTime(2 * OpenWeatherMapPlugin.DEFAULT_MIN_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(1, server.getRequestCount());
+
+        // once due again (both stations' phases have passed), the shifted forecast is published
+        server.advanceForecast(1);
+        server.resetRequestCount();
+        plugin.advanceTime(2 * OpenWeatherMapPlugin.DEFAULT_FORECAST_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(3, server.getRequestCount());
+        v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1000", OpenWeatherMapDevice.getForecastVariableName(0, "Humidity")));
+        assertEquals(65.0, v.getValue());
+    }
+
+    @Test
+    public void testStationsInSameGridCellAreFetchedOnce() {
+        server.setStationLocation("1000", 39.741, -104.981);
+        server.setStationLocation("1001", 39.742, -104.982);
+        server.setStationLocation("1002", 40.015, -105.270);
+        MockDeviceManager dm = new MockDeviceManager();
+        PropertyContainer config = createConfig(false, 100000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_STATION_GRID_SIZE, 0.01);
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, config);
+
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+        plugin.addCityId("1002");
+        assertEquals(3, dm.getPublishedDeviceCount(plugin.getContext()));
+
+        // 1001 shares 1000's grid cell so only 1000 and 1002 are fetched
+        server.resetRequestCount();
+        plugin.onRefresh();
+        assertEquals(2, server.getRequestCount());
+        DeviceVariableState v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1001", VariableConstants.OUTDOOR_RELATIVE_HUMIDITY));
+        assertNotNull(v);
+        assertEquals(81.0, v.getValue());
+    }
+
+    @Test
+    public void testScheduledDeviceKeepsOnDemandStationOnSchedule() {
+        server.setStationLocation("1000", 39.741, -104.981);
+        server.setStationLocation("1001", 39.742, -104.982);
+        MockDeviceManager dm = new MockDeviceManager();
+        PropertyContainer config = createConfig(false, 100000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_STATION_GRID_SIZE, 0.01);
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, config);
+        plugin.addCityId("1000");
+        plugin.addCityId("1001");
+        plugin.onRefresh();
+
+        // 1001 is merged into 1000, whose own device is refreshed on demand
+        Map<String,Object> deviceConfig = new HashMap<>();
+        deviceConfig.put(OpenWeatherMapDevice.PROP_ON_DEMAND, true);
+        plugin.getDevice("1000").onDeviceConfigurationUpdate(deviceConfig);
+
+        // 1000 is still fetched on the schedule on behalf of 1001
+        server.resetRequestCount();
+        plugin.advanceTime(OpenWeatherMapPlugin.DEFAULT_MAX_REFRESH_INTERVAL * 1000);
+        plugin.onRefresh();
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testAsyncProcessing() throws Exception {
+        MockDeviceManager dm = new MockDeviceManager();
+        PropertyContainer config = createConfig(true, 100000);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_ASYNC_PROCESSING, true);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_WORKER_THREADS, 3);
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, config);
+        assertNotNull(plugin.getAsyncProcessor());
+
+        for (int i = 0; i < 45; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+            plugin.drainEventLoop();
+        }
+        assertEquals(45, dm.getPublishedDeviceCount(plugin.getContext()));
+
+        // responses are parsed on the workers and applied to devices once drained
+        server.resetRequestCount();
+        plugin.onRefresh();
+        plugin.drainEventLoop();
+        assertEquals(3, server.getRequestCount());
+        assertEquals(0, plugin.getAsyncProcessor().getPendingCount());
+        DeviceVariableState v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1044", VariableConstants.OUTDOOR_RELATIVE_HUMIDITY));
+        assertNotNull(v);
+        assertEquals(81.0, v.getValue());
+        assertTrue(plugin.getMetrics().updateTime.getCount() > 0);
+        assertTrue(plugin.getMetrics().parseTime.getCount() > 0);
+    }
+
+    @Test
+    public void testInvalidQuotaFallsBackToDefault() {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, false, 0);
+
+        // the default of 60 calls per minute allows 10 calls per 10 second tick rather than none
+        for (int i = 0; i < 25; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+        assertEquals(10, server.getRequestCount());
+    }
+
+    @Test
+    public void testGroupFallbackSkipsDispatchedEntries() throws Exception {
+        MockDeviceManager dm = new MockDeviceManager();
+        StubHttpOpenWeatherMapPlugin plugin = createPlugin(dm, true);
+        for (int i = 0; i < 3; i++) {
+            plugin.addCityId(Integer.toString(1000 + i));
+        }
+        long updates = plugin.getMetrics().updateTime.getCount();
+
+        // the streaming parser rejects the second entry's single-quoted key after dispatching the first
+        String body = "{\"cnt\":3,\"list\":[" +
+            "{\"id\":1000,\"dt\":1600000000,\"main\":{\"temp\":280.1,\"humidity\":50}}," +
+            "{\"id\":1001,\"dt\":1600000000,\"main\":{'temp':280.2,\"humidity\":51}}," +
+            "{\"id\":1002,\"dt\":1600000000,\"main\":{\"temp\":280.3,\"humidity\":52}}]}";
+        plugin.processResponse(200, Collections.<String,String>emptyMap(), new ByteArrayInputStream(body.getBytes("UTF-8")), RequestContext.group(Arrays.asList("1000", "1001", "1002")));
+
+        assertEquals(updates + 3, plugin.getMetrics().updateTime.getCount());
+        assertEquals(0, plugin.getMetrics().getParseFailureCount());
+        DeviceVariableState v = dm.getDeviceVariable(DeviceVariableContext.create(plugin.getContext(), "1002", VariableConstants.OUTDOOR_RELATIVE_HUMIDITY));
+        assertEquals(52.0, v.getValue());
+    }
+
+    private StubHttpOpenWeatherMapPlugin createPlugin(MockDeviceManager dm, boolean batch) {
+        return createPlugin(dm, batch, 100000);
+    }
+
+    private StubHttpOpenWeatherMapPlugin createPlugin(MockDeviceManager dm, boolean batch, int callsPerMinute) {
+        return createPlugin(dm, createConfig(batch, callsPerMinute));
+    }
+
+    private StubHttpOpenWeatherMapPlugin createPlugin(MockDeviceManager dm, PropertyContainer config) {
+        StubHttpOpenWeatherMapPlugin plugin = new StubHttpOpenWeatherMapPlugin(server);
+        plugin.setDeviceManager(dm);
+        plugin.setEventManager(new MockEventManager());
+        plugin.onStartup(config);
+        return plugin;
+    }
+
+    private PropertyContainer createConfig(boolean batch, int callsPerMinute) {
+        PropertyContainer config = new PropertyContainer();
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_API_KEY, "abcd");
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_BATCH_REFRESH, batch);
+        config.setPropertyValue(OpenWeatherMapPlugin.PROP_CALLS_PER_MINUTE, callsPerMinute);
+        return config;
+    }
+}
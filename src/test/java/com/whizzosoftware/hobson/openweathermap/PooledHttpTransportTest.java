@@ -0,0 +1,149 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PooledHttpTransportTest {
+    private StubOpenWeatherMapServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubOpenWeatherMapServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testResponsesAreDelivered() throws Exception {
+        RecordingCallback callback = new RecordingCallback(20);
+        PooledHttpTransport transport = new PooledHttpTransport(callback, new DirectEventLoop(), 5000, 5000, 4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String cityId = Integer.toString(1000 + i);
+                transport.send(new URI("http://127.0.0.1:" + server.getPort() + "/data/2.5/weather?id=" + cityId), null, RequestContext.current(cityId));
+            }
+            assertTrue(callback.latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            transport.close();
+        }
+
+        assertEquals(20, callback.responses.size());
+        assertTrue(callback.failures.isEmpty());
+        assertEquals(20, server.getRequestCount());
+        for (Observation obs : callback.responses) {
+            assertEquals(81.0, obs.getHumidity(), 0.0);
+        }
+    }
+
+    @Test
+    public void testConnectionFailure() throws Exception {
+        int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort();
+        }
+        RecordingCallback callback = new RecordingCallback(1);
+        PooledHttpTransport transport = new PooledHttpTransport(callback, new DirectEventLoop(), 1000, 1000, 1);
+        try {
+            transport.send(new URI("http://127.0.0.1:" + port + "/data/2.5/weather?id=1"), null, RequestContext.current("1"));
+            assertTrue(callback.latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            transport.close();
+        }
+        assertEquals(1, callback.failures.size());
+        assertTrue(callback.responses.isEmpty());
+    }
+
+    @Test
+    public void testRequestAfterCloseFails() throws Exception {
+        RecordingCallback callback = new RecordingCallback(1);
+        PooledHttpTransport transport = new PooledHttpTransport(callback, new DirectEventLoop(), 1000, 1000, 1);
+        transport.close();
+        transport.send(new URI("http://127.0.0.1:" + server.getPort() + "/data/2.5/weather?id=1"), null, RequestContext.current("1"));
+        assertTrue(callback.latch.await(1, TimeUnit.SECONDS));
+        assertEquals(1, callback.failures.size());
+    }
+
+    @Test
+    public void testCancelledRequestIsDropped() throws Exception {
+        server.setLatency(200, 200);
+        RecordingCallback callback = new RecordingCallback(1);
+        PooledHttpTransport transport = new PooledHttpTransport(callback, new DirectEventLoop(), 5000, 5000, 1);
+        try {
+            // the second request waits behind the first and is superseded before it is sent
+            RequestContext ctx = RequestContext.current("1001");
+            transport.send(new URI("http://127.0.0.1:" + server.getPort() + "/data/2.5/weather?id=1000"), null, RequestContext.current("1000"));
+            transport.send(new URI("http://127.0.0.1:" + server.getPort() + "/data/2.5/weather?id=1001"), null, ctx);
+            ctx.cancel();
+            assertTrue(callback.latch.await(10, TimeUnit.SECONDS));
+            Thread.sleep(500);
+        } finally {
+            transport.close();
+        }
+        assertEquals(1, callback.responses.size());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private static class DirectEventLoop implements EventLoopExecutor {
+        @Override
+        public void executeInEventLoop(Runnable r) {
+            r.run();
+        }
+    }
+
+    private static class RecordingCallback implements HttpTransport.Callback {
+        final List<Observation> responses = Collections.synchronizedList(new ArrayList<Observation>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch latch;
+
+        RecordingCallback(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(int statusCode, Map<String,String> headers, InputStream body, RequestContext ctx) {
+            try {
+                assertEquals(200, statusCode);
+                Observation obs = new Observation();
+                new ObservationParser().parse(body, obs);
+                assertEquals(ctx.getCityId(), Long.toString(obs.getCityId()));
+                responses.add(obs);
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Throwable cause, RequestContext ctx) {
+            failures.add(cause);
+            latch.countDown();
+        }
+    }
+}
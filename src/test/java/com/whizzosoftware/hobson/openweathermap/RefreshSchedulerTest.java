@@ -0,0 +1,140 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RefreshSchedulerTest {
+    private static final long MIN = 300000;
+    private static final long MAX = 1800000;
+    private static final long TICK = 10000;
+
+    @Test
+    public void testNewStationsAreDueImmediately() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.sync(createKeys(10), 0);
+        assertEquals(10, s.pollDue(0).size());
+        assertEquals(0, s.pollDue(0).size());
+    }
+
+    @Test
+    public void testRequestsAreSpreadAcrossInterval() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.sync(createKeys(300), 0);
+        assertEquals(300, s.pollDue(0).size());
+
+        // after the initial poll, no tick should see more than a small multiple of the even share
+        int evenShare = (int)(300 * TICK / MIN);
+        int total = 0;
+        for (long now = TICK; now <= 2 * MIN; now += TICK) {
+            int count = s.pollDue(now).size();
+            assertTrue("Burst of " + count + " at " + now, count <= evenShare * 2);
+            total += count;
+        }
+        assertTrue(total >= 300);
+    }
+
+    @Test
+    public void testStaggeredStationsAreSpread() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        for (int i = 0; i < 100; i++) {
+            s.add(Integer.toString(i), 0, true);
+        }
+        Set<String> polled = new HashSet<>();
+        for (long now = 0; now <= MIN; now += TICK) {
+            List<String> due = s.pollDue(now);
+            assertTrue("Burst of " + due.size() + " at " + now, due.size() <= 10);
+            polled.addAll(due);
+        }
+        assertEquals(100, polled.size());
+    }
+
+    @Test
+    public void testUnchangedStationsSlowDown() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.add("1", 0);
+        s.pollDue(0);
+        for (int i = 0; i < 10; i++) {
+            s.onResult("1", false);
+        }
+        assertEquals(MAX, s.getInterval("1"));
+        s.onResult("1", true);
+        assertEquals(MIN, s.getInterval("1"));
+    }
+
+    @Test
+    public void testBackoffMovesNextDue() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.add("1", 0);
+        s.pollDue(0);
+        long due = s.getNextDue("1");
+        s.pollDue(due);
+        s.onResult("1", false);
+        assertEquals(due + (long)(MIN * 1.5), s.getNextDue("1"));
+    }
+
+    @Test
+    public void testSyncRemovesStations() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.sync(createKeys(5), 0);
+        s.sync(Collections.singletonList("2"), 0);
+        assertEquals(1, s.size());
+        assertTrue(s.contains("2"));
+    }
+
+    @Test
+    public void testRequestNow() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.add("1", 0);
+        s.pollDue(0);
+        assertEquals(0, s.pollDue(TICK).size());
+        s.requestNow("1");
+        assertEquals(1, s.pollDue(TICK).size());
+    }
+
+    @Test
+    public void testIdleStationsUseMaxInterval() {
+        RefreshScheduler s = new RefreshScheduler(MIN, MAX);
+        s.sync(createKeys(2), 0);
+        s.setIdle(Collections.singletonList("1"), 0);
+        assertTrue(s.isIdle("1"));
+        assertFalse(s.isIdle("0"));
+
+        // a new idle station isn't due until a maximum interval has passed, and changes don't speed it up
+        assertEquals(Collections.singletonList("0"), s.pollDue(0));
+        s.onResult("1", true);
+        assertEquals(MAX, s.getInterval("1"));
+        assertFalse(s.pollDue(MAX - TICK).contains("1"));
+        assertTrue(s.pollDue(MAX).contains("1"));
+        assertEquals(2 * MAX, s.getNextDue("1"));
+
+        // once it stops being idle it is due a minimum interval after its last poll
+        s.setIdle(Collections.<String>emptyList(), MAX + TICK);
+        assertFalse(s.isIdle("1"));
+        assertEquals(MIN, s.getInterval("1"));
+        assertEquals(MAX + MIN, s.getNextDue("1"));
+    }
+
+    private List<String> createKeys(int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(Integer.toString(i));
+        }
+        return keys;
+    }
+}
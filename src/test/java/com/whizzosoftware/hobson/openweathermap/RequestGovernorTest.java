@@ -0,0 +1,136 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RequestGovernorTest {
+    @Test
+    public void testThroughputStaysAtQuota() {
+        final List<Long> sendTimes = new ArrayList<>();
+        final long[] now = new long[1];
+        RequestGovernor g = new RequestGovernor(60, 10000);
+        RequestGovernor.Sender sender = new RequestGovernor.Sender() {
+            @Override
+            public void send(List<String> cityIds) {
+                sendTimes.add(now[0]);
+            }
+        };
+
+        for (int i = 0; i < 1000; i++) {
+            g.submit(Integer.toString(i));
+        }
+        for (now[0] = 0; now[0] <= 600000; now[0] += 10000) {
+            g.drain(now[0], 1, sender);
+        }
+
+        // no 60 second window should see more than a minute's quota plus one burst
+        for (int i = 0; i < sendTimes.size(); i++) {
+            int count = 0;
+            for (int j = i; j < sendTimes.size() && sendTimes.get(j) < sendTimes.get(i) + 60000; j++) {
+                count++;
+            }
+            assertTrue("Window starting at " + sendTimes.get(i) + " sent " + count, count <= 70);
+        }
+        assertTrue(sendTimes.size() >= 600);
+    }
+
+    @Test
+    public void testQueueDeduplicates() {
+        RequestGovernor g = new RequestGovernor(60, 0);
+        g.submit("1");
+        g.submit("1");
+        g.submit("2");
+        assertEquals(2, g.getQueueSize());
+    }
+
+    @Test
+    public void testBatching() {
+        final List<List<String>> requests = new ArrayList<>();
+        RequestGovernor g = new RequestGovernor(60, 10000);
+        for (int i = 0; i < 45; i++) {
+            g.submit(Integer.toString(i));
+        }
+        assertEquals(3, g.drain(0, 20, new RequestGovernor.Sender() {
+            @Override
+            public void send(List<String> cityIds) {
+                requests.add(cityIds);
+            }
+        }));
+        assertEquals(20, requests.get(0).size());
+        assertEquals(5, requests.get(2).size());
+        assertEquals(0, g.getQueueSize());
+    }
+
+    @Test
+    public void testRetryAfterIsHonored() {
+        final int[] sent = new int[1];
+        RequestGovernor.Sender sender = new RequestGovernor.Sender() {
+            @Override
+            public void send(List<String> cityIds) {
+                sent[0]++;
+            }
+        };
+        RequestGovernor g = new RequestGovernor(6000, 10000);
+        g.submit("1");
+        g.submit("2");
+        g.onThrottled(30000, 0);
+        assertEquals(0, g.drain(0, 1, sender));
+        assertEquals(0, g.drain(29999, 1, sender));
+        assertEquals(2, g.drain(30000, 1, sender));
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        RequestGovernor g = new RequestGovernor(60, 10000);
+        g.onThrottled(-1, 0);
+        assertEquals(RequestGovernor.INITIAL_BACKOFF, g.getBackoffUntil());
+        g.onThrottled(-1, 0);
+        assertEquals(RequestGovernor.INITIAL_BACKOFF * 2, g.getBackoffUntil());
+        g.onThrottled(-1, 0);
+        assertEquals(RequestGovernor.INITIAL_BACKOFF * 4, g.getBackoffUntil());
+        for (int i = 0; i < 20; i++) {
+            g.onThrottled(-1, 0);
+        }
+        assertEquals(RequestGovernor.MAX_BACKOFF, g.getBackoffUntil());
+        g.onSuccess();
+        g.onThrottled(-1, 1000000);
+        assertEquals(1000000 + RequestGovernor.INITIAL_BACKOFF, g.getBackoffUntil());
+    }
+
+    @Test
+    public void testRequeueGoesToFront() {
+        final List<String> order = new ArrayList<>();
+        RequestGovernor g = new RequestGovernor(6000, 10000);
+        g.submit("3");
+        g.requeue(Arrays.asList("1", "2"));
+        g.drain(0, 1, new RequestGovernor.Sender() {
+            @Override
+            public void send(List<String> cityIds) {
+                order.addAll(cityIds);
+            }
+        });
+        assertEquals(Arrays.asList("1", "2", "3"), order);
+    }
+
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(120000, RequestGovernor.parseRetryAfter("120", 0));
+        assertEquals(-1, RequestGovernor.parseRetryAfter(null, 0));
+        assertEquals(-1, RequestGovernor.parseRetryAfter("soon", 0));
+        assertEquals(5000, RequestGovernor.parseRetryAfter("Thu, 01 Jan 1970 00:00:10 GMT", 5000));
+    }
+}
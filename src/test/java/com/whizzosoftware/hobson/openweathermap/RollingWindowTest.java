@@ -0,0 +1,99 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RollingWindowTest {
+    @Test
+    public void testEmpty() {
+        RollingWindow w = new RollingWindow(3600, 8);
+        assertEquals(0, w.size());
+        assertTrue(Double.isNaN(w.getMin()));
+        assertTrue(Double.isNaN(w.getMax()));
+        assertTrue(Double.isNaN(w.getMean()));
+        assertEquals(-1, w.getOldestTime());
+    }
+
+    @Test
+    public void testExpiry() {
+        RollingWindow w = new RollingWindow(3600, 16);
+        w.add(0, 5);
+        w.add(1200, 1);
+        w.add(2400, 9);
+        assertEquals(1.0, w.getMin(), 0.0);
+        assertEquals(9.0, w.getMax(), 0.0);
+        assertEquals(5.0, w.getMean(), 0.0);
+
+        // the first sample is an hour old and drops out
+        w.add(3600, 3);
+        assertEquals(3, w.size());
+        assertEquals(1200, w.getOldestTime());
+        assertEquals(13.0 / 3, w.getMean(), 1e-9);
+
+        // and now the minimum drops out
+        w.add(4800, 4);
+        assertEquals(3.0, w.getMin(), 0.0);
+        assertEquals(9.0, w.getMax(), 0.0);
+    }
+
+    @Test
+    public void testCapacity() {
+        RollingWindow w = new RollingWindow(3600, 4);
+        for (int i = 0; i < 10; i++) {
+            w.add(i, i);
+        }
+        assertEquals(4, w.size());
+        assertEquals(6.0, w.getMin(), 0.0);
+        assertEquals(9.0, w.getMax(), 0.0);
+        assertEquals(7.5, w.getMean(), 0.0);
+    }
+
+    @Test
+    public void testIgnoresOutOfOrderAndNaN() {
+        RollingWindow w = new RollingWindow(3600, 4);
+        assertTrue(w.add(100, 1));
+        assertFalse(w.add(50, 2));
+        assertFalse(w.add(200, Double.NaN));
+        assertEquals(1, w.size());
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random r = new Random(1);
+        RollingWindow w = new RollingWindow(3600, 64);
+        long[] times = new long[1000];
+        double[] values = new double[1000];
+        long t = 0;
+        for (int i = 0; i < times.length; i++) {
+            t += r.nextInt(600);
+            times[i] = t;
+            values[i] = r.nextInt(40) - 10;
+            w.add(t, values[i]);
+
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE, sum = 0;
+            int n = 0;
+            for (int j = i; j >= 0 && j > i - 64 && times[j] > t - 3600; j--) {
+                min = Math.min(min, values[j]);
+                max = Math.max(max, values[j]);
+                sum += values[j];
+                n++;
+            }
+            assertEquals(n, w.size());
+            assertEquals(min, w.getMin(), 0.0);
+            assertEquals(max, w.getMax(), 0.0);
+            assertEquals(sum / n, w.getMean(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SharedObservationsTest {
+    @Test
+    public void testOnlyLeaseHolderPolls() {
+        InProcessObservationBackend backend = new InProcessObservationBackend();
+        SharedObservations a = new SharedObservations(backend, "a", 60000);
+        SharedObservations b = new SharedObservations(backend, "b", 60000);
+
+        assertTrue(a.shouldPoll("1000", 0));
+        assertFalse(b.shouldPoll("1000", 0));
+        assertNull(b.takeShared("1000"));
+
+        // the holder renews its lease each time the station comes due
+        assertTrue(a.shouldPoll("1000", 50000));
+        assertFalse(b.shouldPoll("1000", 100000));
+    }
+
+    @Test
+    public void testObservationsFlowFromHolder() {
+        InProcessObservationBackend backend = new InProcessObservationBackend();
+        SharedObservations a = new SharedObservations(backend, "a", 60000);
+        SharedObservations b = new SharedObservations(backend, "b", 60000);
+        a.shouldPoll("1000", 0);
+        b.shouldPoll("1000", 0);
+
+        a.onObservation("1000", createObservation(100, 280.0));
+        Observation obs = b.takeShared("1000");
+        assertNotNull(obs);
+        assertEquals(100, obs.getTime());
+        assertEquals(280.0, obs.getTemperature(), 0.0);
+
+        // the same observation is only taken once
+        assertNull(b.takeShared("1000"));
+        a.onObservation("1000", createObservation(200, 281.0));
+        assertEquals(200, b.takeShared("1000").getTime());
+
+        // a non-holder never publishes
+        b.onObservation("1000", createObservation(300, 290.0));
+        assertEquals(200, backend.get("1000").getTime());
+    }
+
+    @Test
+    public void testNothingOlderThanReceivedIsTaken() {
+        InProcessObservationBackend backend = new InProcessObservationBackend();
+        SharedObservations a = new SharedObservations(backend, "a", 60000);
+        SharedObservations b = new SharedObservations(backend, "b", 60000);
+        a.shouldPoll("1000", 0);
+        a.onObservation("1000", createObservation(100, 280.0));
+        b.onObservation("1000", createObservation(150, 280.0));
+        assertNull(b.takeShared("1000"));
+    }
+
+    @Test
+    public void testLeaseMovesWhenHolderStops() {
+        InProcessObservationBackend backend = new InProcessObservationBackend();
+        SharedObservations a = new SharedObservations(backend, "a", 60000);
+        SharedObservations b = new SharedObservations(backend, "b", 60000);
+        assertTrue(a.shouldPoll("1000", 0));
+        assertTrue(a.shouldPoll("1001", 0));
+
+        // a station the holder no longer has
+        a.retain(Collections.singletonList("1001"));
+        assertFalse(a.isLeased("1000"));
+        assertTrue(b.shouldPoll("1000", 1000));
+        assertFalse(b.shouldPoll("1001", 1000));
+
+        // a holder that shuts down
+        a.close();
+        assertTrue(b.shouldPoll("1001", 2000));
+    }
+
+    @Test
+    public void testLeaseExpires() {
+        InProcessObservationBackend backend = new InProcessObservationBackend();
+        SharedObservations a = new SharedObservations(backend, "a", 60000);
+        SharedObservations b = new SharedObservations(backend, "b", 60000);
+        assertTrue(a.shouldPoll("1000", 0));
+        assertFalse(b.shouldPoll("1000", 59999));
+        assertTrue(b.shouldPoll("1000", 60000));
+        assertFalse(a.shouldPoll("1000", 60001));
+        assertFalse(a.isLeased("1000"));
+    }
+
+    static Observation createObservation(long time, double temperature) {
+        Observation obs = new Observation();
+        obs.cityId = 1000;
+        obs.time = time;
+        obs.hasMain = true;
+        obs.temperature = temperature;
+        return obs;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StationResolverTest {
+    @Test
+    public void testUnmergedDevicesAreTheirOwnKey() {
+        StationResolver r = new StationResolver(0.01);
+        assertEquals("1", r.getKey("1"));
+        assertEquals(Arrays.asList("1"), r.getDevices("1"));
+        assertEquals(Arrays.asList("1", "2"), r.getKeys(Arrays.asList("1", "2")));
+    }
+
+    @Test
+    public void testMergeSameCell() {
+        StationResolver r = new StationResolver(0.01);
+        assertFalse(r.onLocation("1", 39.741, -104.981));
+        assertFalse(r.onLocation("3", 40.015, -105.270));
+        assertTrue(r.onLocation("2", 39.742, -104.982));
+
+        assertEquals("1", r.getKey("2"));
+        assertEquals(Arrays.asList("1", "2"), r.getDevices("1"));
+        assertEquals(Arrays.asList("1", "3"), r.getKeys(Arrays.asList("1", "2", "3")));
+        assertEquals(Arrays.asList("1"), r.getKeys(Arrays.asList("2")));
+        assertEquals(1, r.getAliasCount());
+
+        // a late observation for the merged station changes nothing
+        assertFalse(r.onLocation("2", 39.742, -104.982));
+        assertFalse(r.onLocation("1", 39.741, -104.981));
+    }
+
+    @Test
+    public void testMergingDisabled() {
+        StationResolver r = new StationResolver(0);
+        assertFalse(r.onLocation("1", 39.741, -104.981));
+        assertFalse(r.onLocation("2", 39.741, -104.981));
+        assertEquals("2", r.getKey("2"));
+    }
+
+    @Test
+    public void testMissingLocation() {
+        StationResolver r = new StationResolver(0.01);
+        assertFalse(r.onLocation("1", Double.NaN, Double.NaN));
+        assertFalse(r.onLocation("2", Double.NaN, Double.NaN));
+        assertEquals("2", r.getKey("2"));
+    }
+
+    @Test
+    public void testRemovingAlias() {
+        StationResolver r = new StationResolver(0.01);
+        r.onLocation("1", 39.741, -104.981);
+        r.onLocation("2", 39.741, -104.981);
+        r.onLocation("3", 39.741, -104.981);
+        assertEquals(Arrays.asList("1", "2", "3"), r.getDevices("1"));
+
+        r.sync(Arrays.asList("1", "3"));
+        assertEquals(Arrays.asList("1", "3"), r.getDevices("1"));
+        assertEquals("2", r.getKey("2"));
+    }
+
+    @Test
+    public void testRemovingOwnerReleasesAliases() {
+        StationResolver r = new StationResolver(0.01);
+        r.onLocation("1", 39.741, -104.981);
+        r.onLocation("2", 39.741, -104.981);
+
+        r.sync(Arrays.asList("2"));
+        assertEquals("2", r.getKey("2"));
+        assertEquals(Arrays.asList("2"), r.getKeys(Arrays.asList("2")));
+
+        // the cell is free again so the released station now owns it
+        assertFalse(r.onLocation("2", 39.741, -104.981));
+        assertTrue(r.onLocation("4", 39.741, -104.981));
+        assertEquals("2", r.getKey("4"));
+    }
+
+    @Test
+    public void testCellSizeChangeForgetsMappings() {
+        StationResolver r = new StationResolver(0.01);
+        r.onLocation("1", 39.741, -104.981);
+        r.onLocation("2", 39.741, -104.981);
+        r.setCellSize(0.001);
+        assertEquals("2", r.getKey("2"));
+        assertEquals(0, r.getAliasCount());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.plugin.EventLoopExecutor;
+import com.whizzosoftware.hobson.api.plugin.http.HttpRequest;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An OpenWeatherMapPlugin that performs its HTTP requests synchronously against a StubOpenWeatherMapServer
+ * rather than through the Hobson HTTP client.
+ */
+public class StubHttpOpenWeatherMapPlugin extends OpenWeatherMapPlugin {
+    private final List<Runnable> deferredRequests = new ArrayList<>();
+    private final List<Object> deferredContexts = new ArrayList<>();
+    private final LinkedBlockingQueue<Runnable> eventLoopQueue = new LinkedBlockingQueue<>();
+    private final EventLoopExecutor responseEventLoop = new EventLoopExecutor() {
+        @Override
+        public void executeInEventLoop(Runnable r) {
+            eventLoopQueue.add(r);
+        }
+    };
+    private long currentTime;
+    private boolean deferRequests;
+    public StubHttpOpenWeatherMapPlugin(StubOpenWeatherMapServer server) {
+        super("id", "version", "description");
+        setApiEndpoint("http", "127.0.0.1", server.getPort());
+    }
+
+    /**
+     * Advances the plugin's clock.
+     *
+     * @param millis the number of milliseconds to advance
+     */
+    public void advanceTime(long millis) {
+        currentTime += millis;
+    }
+
+    /**
+     * Returns one of the plugin's devices.
+     *
+     * @param deviceId the device ID
+     *
+     * @return the device
+     */
+    public OpenWeatherMapDevice getDevice(String deviceId) {
+        return (OpenWeatherMapDevice)getDeviceProxy(deviceId);
+    }
+
+    /**
+     * Sets whether requests are held until completeDeferredRequests() is called rather than performed immediately.
+     *
+     * @param deferRequests whether to defer requests
+     */
+    public void setDeferRequests(boolean deferRequests) {
+        this.deferRequests = deferRequests;
+    }
+
+    public int getDeferredRequestCount() {
+        return deferredRequests.size();
+    }
+
+    public void completeDeferredRequests() {
+        List<Runnable> requests = new ArrayList<>(deferredRequests);
+        deferredRequests.clear();
+        deferredContexts.clear();
+        for (Runnable r : requests) {
+            r.run();
+        }
+    }
+
+    /**
+     * Fails the deferred requests as the Hobson HTTP client would if their connections were lost.
+     *
+     * @param cause the cause of the failure
+     */
+    public void failDeferredRequests(Throwable cause) {
+        List<Object> contexts = new ArrayList<>(deferredContexts);
+        deferredRequests.clear();
+        deferredContexts.clear();
+        for (Object ctx : contexts) {
+            onHttpRequestFailure(cause, ctx);
+        }
+    }
+
+    /**
+     * Runs the work that worker threads have handed back to the event loop until asynchronous response processing
+     * is idle. Since the test thread acts as the event loop, this must be called after each refresh when
+     * asynchronous processing is enabled.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void drainEventLoop() throws InterruptedException {
+        AsyncResponseProcessor p = getAsyncProcessor();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (p != null && p.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Runnable r = eventLoopQueue.poll(10, TimeUnit.MILLISECONDS);
+            if (r != null) {
+                r.run();
+            }
+        }
+        Runnable r;
+        while ((r = eventLoopQueue.poll()) != null) {
+            r.run();
+        }
+    }
+
+    @Override
+    EventLoopExecutor getResponseEventLoop() {
+        return responseEventLoop;
+    }
+
+    @Override
+    long now() {
+        return currentTime;
+    }
+
+    @Override
+    public void sendHttpRequest(URI uri, HttpRequest.Method method, Object context) {
+        sendHttpRequest(uri, method, null, context);
+    }
+
+    @Override
+    public void sendHttpRequest(final URI uri, HttpRequest.Method method, final Map<String,String> headers, final Object context) {
+        if (deferRequests) {
+            deferredRequests.add(new Runnable() {
+                @Override
+                public void run() {
+                    performRequest(uri, headers, context);
+                }
+            });
+            deferredContexts.add(context);
+        } else {
+            performRequest(uri, headers, context);
+        }
+    }
+
+    private void performRequest(URI uri, Map<String,String> headers, Object context) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection)uri.toURL().openConnection();
+            if (headers != null) {
+                for (String name : headers.keySet()) {
+                    conn.setRequestProperty(name, headers.get(name));
+                }
+            }
+            int statusCode = conn.getResponseCode();
+            Map<String,String> responseHeaders = new HashMap<>();
+            for (Map.Entry<String,List<String>> e : conn.getHeaderFields().entrySet()) {
+                if (e.getKey() != null && !e.getValue().isEmpty()) {
+                    responseHeaders.put(e.getKey(), e.getValue().get(0));
+                }
+            }
+            try (InputStream is = statusCode < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+                processResponse(statusCode, responseHeaders, is, (RequestContext)context);
+            }
+        } catch (Exception e) {
+            onHttpRequestFailure(e, context);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP server that mimics the OpenWeatherMap current weather, group, find and forecast endpoints.
+ *
+ * Stations are generated unless recorded responses have been added, in which case a recording made for the
+ * requested station is replayed or, failing that, one of the recordings is replayed with its city ID replaced.
+ * Response latency, server errors, 429s and payload size can be injected to exercise the plugin under load.
+ */
+public class StubOpenWeatherMapServer {
+    public static final long UNKNOWN_CITY_ID = 9000000;
+    public static final int SEARCH_CITY_ID = 2000;
+    public static final long FORECAST_START = 1485799200;
+    public static final int FORECAST_PERIOD = 10800;
+
+    private static final Pattern CITY_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)\\s*,\\s*\"name\"");
+    private static final String CITY_ID_PLACEHOLDER = "\u0000";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private final AtomicInteger throttledCount = new AtomicInteger();
+    private volatile boolean etagsEnabled;
+    private volatile int requestLimit = Integer.MAX_VALUE;
+    private volatile int retryAfter = -1;
+    private volatile long forecastStart = FORECAST_START;
+    private final Map<String,String> locations = new ConcurrentHashMap<>();
+    private final Map<String,AtomicInteger> keyRequestCounts = new ConcurrentHashMap<>();
+    private final Set<String> rejectedKeys = new CopyOnWriteArraySet<>();
+    private final Map<String,String> recordings = new ConcurrentHashMap<>();
+    private final List<String> templates = new CopyOnWriteArrayList<>();
+    private volatile Random random = new Random();
+    private volatile long minLatency;
+    private volatile long maxLatency;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile String padding;
+
+    public StubOpenWeatherMapServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Stub OpenWeatherMap server");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/data/2.5/weather", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!injectFaults(exchange)) {
+                    respond(exchange, 200, createStationJson(getQueryParameter(exchange, "id")));
+                }
+            }
+        });
+        server.createContext("/data/2.5/group", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (injectFaults(exchange)) {
+                    return;
+                }
+                List<String> ids = new ArrayList<>();
+                for (String id : getQueryParameter(exchange, "id").split(",")) {
+                    // IDs at or above UNKNOWN_CITY_ID are treated as cities that don't exist
+                    if (Long.parseLong(id) < UNKNOWN_CITY_ID) {
+                        ids.add(id);
+                    }
+                }
+                respond(exchange, 200, createListJson(ids));
+            }
+        });
+        server.createContext("/data/2.5/find", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!injectFaults(exchange)) {
+                    List<String> ids = new ArrayList<>();
+                    int count = Integer.parseInt(getQueryParameter(exchange, "cnt"));
+                    for (int i = 0; i < count; i++) {
+                        ids.add(Integer.toString(SEARCH_CITY_ID + i));
+                    }
+                    respond(exchange, 200, createListJson(ids));
+                }
+            }
+        });
+        server.createContext("/data/2.5/forecast", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!injectFaults(exchange)) {
+                    respond(exchange, 200, createForecastJson(getQueryParameter(exchange, "id"), forecastStart, 40));
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of requests made with an API key.
+     *
+     * @param apiKey the API key
+     *
+     * @return an int
+     */
+    public int getRequestCount(String apiKey) {
+        AtomicInteger count = keyRequestCounts.get(apiKey);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Causes the server to respond with a 401 to every request made with an API key.
+     *
+     * @param apiKey the API key
+     */
+    public void rejectKey(String apiKey) {
+        rejectedKeys.add(apiKey);
+    }
+
+    public void resetRequestCount() {
+        keyRequestCounts.clear();
+        requestCount.set(0);
+        notModifiedCount.set(0);
+        throttledCount.set(0);
+        errorCount.set(0);
+    }
+
+    /**
+     * Returns the number of requests answered with an injected server error.
+     *
+     * @return an int
+     */
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    public int getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Causes the server to respond with a 429 to every request after the given number of requests.
+     *
+     * @param requestLimit the number of requests to allow
+     * @param retryAfter the Retry-After value (in seconds) to return or -1 for none
+     */
+    public void setRequestLimit(int requestLimit, int retryAfter) {
+        this.requestLimit = requestLimit;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Delays every response by a random amount of time.
+     *
+     * @param minMillis the minimum delay in milliseconds
+     * @param maxMillis the maximum delay in milliseconds
+     */
+    public void setLatency(long minMillis, long maxMillis) {
+        this.minLatency = minMillis;
+        this.maxLatency = Math.max(minMillis, maxMillis);
+    }
+
+    /**
+     * Sets the fraction of requests that are answered with a 500.
+     *
+     * @param errorRate a value between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Sets the fraction of requests that are answered with a 429 (using the Retry-After value passed to
+     * setRequestLimit()) in addition to any requests beyond the request limit.
+     *
+     * @param throttleRate a value between 0 and 1
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * Pads every station in a response with an unused string field to simulate larger payloads.
+     *
+     * @param bytes the approximate number of bytes to add per station
+     */
+    public void setPayloadPadding(int bytes) {
+        if (bytes > 0) {
+            char[] c = new char[bytes];
+            Arrays.fill(c, 'x');
+            padding = "\"padding\":\"" + new String(c) + "\",";
+        } else {
+            padding = null;
+        }
+    }
+
+    /**
+     * Seeds the random number generator used for latency and fault injection so a run can be repeated.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Adds a recorded current weather response to replay.
+     *
+     * @param json the response body
+     */
+    public void addRecording(String json) {
+        Matcher m = CITY_ID.matcher(json);
+        if (!m.find()) {
+            throw new IllegalArgumentException("Recording has no city ID: " + json);
+        }
+        String body = json.trim();
+        recordings.put(m.group(1), body);
+        templates.add(body.substring(0, m.start(1)) + CITY_ID_PLACEHOLDER + body.substring(m.end(1)));
+    }
+
+    /**
+     * Adds every recorded current weather response (*.json) in a directory.
+     *
+     * @param dir the directory
+     *
+     * @return the number of recordings added
+     *
+     * @throws IOException on failure
+     */
+    public int loadRecordings(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list recordings in " + dir);
+        }
+        Arrays.sort(files);
+        int count = 0;
+        for (File f : files) {
+            if (f.getName().endsWith(".json")) {
+                addRecording(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves the start of the forecasts returned by the server ahead by a number of periods.
+     *
+     * @param periods the number of periods
+     */
+    public void advanceForecast(int periods) {
+        forecastStart += periods * FORECAST_PERIOD;
+    }
+
+    public int getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public void setEtagsEnabled(boolean etagsEnabled) {
+        this.etagsEnabled = etagsEnabled;
+    }
+
+    /**
+     * Sets the coordinates returned for a station. Stations without a location are returned without coordinates.
+     *
+     * @param cityId the city ID
+     * @param latitude the latitude
+     * @param longitude the longitude
+     */
+    public void setStationLocation(String cityId, double latitude, double longitude) {
+        locations.put(cityId, "{\"lon\":" + longitude + ",\"lat\":" + latitude + "}");
+    }
+
+    String createListJson(List<String> ids) {
+        StringBuilder sb = new StringBuilder("{\"cnt\":").append(ids.size()).append(",\"list\":[");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(createStationJson(ids.get(i)));
+        }
+        return sb.append("]}").toString();
+    }
+
+    String createStationJson(String cityId) {
+        String json = recordings.get(cityId);
+        if (json == null && !templates.isEmpty()) {
+            json = templates.get((int)(Long.parseLong(cityId) % templates.size())).replace(CITY_ID_PLACEHOLDER, cityId);
+        }
+        if (json == null) {
+            String coord = locations.get(cityId);
+            json = "{" + (coord != null ? "\"coord\":" + coord + "," : "") + "\"id\":" + cityId + ",\"name\":\"Station " + cityId + "\",\"dt\":1485789600,\"main\":{\"temp\":280.32,\"humidity\":81},\"wind\":{\"speed\":4.1,\"deg\":80}}";
+        }
+        String p = padding;
+        return p != null ? "{" + p + json.substring(1) : json;
+    }
+
+    /**
+     * Creates a forecast response. Each period's values are derived from its time so the same period has the same
+     * values in every response.
+     *
+     * @param cityId the city ID
+     * @param start the time of the first period in seconds since the epoch
+     * @param count the number of periods
+     *
+     * @return a JSON string
+     */
+    static String createForecastJson(String cityId, long start, int count) {
+        StringBuilder sb = new StringBuilder("{\"cod\":\"200\",\"message\":0.0042,\"cnt\":").append(count).append(",\"list\":[");
+        for (int i = 0; i < count; i++) {
+            long dt = start + i * FORECAST_PERIOD;
+            int n = (int)((dt / FORECAST_PERIOD) % 10);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"dt\":").append(dt)
+                .append(",\"main\":{\"temp\":").append(270 + n).append(".15,\"temp_min\":269.5,\"temp_max\":281.2,\"pressure\":1012.5,\"humidity\":").append(60 + n)
+                .append("},\"weather\":[{\"id\":800,\"main\":\"Clear\",\"description\":\"clear sky\",\"icon\":\"01n\"}],\"clouds\":{\"all\":0}")
+                .append(",\"wind\":{\"speed\":").append(n).append(".5,\"deg\":").append(n * 30)
+                .append("},\"sys\":{\"pod\":\"n\"},\"dt_txt\":\"2017-01-30 18:00:00\"}");
+        }
+        return sb.append("],\"city\":{\"id\":").append(cityId).append(",\"name\":\"Station ").append(cityId)
+            .append("\",\"coord\":{\"lat\":39.74,\"lon\":-104.98},\"country\":\"US\"}}").toString();
+    }
+
+    private String getQueryParameter(HttpExchange exchange, String name) {
+        for (String param : exchange.getRequestURI().getQuery().split("&")) {
+            int ix = param.indexOf('=');
+            if (ix > 0 && param.substring(0, ix).equals(name)) {
+                return param.substring(ix + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the configured latency and faults to a request.
+     *
+     * @param exchange the exchange
+     *
+     * @return true if a fault response has been sent and the request should not be handled further
+     *
+     * @throws IOException on failure
+     */
+    private boolean injectFaults(HttpExchange exchange) throws IOException {
+        Random r = random;
+        if (maxLatency > 0) {
+            long delay = minLatency + (maxLatency > minLatency ? (long)(r.nextDouble() * (maxLatency - minLatency)) : 0);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String apiKey = getQueryParameter(exchange, "APPID");
+        if (apiKey != null) {
+            AtomicInteger count = keyRequestCounts.get(apiKey);
+            if (count == null) {
+                keyRequestCounts.putIfAbsent(apiKey, new AtomicInteger());
+                count = keyRequestCounts.get(apiKey);
+            }
+            count.incrementAndGet();
+            if (rejectedKeys.contains(apiKey)) {
+                requestCount.incrementAndGet();
+                respond(exchange, 401, "{\"cod\":401,\"message\":\"Invalid API key. Please see http://openweathermap.org/faq#error401 for more info.\"}");
+                return true;
+            }
+        }
+        if (requestCount.incrementAndGet() > requestLimit || (throttleRate > 0 && r.nextDouble() < throttleRate)) {
+            throttledCount.incrementAndGet();
+            if (retryAfter > -1) {
+                exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfter));
+            }
+            respond(exchange, 429, "{\"cod\":429,\"message\":\"Your account is temporary blocked due to exceeding of requests limitation of your subscription type.\"}");
+            return true;
+        }
+        if (errorRate > 0 && r.nextDouble() < errorRate) {
+            errorCount.incrementAndGet();
+            respond(exchange, 500, "{\"cod\":500,\"message\":\"Internal error\"}");
+            return true;
+        }
+        return false;
+    }
+
+    private void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        if (etagsEnabled) {
+            String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", etag);
+        }
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, b.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(b);
+        }
+    }
+}
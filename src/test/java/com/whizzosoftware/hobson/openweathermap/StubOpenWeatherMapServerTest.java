@@ -0,0 +1,120 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class StubOpenWeatherMapServerTest {
+    private StubOpenWeatherMapServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubOpenWeatherMapServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testReplayRecordings() throws Exception {
+        assertEquals(3, server.loadRecordings(new File(getClass().getResource("/recordings").toURI())));
+
+        // a station that was recorded is replayed as-is
+        String body = get("/data/2.5/weather?id=2643743");
+        assertTrue(body.contains("\"name\":\"London\""));
+        assertTrue(body.contains("\"id\":2643743,"));
+
+        // other stations replay a recording under their own ID
+        body = get("/data/2.5/group?id=1000,1001");
+        assertTrue(body.contains("\"id\":1000,"));
+        assertTrue(body.contains("\"id\":1001,"));
+        assertFalse(body.contains("\"id\":2643743,"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordingWithoutCityId() {
+        server.addRecording("{\"main\":{\"temp\":280.32}}");
+    }
+
+    @Test
+    public void testPayloadPadding() throws Exception {
+        int size = get("/data/2.5/group?id=1000,1001").length();
+        server.setPayloadPadding(1000);
+        assertTrue(get("/data/2.5/group?id=1000,1001").length() >= size + 2000);
+    }
+
+    @Test
+    public void testInjectedFaults() throws Exception {
+        server.setErrorRate(1.0);
+        assertEquals(500, getStatus("/data/2.5/weather?id=1000"));
+        assertEquals(1, server.getErrorCount());
+
+        server.setErrorRate(0);
+        server.setThrottleRate(1.0);
+        assertEquals(429, getStatus("/data/2.5/weather?id=1000"));
+        assertEquals(1, server.getThrottledCount());
+
+        server.setThrottleRate(0);
+        assertEquals(200, getStatus("/data/2.5/weather?id=1000"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        server.setLatency(100, 100);
+        long start = System.nanoTime();
+        assertEquals(200, getStatus("/data/2.5/weather?id=1000"));
+        assertTrue(System.nanoTime() - start >= 100000000L);
+    }
+
+    private int getStatus(String path) throws IOException {
+        HttpURLConnection conn = open(path);
+        int status = conn.getResponseCode();
+        read(status < 400 ? conn.getInputStream() : conn.getErrorStream());
+        return status;
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection conn = open(path);
+        assertEquals(200, conn.getResponseCode());
+        return read(conn.getInputStream());
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection)new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    }
+
+    private String read(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                baos.write(buf, 0, n);
+            }
+            return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *******************************************************************************
+ * Copyright (c) 2026 Whizzo Software, LLC.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************
+*/
+package com.whizzosoftware.hobson.openweathermap;
+
+import com.whizzosoftware.hobson.api.variable.VariableConstants;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class VariableUpdateTest {
+    private static final int ITERATIONS = 100000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void testMapView() {
+        VariableUpdate u = new VariableUpdate();
+        assertTrue(u.isEmpty());
+        u.set(VariableUpdate.HUMIDITY, 81.0);
+        u.set(VariableUpdate.TEMP_C, 7.17);
+        assertEquals(2, u.size());
+        assertEquals(81.0, u.get(VariableConstants.OUTDOOR_RELATIVE_HUMIDITY));
+        assertEquals(7.17, u.get(VariableConstants.OUTDOOR_TEMP_C));
+        assertNull(u.get(VariableConstants.WIND_SPEED_MPH));
+        assertFalse(u.containsKey(VariableConstants.WIND_SPEED_MPH));
+
+        Map<String,Object> expected = new HashMap<>();
+        expected.put(VariableConstants.OUTDOOR_TEMP_C, 7.17);
+        expected.put(VariableConstants.OUTDOOR_RELATIVE_HUMIDITY, 81.0);
+        assertEquals(expected, new HashMap<>(u));
+
+        u.clear();
+        assertTrue(u.isEmpty());
+        assertFalse(u.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testReusedValuesDoNotAllocate() {
+        final VariableUpdate u = new VariableUpdate();
+        assertAllocationFree(new Runnable() {
+            @Override
+            public void run() {
+                u.clear();
+                u.set(VariableUpdate.TEMP_C, 7.17);
+                u.set(VariableUpdate.HUMIDITY, 81.0);
+                for (Map.Entry<String,Object> e : u.entrySet()) {
+                    if (e.getKey() == null || e.getValue() == null) {
+                        fail();
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSteadyStateDeviceUpdateDoesNotAllocate() {
+        OpenWeatherMapPlugin plugin = new OpenWeatherMapPlugin("id", "version", "description");
+        final OpenWeatherMapDevice device = new OpenWeatherMapDevice(plugin, "1000", "Station", null, new DeadbandPolicy());
+        final Observation obs = new Observation();
+        obs.cityId = 1000;
+        obs.time = 1485789600;
+        obs.temperature = 280.32;
+        obs.humidity = 81;
+        obs.windSpeed = 4.1;
+        obs.windDirection = 80;
+        obs.hasMain = true;
+        assertTrue(device.onUpdate(obs));
+
+        // new observations with the same readings publish nothing
+        assertAllocationFree(new Runnable() {
+            @Override
+            public void run() {
+                obs.time += 600;
+                if (device.onUpdate(obs)) {
+                    fail();
+                }
+            }
+        });
+    }
+
+    /**
+     * Asserts that a task doesn't allocate once warmed up. Each round runs the task until it has been compiled and
+     * then measures the bytes the thread allocates over a further batch of runs, less what an empty task allocates
+     * when measured the same way. The best round is used so a one-off allocation on the thread (e.g. by the JIT or a
+     * coverage agent) can't fail the test, while a task that allocates on every run fails every round.
+     *
+     * @param task the task
+     */
+    private static void assertAllocationFree(Runnable task) {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(mx instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean)mx;
+        Assume.assumeTrue(tmx.isThreadAllocatedMemorySupported());
+        tmx.setThreadAllocatedMemoryEnabled(true);
+
+        Runnable empty = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            allocated = Math.min(allocated, measureAllocation(tmx, task) - measureAllocation(tmx, empty));
+        }
+        assertTrue("Allocated " + allocated + " bytes in " + ITERATIONS + " runs", allocated < ITERATIONS);
+    }
+
+    private static long measureAllocation(com.sun.management.ThreadMXBean tmx, Runnable task) {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        long start = tmx.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return tmx.getThreadAllocatedBytes(id) - start;
+    }
+}